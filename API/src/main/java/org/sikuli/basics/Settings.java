@@ -20,6 +20,11 @@ public class Settings {
   public static boolean NewAPI = true; //TODO remove/revise Region/Location methods
 
   public static boolean ImageCaching = true;
+  public static int ImageCacheMax = 64; // MB pixel data in image cache (least recently used are evicted), 0 = no limit
+  public static boolean ImageStore = false; // keep decoded image files on disk (loaded memory mapped instead of decoding PNG again)
+  public static String ImageStorePath = null; // ImageStore: folder, null = SikulixStore/ImageStore in the app data folder, "." = .sxstore next to the image
+  public static int ImageStoreMax = 512; // ImageStore: MB per store folder (least recently used are deleted), 0 = no limit
+  public static int ConvertBufferMax = 16; // MB per thread kept for Mat <-> BufferedImage conversions (larger are not kept), 0 = none kept
 
   public static synchronized void init(RunTime givenRunTime) {
     runTime = givenRunTime;
@@ -51,13 +56,40 @@ public class Settings {
   public static float AutoWaitTimeout = 3f; // in seconds
   public static float WaitScanRate = 3f; // frames per second
   public static float ObserveScanRate = 3f; // frames per second
+  public static boolean ObserveShared = true; // background observers on one screen share one capture per scan
+  public static int ObserveCallbackQueue = 0; // 0 = call backs run in the observing thread (as before), > 0 = pending call backs per region (run in order in an own thread)
+  public static String ObserveCallbackBackpressure = "block"; // call back queue full: block (observer waits), drop (oldest), coalesce (same event name, else drop)
+  public static boolean WaitChangeAware = true; // wait: search again only if and where the screen changed since the last scan
+  public static boolean ScanAdaptive = false; // wait/observe: scan faster after screen changes, slower while the screen is static
+  public static float ScanRateMax = 10f; // ScanAdaptive: scans per second after a change
+  public static float ScanRateMin = 1f; // ScanAdaptive: scans per second while the screen stays static
+  public static float ScanCpuMax = 0f; // wait/observe: max share of time for all scans of the script (e.g. 0.5), measured as wall-clock scan time (not CPU time), 0 = no limit
   public static int ObserveMinChangedPixels = 50; // in pixels
+  public static int ChangeScale = 1; // findChanges/onChange: changed pixels are collected in cells of n x n pixels (faster for larger n, changes given in full resolution), 1 = per pixel
   public static int RepeatWaitTime = 1; // wait 1 second for visual to vanish after action
   public static double MinSimilarity = 0.7;
   public static double AlwaysResize = 0;
   public static int DefaultPadding = 50;
   public static boolean AutoDetectKeyboardLayout = true;  
 
+  public static int FindTemplateCache = 128; // prepared image file search targets kept for repeated finds (least recently used are evicted), 0 = prepared with every find
+
+  public static String FindScales = ""; // multi-scale search: factors tried if not found as is, e.g. "0.8,1.25,1.5,2" or "0.5-2" (step 0.25) or "0.5-2:0.1", empty = off
+  public static boolean FindScaleLearn = true; // multi-scale search: the factor found on a screen is tried first with the next finds (kept in SikulixStore)
+
+  public static boolean FindDownsized = true; // coarse to fine search for larger images (not exact, not masked), falls back to the full search if not sure
+
+  public static int FindAnyThreads = 0; // threads for parallel findAny/findBest (0 = number of processors)
+
+  public static boolean CaptureNative = true; // use a native screen capture (Linux X11 shared memory) if available, else java Robot
+  public static boolean LinuxAppNative = true; // Linux: App window features via X11/EWMH in process, false: wmctrl/xdotool
+
+  public static int JythonPoolSize = 0; // SikulixServer: Jython scripts run in parallel on this many pre-warmed interpreters, 0 = one after the other as before
+  public static String JythonPoolReset = "clean"; // pooled interpreter after a run: clean (globals, sys.path/argv/modules as after warm up), new (fresh interpreter), keep (as is)
+  public static int ServerWorkers = 4; // SikulixServer: tasks running at the same time (tasks needing the same resource, e.g. screen, still one after the other)
+  public static String ServerGroupLimits = ""; // SikulixServer: max running tasks per group as name=n,... (* = any other group), empty = no limit
+  public static int ServerTaskHistory = 1000; // SikulixServer: ended tasks kept for the task requests (the oldest are removed)
+
   public static boolean CheckLastSeen = false;
   public static float CheckLastSeenSimilar = 0.95f;
 
@@ -81,6 +113,13 @@ public class Settings {
    * to 1.0 (max delay of 1 second)
    */
   public static double TypeDelay = 0.0;
+  /**
+   * write: fast mode - runs of plain characters are typed as one batch of key events
+   * with TypeFastDelay millisecs between the characters (instead of the type delay of at least 20 msec)
+   */
+  public static boolean TypeFast = false;
+  public static int TypeFastDelay = 5; // TypeFast: millisecs between two characters
+  public static boolean TypePaste = false; // TypeFast: runs of plain characters are pasted via the clipboard (not remote)
   /**
    * Specify a delay between the mouse down and up in seconds as 0.nnn. This
    * only applies to the next click action and is then reset to 0 again. A value
@@ -92,12 +131,17 @@ public class Settings {
 
   public static String BundlePath = null;
   public static boolean OverwriteImages = false;
+  public static boolean ImagePathIndex = true; // ImagePath.find: look up image file names in an index per path entry (folders are watched for changes)
 
   public static final String OcrLanguageDefault = "eng";
   public static String OcrLanguage = OcrLanguageDefault;
   public static String OcrDataPath = null;
   public static boolean OcrTextSearch = true;
   public static boolean OcrTextRead = true;
+  public static int OcrEngines = Math.max(2, Runtime.getRuntime().availableProcessors()); // Tesseract engines kept ready per OCR.Options
+  public static boolean OcrCache = false; // reuse OCR results for equal image content and OCR.Options
+  public static int OcrCacheMax = 200; // max cached OCR results (least recently used are evicted)
+  public static double OcrCacheTime = 60; // seconds a cached OCR result is used (0 = no limit)
   public static boolean SwitchToText = false;
 
   public static boolean TRUE = true;
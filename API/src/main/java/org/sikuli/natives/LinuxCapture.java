@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.natives;
+
+import com.sun.jna.Library;
+import com.sun.jna.Native;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.Structure;
+import com.sun.jna.platform.unix.X11;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+import org.sikuli.basics.Debug;
+import org.sikuli.script.ScreenImage;
+import org.sikuli.script.support.CaptureProvider;
+
+import java.awt.GraphicsDevice;
+import java.awt.GraphicsEnvironment;
+import java.awt.Rectangle;
+
+/**
+ * INTERNAL: screen capture on Linux X11 desktops using the MIT-SHM extension
+ * <br>one shared memory segment (size of the root window) is attached to a private display connection
+ * and reused for every capture (XShmGetImage)
+ * <br>the pixels are copied natively (memcpy, no java array) from the segment into a reused BGRA Mat
+ * and then converted into the BGR Mat of the capture
+ * (the segment itself cannot be wrapped: the OpenCV java API has no Mat for external memory)
+ * <br>not available (java Robot is used): no X11/Xext, no MIT-SHM (remote display),
+ * not a 24/32 bit TrueColor root window or java screen coordinates differ from X11 (scaling)
+ */
+public class LinuxCapture implements CaptureProvider {
+
+  //<editor-fold desc="00 native">
+  interface LibC extends Library {
+    LibC INSTANCE = Native.load("c", LibC.class);
+
+    int IPC_PRIVATE = 0;
+    int IPC_CREAT = 01000;
+    int IPC_RMID = 0;
+
+    int shmget(int key, NativeLong size, int shmflg);
+
+    Pointer shmat(int shmid, Pointer shmaddr, int shmflg);
+
+    int shmdt(Pointer shmaddr);
+
+    int shmctl(int shmid, int cmd, Pointer buf);
+
+    Pointer memcpy(Pointer dest, Pointer src, NativeLong n);
+  }
+
+  interface Xext extends Library {
+    Xext INSTANCE = Native.load("Xext", Xext.class);
+
+    boolean XShmQueryExtension(X11.Display display);
+
+    Pointer XShmCreateImage(X11.Display display, X11.Visual visual, int depth, int format, Pointer data,
+                            XShmSegmentInfo shminfo, int width, int height);
+
+    boolean XShmAttach(X11.Display display, XShmSegmentInfo shminfo);
+
+    boolean XShmDetach(X11.Display display, XShmSegmentInfo shminfo);
+
+    boolean XShmGetImage(X11.Display display, X11.Drawable drawable, Pointer image, int x, int y, NativeLong planeMask);
+  }
+
+  @Structure.FieldOrder({"shmseg", "shmid", "shmaddr", "readOnly"})
+  public static class XShmSegmentInfo extends Structure {
+    public NativeLong shmseg;
+    public int shmid;
+    public Pointer shmaddr;
+    public boolean readOnly;
+  }
+
+  @Structure.FieldOrder({"width", "height", "xoffset", "format", "data", "byte_order", "bitmap_unit",
+      "bitmap_bit_order", "bitmap_pad", "depth", "bytes_per_line", "bits_per_pixel",
+      "red_mask", "green_mask", "blue_mask", "obdata", "f"})
+  public static class XImageStruct extends Structure {
+    public int width, height, xoffset, format;
+    public Pointer data;
+    public int byte_order, bitmap_unit, bitmap_bit_order, bitmap_pad;
+    public int depth, bytes_per_line, bits_per_pixel;
+    public NativeLong red_mask, green_mask, blue_mask;
+    public Pointer obdata;
+    public Pointer[] f = new Pointer[6];
+
+    public XImageStruct(Pointer pointer) {
+      super(pointer);
+      read();
+    }
+  }
+
+  private static final int LSBFirst = 0;
+  //</editor-fold>
+
+  //<editor-fold desc="01 instance">
+  private static String me = "LinuxCapture: ";
+
+  private Boolean available = null;
+  private X11.Display display = null;
+  private X11.Window root = null;
+  private X11.Visual visual = null;
+  private int depth = 0;
+  private Rectangle rootRect = null;
+  private XShmSegmentInfo shmInfo = null;
+  private Pointer image = null;
+  private XImageStruct imageInfo = null;
+  private Mat bgra = new Mat();
+
+  @Override
+  public String getName() {
+    return "X11-SHM";
+  }
+
+  @Override
+  public synchronized boolean isAvailable() {
+    if (available == null) {
+      try {
+        available = open();
+      } catch (Throwable e) {
+        Debug.log(3, me + "not available: %s", e.getMessage());
+        available = false;
+      }
+      if (!available) {
+        close();
+      }
+    }
+    return available;
+  }
+
+  private boolean open() {
+    display = X11.INSTANCE.XOpenDisplay(null);
+    if (display == null) {
+      Debug.log(3, me + "no display");
+      return false;
+    }
+    X11Errors.register(display);
+    if (!Xext.INSTANCE.XShmQueryExtension(display)) {
+      Debug.log(3, me + "no MIT-SHM extension");
+      return false;
+    }
+    root = X11.INSTANCE.XDefaultRootWindow(display);
+    X11.XWindowAttributes attributes = new X11.XWindowAttributes();
+    X11.INSTANCE.XGetWindowAttributes(display, root, attributes);
+    depth = attributes.depth;
+    visual = attributes.visual;
+    rootRect = new Rectangle(0, 0, attributes.width, attributes.height);
+    if (depth != 24 && depth != 32) {
+      Debug.log(3, me + "root window depth %d not supported", depth);
+      return false;
+    }
+    Rectangle javaRect = new Rectangle();
+    for (GraphicsDevice device : GraphicsEnvironment.getLocalGraphicsEnvironment().getScreenDevices()) {
+      javaRect = javaRect.union(device.getDefaultConfiguration().getBounds());
+    }
+    if (!javaRect.equals(rootRect)) {
+      Debug.log(3, me + "java screen %s differs from X11 root %s", javaRect, rootRect);
+      return false;
+    }
+    shmInfo = new XShmSegmentInfo();
+    shmInfo.shmid = LibC.INSTANCE.shmget(LibC.IPC_PRIVATE,
+        new NativeLong((long) rootRect.width * rootRect.height * 4), LibC.IPC_CREAT | 0600);
+    if (shmInfo.shmid < 0) {
+      Debug.log(3, me + "shmget failed");
+      shmInfo = null;
+      return false;
+    }
+    shmInfo.shmaddr = LibC.INSTANCE.shmat(shmInfo.shmid, null, 0);
+    if (shmInfo.shmaddr == null || Pointer.nativeValue(shmInfo.shmaddr) == -1) {
+      Debug.log(3, me + "shmat failed");
+      LibC.INSTANCE.shmctl(shmInfo.shmid, LibC.IPC_RMID, null);
+      shmInfo = null;
+      return false;
+    }
+    shmInfo.readOnly = false;
+    X11Errors.reset(display);
+    boolean attached = Xext.INSTANCE.XShmAttach(display, shmInfo);
+    X11.INSTANCE.XSync(display, false);
+    boolean failed = X11Errors.failed(display);
+    // segment is freed automatically when detached by client and server
+    LibC.INSTANCE.shmctl(shmInfo.shmid, LibC.IPC_RMID, null);
+    if (!attached || failed) {
+      Debug.log(3, me + "XShmAttach failed");
+      LibC.INSTANCE.shmdt(shmInfo.shmaddr);
+      shmInfo = null;
+      return false;
+    }
+    if (!makeImage(rootRect.width, rootRect.height)) {
+      return false;
+    }
+    if (imageInfo.bits_per_pixel != 32 || imageInfo.byte_order != LSBFirst
+        || imageInfo.red_mask.longValue() != 0xff0000L || imageInfo.blue_mask.longValue() != 0xffL) {
+      Debug.log(3, me + "pixel format not supported (bpp %d)", imageInfo.bits_per_pixel);
+      return false;
+    }
+    Debug.log(3, me + "using MIT-SHM for %s", rootRect);
+    return true;
+  }
+
+  // the XImage is only a header for the shared segment - recreated if the size changes
+  private boolean makeImage(int width, int height) {
+    if (image != null) {
+      if (imageInfo.width == width && imageInfo.height == height) {
+        return true;
+      }
+      destroyImage();
+    }
+    image = Xext.INSTANCE.XShmCreateImage(display, visual, depth, X11.ZPixmap, shmInfo.shmaddr, shmInfo, width, height);
+    if (image == null) {
+      Debug.log(3, me + "XShmCreateImage failed");
+      return false;
+    }
+    imageInfo = new XImageStruct(image);
+    return true;
+  }
+
+  private void destroyImage() {
+    if (image != null) {
+      // the data is the shared segment - must not be freed by XDestroyImage
+      imageInfo.data = null;
+      imageInfo.writeField("data");
+      X11.XImage xImage = new X11.XImage();
+      xImage.setPointer(image);
+      X11.INSTANCE.XDestroyImage(xImage);
+      image = null;
+      imageInfo = null;
+    }
+  }
+
+  @Override
+  public synchronized void close() {
+    try {
+      destroyImage();
+      if (shmInfo != null) {
+        Xext.INSTANCE.XShmDetach(display, shmInfo);
+        X11.INSTANCE.XSync(display, false);
+        LibC.INSTANCE.shmdt(shmInfo.shmaddr);
+        shmInfo = null;
+      }
+      if (display != null) {
+        X11Errors.unregister(display);
+        X11.INSTANCE.XCloseDisplay(display);
+        display = null;
+      }
+      bgra.release();
+    } catch (Throwable e) {
+      Debug.log(3, me + "close: %s", e.getMessage());
+    }
+    available = false;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="10 capture">
+  @Override
+  public synchronized ScreenImage capture(Rectangle rect) {
+    if (!isAvailable() || rect.isEmpty() || !rootRect.contains(rect)) {
+      return null;
+    }
+    if (!makeImage(rect.width, rect.height)) {
+      return null;
+    }
+    if (!Xext.INSTANCE.XShmGetImage(display, root, image, rect.x, rect.y, new NativeLong(-1L))) {
+      Debug.log(3, me + "XShmGetImage failed for %s", rect);
+      return null;
+    }
+    bgra.create(rect.height, rect.width, CvType.CV_8UC4);
+    Pointer target = new Pointer(bgra.dataAddr());
+    long rowBytes = rect.width * 4L;
+    long lineBytes = imageInfo.bytes_per_line;
+    if (lineBytes == rowBytes) {
+      LibC.INSTANCE.memcpy(target, shmInfo.shmaddr, new NativeLong(rowBytes * rect.height));
+    } else {
+      for (int row = 0; row < rect.height; row++) {
+        LibC.INSTANCE.memcpy(target.share(row * rowBytes), shmInfo.shmaddr.share(row * lineBytes),
+            new NativeLong(rowBytes));
+      }
+    }
+    Mat bgr = new Mat();
+    Imgproc.cvtColor(bgra, bgr, Imgproc.COLOR_BGRA2BGR);
+    return new ScreenImage(new Rectangle(rect), bgr);
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,495 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.natives;
+
+import com.sun.jna.Memory;
+import com.sun.jna.NativeLong;
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.unix.X11;
+import com.sun.jna.ptr.IntByReference;
+import com.sun.jna.ptr.NativeLongByReference;
+import com.sun.jna.ptr.PointerByReference;
+import org.sikuli.basics.Debug;
+import org.sikuli.script.App;
+import org.sikuli.script.Region;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * INTERNAL: the App features on Linux X11 desktops without wmctrl/xdotool/ps processes
+ * <br>the windows are read directly from the window manager's EWMH properties
+ * (_NET_CLIENT_LIST, _NET_WM_PID, _NET_ACTIVE_WINDOW, WM_CLASS, _NET_WM_NAME)
+ * and activated/closed with EWMH client messages
+ * <br>the window list is cached and only read again after the window manager changed _NET_CLIENT_LIST
+ * (watched by a daemon thread on an own display connection)
+ * <br>the command line tools of LinuxUtil are used, if there is no X11 display or no EWMH window manager
+ * and for starting an app and closing an app by name (process level)
+ */
+public class LinuxX11Util extends LinuxUtil {
+
+  private static String me = "LinuxX11Util: ";
+  private static int lvl = 3;
+
+  //<editor-fold desc="01 X11 access">
+  private static class Win {
+    final long id;
+    final int pid;
+    final String wmClass;
+
+    Win(long id, int pid, String wmClass) {
+      this.id = id;
+      this.pid = pid;
+      this.wmClass = wmClass;
+    }
+  }
+
+  private static final X11 x11 = X11.INSTANCE;
+  private static final long CurrentTime = 0;
+  private static final int SourcePager = 2;
+  private static final long AllDesktops = 0xFFFFFFFFL;
+
+  private Boolean available = null;
+  private X11.Display display = null;
+  private X11.Window root = null;
+  private final Map<String, X11.Atom> atoms = new LinkedHashMap<>();
+
+  private volatile boolean watching = false;
+  private volatile boolean dirty = true;
+  private List<Win> clients = new ArrayList<>();
+
+  private synchronized boolean isAvailable() {
+    if (available == null) {
+      available = false;
+      try {
+        display = x11.XOpenDisplay(null);
+        if (display == null) {
+          Debug.log(lvl, me + "no X11 display - using wmctrl/xdotool");
+        } else {
+          X11Errors.register(display);
+          root = x11.XDefaultRootWindow(display);
+          if (!hasProperty(root, atom("_NET_CLIENT_LIST"))) {
+            Debug.log(lvl, me + "no EWMH window manager - using wmctrl/xdotool");
+          } else {
+            available = true;
+            startWatching();
+          }
+        }
+      } catch (Throwable e) {
+        Debug.log(lvl, me + "not available: %s - using wmctrl/xdotool", e.getMessage());
+      }
+      if (!available && display != null) {
+        X11Errors.unregister(display);
+        x11.XCloseDisplay(display);
+        display = null;
+      }
+    }
+    return available;
+  }
+
+  private X11.Atom atom(String name) {
+    X11.Atom atom = atoms.get(name);
+    if (atom == null) {
+      atom = x11.XInternAtom(display, name, false);
+      atoms.put(name, atom);
+    }
+    return atom;
+  }
+
+  // X11 errors (e.g. a window closed meanwhile) must not go to the default handler (exits the process)
+  // they are recorded for our display by the shared handler (X11Errors)
+  private synchronized <T> T query(Supplier<T> request) {
+    X11Errors.reset(display);
+    T result = request.get();
+    x11.XSync(display, false);
+    if (X11Errors.failed(display)) {
+      Debug.log(lvl + 1, me + "X11 error ignored (window closed meanwhile?)");
+    }
+    return result;
+  }
+
+  private byte[] getProperty(X11.Window window, X11.Atom property, X11.Atom type, int[] format) {
+    X11.AtomByReference actualType = new X11.AtomByReference();
+    IntByReference actualFormat = new IntByReference();
+    NativeLongByReference nItems = new NativeLongByReference();
+    NativeLongByReference bytesAfter = new NativeLongByReference();
+    PointerByReference data = new PointerByReference();
+    int status = x11.XGetWindowProperty(display, window, property, new NativeLong(0), new NativeLong(65536), false,
+        type, actualType, actualFormat, nItems, bytesAfter, data);
+    Pointer pointer = data.getValue();
+    if (status != 0 || pointer == null) {
+      return null;
+    }
+    try {
+      format[0] = actualFormat.getValue();
+      long items = nItems.getValue().longValue();
+      // format 32 items are C longs
+      int itemSize = format[0] == 32 ? NativeLong.SIZE : format[0] / 8;
+      return pointer.getByteArray(0, (int) (items * itemSize));
+    } finally {
+      x11.XFree(pointer);
+    }
+  }
+
+  private boolean hasProperty(X11.Window window, X11.Atom property) {
+    return getProperty(window, property, new X11.Atom(X11.AnyPropertyType), new int[1]) != null;
+  }
+
+  private long[] getLongs(X11.Window window, X11.Atom property, X11.Atom type) {
+    int[] format = new int[1];
+    byte[] bytes = getProperty(window, property, type, format);
+    if (bytes == null || format[0] != 32) {
+      return new long[0];
+    }
+    Memory memory = new Memory(Math.max(1, bytes.length));
+    memory.write(0, bytes, 0, bytes.length);
+    long[] values = new long[bytes.length / NativeLong.SIZE];
+    for (int n = 0; n < values.length; n++) {
+      values[n] = memory.getNativeLong((long) n * NativeLong.SIZE).longValue();
+      if (NativeLong.SIZE == 4) {
+        values[n] &= 0xFFFFFFFFL;
+      }
+    }
+    return values;
+  }
+
+  private long getLong(X11.Window window, X11.Atom property, X11.Atom type, long missing) {
+    long[] values = getLongs(window, property, type);
+    return values.length > 0 ? values[0] : missing;
+  }
+
+  private String getString(X11.Window window, X11.Atom property, X11.Atom type) {
+    int[] format = new int[1];
+    byte[] bytes = getProperty(window, property, type, format);
+    if (bytes == null || format[0] != 8) {
+      return null;
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private String getTitle(long id) {
+    X11.Window window = new X11.Window(id);
+    String title = getString(window, atom("_NET_WM_NAME"), atom("UTF8_STRING"));
+    if (title == null) {
+      title = getString(window, atom("WM_NAME"), new X11.Atom(X11.AnyPropertyType));
+    }
+    return title == null ? "" : title;
+  }
+
+  // as given by wmctrl -x: instance.class
+  private String getWmClass(X11.Window window) {
+    String wmClass = getString(window, atom("WM_CLASS"), X11.XA_STRING);
+    if (wmClass == null) {
+      return "N/A";
+    }
+    String[] parts = wmClass.split("\0");
+    return parts.length > 1 ? parts[0] + "." + parts[1] : parts[0];
+  }
+
+  private Rectangle getRect(long id) {
+    X11.Window window = new X11.Window(id);
+    X11.WindowByReference rootRef = new X11.WindowByReference();
+    IntByReference x = new IntByReference();
+    IntByReference y = new IntByReference();
+    IntByReference width = new IntByReference();
+    IntByReference height = new IntByReference();
+    IntByReference border = new IntByReference();
+    IntByReference depth = new IntByReference();
+    if (0 == x11.XGetGeometry(display, window, rootRef, x, y, width, height, border, depth)) {
+      return null;
+    }
+    X11.WindowByReference child = new X11.WindowByReference();
+    if (!x11.XTranslateCoordinates(display, window, root, 0, 0, x, y, child)) {
+      return null;
+    }
+    return new Rectangle(x.getValue(), y.getValue(), width.getValue(), height.getValue());
+  }
+
+  private List<Win> getClients() {
+    if (dirty || !watching) {
+      // reset before reading: a change while reading is seen next time
+      dirty = false;
+      List<Win> windows = new ArrayList<>();
+      for (long id : getLongs(root, atom("_NET_CLIENT_LIST"), X11.XA_WINDOW)) {
+        X11.Window window = new X11.Window(id);
+        int pid = (int) getLong(window, atom("_NET_WM_PID"), X11.XA_CARDINAL, -1);
+        windows.add(new Win(id, pid, getWmClass(window)));
+      }
+      clients = windows;
+      Debug.log(lvl + 1, me + "window list: %d windows", windows.size());
+    }
+    return clients;
+  }
+
+  private void sendMessage(long window, String type, long... data) {
+    X11.XEvent event = new X11.XEvent();
+    event.type = X11.ClientMessage;
+    event.setType(X11.XClientMessageEvent.class);
+    event.xclient.type = X11.ClientMessage;
+    event.xclient.serial = new NativeLong(0);
+    event.xclient.send_event = 1;
+    event.xclient.display = display;
+    event.xclient.window = new X11.Window(window);
+    event.xclient.message_type = atom(type);
+    event.xclient.format = 32;
+    event.xclient.data.setType(NativeLong[].class);
+    for (int n = 0; n < data.length && n < 5; n++) {
+      event.xclient.data.l[n] = new NativeLong(data[n]);
+    }
+    x11.XSendEvent(display, root, 0,
+        new NativeLong(X11.SubstructureRedirectMask | X11.SubstructureNotifyMask), event);
+    x11.XFlush(display);
+  }
+
+  private void activate(long id) {
+    long desktop = getLong(new X11.Window(id), atom("_NET_WM_DESKTOP"), X11.XA_CARDINAL, AllDesktops);
+    long current = getLong(root, atom("_NET_CURRENT_DESKTOP"), X11.XA_CARDINAL, AllDesktops);
+    if (desktop != AllDesktops && current != AllDesktops && desktop != current) {
+      sendMessage(root.longValue(), "_NET_CURRENT_DESKTOP", desktop, CurrentTime);
+    }
+    sendMessage(id, "_NET_ACTIVE_WINDOW", SourcePager, CurrentTime, 0);
+  }
+
+  private void startWatching() {
+    long clientList = atom("_NET_CLIENT_LIST").longValue();
+    Thread watcher = new Thread(() -> {
+      X11.Display watchDisplay = x11.XOpenDisplay(null);
+      if (watchDisplay == null) {
+        return;
+      }
+      X11Errors.register(watchDisplay);
+      x11.XSelectInput(watchDisplay, x11.XDefaultRootWindow(watchDisplay), new NativeLong(X11.PropertyChangeMask));
+      x11.XFlush(watchDisplay);
+      watching = true;
+      dirty = true;
+      X11.XEvent event = new X11.XEvent();
+      while (true) {
+        x11.XNextEvent(watchDisplay, event);
+        event.readField("type");
+        if (event.type == X11.PropertyNotify) {
+          event.setType(X11.XPropertyEvent.class);
+          event.readField("xproperty");
+          if (event.xproperty.atom.longValue() == clientList) {
+            dirty = true;
+          }
+        }
+      }
+    }, "LinuxX11Util-Watcher");
+    watcher.setDaemon(true);
+    watcher.start();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 find windows">
+  // the windows as matched by LinuxUtil with wmctrl -lpGx (pid, WM_CLASS or title)
+  private List<Win> findWindows(int pid, String appName) {
+    List<Win> found = new ArrayList<>();
+    if (appName != null) {
+      int slash = appName.lastIndexOf("/");
+      if (slash >= 0) {
+        appName = appName.substring(slash + 1);
+      }
+      appName = appName.toLowerCase();
+    }
+    for (Win win : getClients()) {
+      if (appName == null) {
+        if (win.pid == pid) {
+          found.add(win);
+        }
+      } else if (appName.equals(win.wmClass.toLowerCase()) || getTitle(win.id).toLowerCase().contains(appName)) {
+        found.add(win);
+      }
+    }
+    return found;
+  }
+
+  private Win findWindow(int pid, String appName, int winNum) {
+    if (pid < 1 && (appName == null || appName.isEmpty())) {
+      return null;
+    }
+    List<Win> windows = findWindows(pid, appName);
+    return winNum < windows.size() ? windows.get(winNum) : null;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="03 OSUtil">
+  @Override
+  public void checkFeatureAvailability() {
+    if (!isAvailable()) {
+      super.checkFeatureAvailability();
+    }
+  }
+
+  @Override
+  public App get(App app) {
+    if (app == null || !isAvailable()) {
+      return super.get(app);
+    }
+    int pid = app.getPID();
+    if (!app.isClosing() && pid < 0) {
+      if (app.getNameGiven() != null && !app.getNameGiven().isEmpty()) {
+        Win win = query(() -> findWindow(-1, app.getNameGiven(), 0));
+        app.setPID(win == null ? -1 : win.pid);
+      }
+      return app;
+    }
+    if (app.isClosing() && pid > -1) {
+      if (!new File("/proc/" + pid).exists()) {
+        app.setPID(-1);
+        app.setWindow("");
+      }
+    }
+    return app;
+  }
+
+  @Override
+  public List<App> getApps(String name) {
+    if (!isAvailable()) {
+      return super.getApps(name);
+    }
+    String search = name == null ? "" : name.toLowerCase();
+    return query(() -> {
+      Map<Integer, App> apps = new LinkedHashMap<>();
+      for (Win win : getClients()) {
+        if (win.pid < 1 || apps.containsKey(win.pid)) {
+          continue;
+        }
+        String title = getTitle(win.id);
+        if (win.wmClass.toLowerCase().contains(search) || title.toLowerCase().contains(search)) {
+          App app = new App();
+          String wmClass = win.wmClass;
+          app.setName(wmClass.contains(".") ? wmClass.substring(wmClass.indexOf(".") + 1) : wmClass);
+          app.setWindow(title);
+          app.setPID(win.pid);
+          apps.put(win.pid, app);
+        }
+      }
+      return new ArrayList<>(apps.values());
+    });
+  }
+
+  @Override
+  public boolean switchto(App app) {
+    if (!isAvailable()) {
+      return super.switchto(app);
+    }
+    if (app.getPID() < 1) {
+      return false;
+    }
+    String title = query(() -> {
+      Win win = findWindow(app.getPID(), null, 0);
+      if (win == null) {
+        return null;
+      }
+      activate(win.id);
+      return getTitle(win.id);
+    });
+    if (title == null) {
+      return false;
+    }
+    app.setFocused(true);
+    app.setWindow(title);
+    return true;
+  }
+
+  @Override
+  public App switchto(String title, int index) {
+    if (!isAvailable()) {
+      return super.switchto(title, index);
+    }
+    App app = new App();
+    Win found = query(() -> {
+      Win win = findWindow(-1, title, index);
+      if (win != null) {
+        activate(win.id);
+      }
+      return win;
+    });
+    if (found != null) {
+      app.setPID(found.pid);
+      app.setWindow(query(() -> getTitle(found.id)));
+      app.setFocused(true);
+    }
+    return app;
+  }
+
+  @Override
+  public boolean close(App app) {
+    if (!isAvailable() || app.getPID() < 1) {
+      return super.close(app);
+    }
+    return query(() -> {
+      Win win = findWindow(app.getPID(), null, 0);
+      if (win == null) {
+        return false;
+      }
+      sendMessage(win.id, "_NET_CLOSE_WINDOW", CurrentTime, SourcePager);
+      return true;
+    });
+  }
+
+  @Override
+  public Rectangle getFocusedWindow() {
+    if (!isAvailable()) {
+      return super.getFocusedWindow();
+    }
+    return query(() -> {
+      long active = getLong(root, atom("_NET_ACTIVE_WINDOW"), X11.XA_WINDOW, 0);
+      return active == 0 ? null : getRect(active);
+    });
+  }
+
+  @Override
+  public Rectangle getWindow(String appName) {
+    if (!isAvailable()) {
+      return super.getWindow(appName);
+    }
+    return query(() -> {
+      Win win = findWindow(-1, appName, 0);
+      return win == null ? null : getRect(win.id);
+    });
+  }
+
+  @Override
+  public Rectangle getWindow(App app, int winNum) {
+    if (!isAvailable()) {
+      return super.getWindow(app, winNum);
+    }
+    return query(() -> {
+      Win win;
+      if (app.getPID() > 0) {
+        win = findWindow(app.getPID(), null, winNum);
+      } else {
+        win = findWindow(-1, app.getNameGiven(), winNum);
+      }
+      return win == null ? null : getRect(win.id);
+    });
+  }
+
+  @Override
+  public List<Region> getWindows(App app) {
+    if (!isAvailable()) {
+      return super.getWindows(app);
+    }
+    return query(() -> {
+      List<Region> regions = new ArrayList<>();
+      if (app.getPID() > 0) {
+        for (Win win : findWindows(app.getPID(), null)) {
+          Rectangle rect = getRect(win.id);
+          if (rect != null) {
+            regions.add(Region.create(rect));
+          }
+        }
+      }
+      return regions;
+    });
+  }
+  //</editor-fold>
+}
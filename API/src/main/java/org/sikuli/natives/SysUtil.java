@@ -8,6 +8,8 @@
  */
 package org.sikuli.natives;
 
+import org.sikuli.basics.Settings;
+
 import java.lang.reflect.Constructor;
 
 /**
@@ -25,6 +27,8 @@ public class SysUtil {
       return pkg + "MacUtil";
     } else if (os.startsWith("windows")) {
       return pkg + "WinUtil";
+    } else if (Settings.LinuxAppNative) {
+      return pkg + "LinuxX11Util";
     } else {
       return pkg + "LinuxUtil";
     }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.natives;
+
+import com.sun.jna.Pointer;
+import com.sun.jna.platform.unix.X11;
+import org.sikuli.basics.Debug;
+
+import java.awt.Toolkit;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * INTERNAL: one Xlib error handler for the own display connections (LinuxCapture, LinuxX11Util)
+ * <br>the Xlib error handler is process wide: it is installed once and never swapped,
+ * so concurrent users (and the AWT toolkit) cannot restore a wrong handler
+ * <br>errors on a registered display are recorded for that display (see failed()),
+ * all other errors go to the handler installed before (e.g. the one of the AWT toolkit)
+ * <br>each display must be used by one thread at a time (the owners serialize their requests)
+ */
+class X11Errors {
+
+  private static String me = "X11Errors: ";
+  private static int lvl = 3;
+
+  private static final Map<Long, Boolean> displays = new ConcurrentHashMap<>();
+  private static X11.XErrorHandler previous = null;
+  private static boolean installed = false;
+
+  // kept static: the callback must not be garbage collected while installed
+  private static final X11.XErrorHandler handler = (display, errorEvent) -> {
+    long key = key(display);
+    if (displays.containsKey(key)) {
+      displays.put(key, true);
+      return 0;
+    }
+    X11.XErrorHandler before = previous;
+    return before == null ? 0 : before.apply(display, errorEvent);
+  };
+
+  private static long key(X11.Display display) {
+    return display == null ? 0 : Pointer.nativeValue(display.getPointer());
+  }
+
+  /**
+   * record the errors of this display from now on (installs the handler with the first display)
+   *
+   * @param display an own display connection
+   */
+  static synchronized void register(X11.Display display) {
+    if (!installed) {
+      // the AWT toolkit installs its handler first (ours hands other errors to it)
+      Toolkit.getDefaultToolkit();
+      previous = X11.INSTANCE.XSetErrorHandler(handler);
+      installed = true;
+      Debug.log(lvl, me + "installed");
+    }
+    displays.put(key(display), false);
+  }
+
+  /**
+   * @param display the display no longer used (before XCloseDisplay)
+   */
+  static void unregister(X11.Display display) {
+    displays.remove(key(display));
+  }
+
+  /**
+   * forget the errors recorded so far for this display
+   */
+  static void reset(X11.Display display) {
+    displays.replace(key(display), false);
+  }
+
+  /**
+   * @param display a registered display (requests should be synced before: XSync)
+   * @return true if an error was recorded since the last reset
+   */
+  static boolean failed(X11.Display display) {
+    return Boolean.TRUE.equals(displays.get(key(display)));
+  }
+}
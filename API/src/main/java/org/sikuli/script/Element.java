@@ -8,6 +8,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
+import org.opencv.core.Rect;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
@@ -24,6 +25,7 @@ import java.io.InputStream;
 import java.net.URL;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 /**
  * INTERNAL: An abstract super-class for {@link Region}, {@link Location}, {@link Image} ... .
@@ -432,7 +434,7 @@ public abstract class Element {
       return !imageContent.empty();
     }
     if (Settings.ImageCaching) {
-      return isCached(url());
+      return isCached(url()) || ImageCache.canReload(url());
     }
     return !getImageContent().empty();
   }
@@ -553,6 +555,14 @@ public abstract class Element {
   }
 
   private static Mat getMatFromURL(URL url, boolean isMaskImage) {
+    File imageFile = null;
+    if (Settings.ImageStore && "file".equals(url.getProtocol())) {
+      imageFile = new File(url.getPath());
+      Mat stored = ImageStore.load(imageFile, isMaskImage);
+      if (stored != null) {
+        return stored;
+      }
+    }
     byte[] bytes = null;
     Mat content = new Mat();
     try {
@@ -568,6 +578,9 @@ public abstract class Element {
         List<Mat> mats = SXOpenCV.extractMask(content, false);
         content = mats.get(1);
       }
+      if (imageFile != null && !content.empty()) {
+        ImageStore.save(imageFile, isMaskImage, content);
+      }
     }
     return content;
   }
@@ -887,12 +900,12 @@ public abstract class Element {
    */
   public void setWaitScanRate(float waitScanRate) {
     this.waitScanRate = waitScanRate;
-    scanWait = 1000 / waitScanRate;
   }
 
-  private void waitAfterScan(long before, long until) {
+  // the pacer gives the delay (fixed scan rate or adaptive, Settings.ScanCpuMax)
+  private void waitAfterScan(ScanPacer pacer, long before, long until) {
     long now = new Date().getTime();
-    long time = (long) (scanWait - now + before);
+    long time = pacer.delay(now - before);
     if (time < 10) {
       return;
     }
@@ -908,7 +921,6 @@ public abstract class Element {
   }
 
   private float waitScanRateDefault = Settings.WaitScanRate;
-  private double scanWait = 1000 / waitScanRateDefault;
   private float waitScanRate = waitScanRateDefault;
 
 
@@ -1052,15 +1064,30 @@ public abstract class Element {
     if (Settings.ImageCaching) {
       ImageCache.reset();
     }
+    FindAttributes.resetCache();
   }
 
   public static Map<URL, List<Object>> getCache() {
     return ImageCache.cache;
   }
 
+  /**
+   * @return the image cache counters: urls, bytes, maxBytes (pixel data), hits, misses, evictions
+   */
+  public static Map<String, Long> cacheCounters() {
+    return ImageCache.counters();
+  }
+
+  static void purgeCache(URL base) {
+    if (Settings.ImageCaching && base != null) {
+      ImageCache.purge(base);
+    }
+  }
+
   public static String cacheStats() {
     if (Settings.ImageCaching) {
-      return ImageCache.stats();
+      return ImageCache.stats() + (Settings.ImageStore ? " " + ImageStore.stats() : "")
+          + (Settings.FindTemplateCache > 0 ? " " + FindAttributes.cacheStats() : "");
     }
     return "";
   }
@@ -1088,6 +1115,28 @@ public abstract class Element {
     return element.getImageContent();
   }
 
+  /**
+   * INTERNAL: the content of the image, that is not released by the image cache until given back with doneContent
+   *
+   * @param element an image
+   * @return the content (empty if not valid)
+   */
+  public static Mat useContent(Element element) {
+    if (Settings.ImageCaching && element.url() != null) {
+      return ImageCache.use(element);
+    }
+    return element.getContent();
+  }
+
+  /**
+   * INTERNAL: the content got with useContent is no longer used (released, if evicted meanwhile)
+   *
+   * @param content as got with useContent
+   */
+  public static void doneContent(Mat content) {
+    ImageCache.done(content);
+  }
+
   public static Match getMatchLastSeen(Element element) {
     return ImageCache.getLastMatched(element);
   }
@@ -1103,7 +1152,28 @@ public abstract class Element {
     static int ITEM_LASTMOD = 2;
     static int ITEM_LASTSEEN = 3;
 
-    static Map<URL, List<Object>> cache = Collections.synchronizedMap(new HashMap<>());
+    // access ordered: iteration starts with the least recently used
+    static Map<URL, List<Object>> cache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true));
+    // contents in use (see use()): removed ones are released with the last done()
+    static Map<Mat, Integer> users = new IdentityHashMap<>();
+    static Set<Mat> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    static long bytes = 0;
+    static long hits = 0;
+    static long misses = 0;
+    static long evictions = 0;
+
+    private static long getBytes(Object content) {
+      if (null == content) {
+        return 0;
+      }
+      Mat mat = (Mat) content;
+      return mat.total() * mat.elemSize();
+    }
+
+    private static long getMaxBytes() {
+      return Settings.ImageCacheMax * 1024L * 1024L;
+    }
 
     public static boolean isCached(URL url) {
       List<Object> items = cache.get(url);
@@ -1123,10 +1193,93 @@ public abstract class Element {
       items.add(0.0); //reuse count
       items.add(isFile(url) ? new File(url.getPath()).lastModified() : -1); //to detect external change
       items.add(null); //last seen match
-      cache.put(url, items);
+      synchronized (cache) {
+        List<Object> oldItems = cache.put(url, items);
+        if (oldItems != null) {
+          bytes -= getBytes(oldItems.get(ITEM_MAT));
+          if (oldItems.get(ITEM_MAT) != mat) {
+            release(oldItems.get(ITEM_MAT));
+          }
+        }
+        bytes += getBytes(mat);
+        evict(url);
+      }
       return mat;
     }
 
+    // remove least recently used entries until the pixel bytes fit (the given entry is kept)
+    // the Mats are released (contents in use with the last done())
+    private static void evict(URL keep) {
+      long maxBytes = getMaxBytes();
+      if (maxBytes <= 0 || bytes <= maxBytes) {
+        return;
+      }
+      Iterator<Map.Entry<URL, List<Object>>> entries = cache.entrySet().iterator();
+      while (bytes > maxBytes && entries.hasNext()) {
+        Map.Entry<URL, List<Object>> entry = entries.next();
+        if (entry.getKey().equals(keep)) {
+          continue;
+        }
+        bytes -= getBytes(entry.getValue().get(ITEM_MAT));
+        entries.remove();
+        release(entry.getValue().get(ITEM_MAT));
+        evictions++;
+        Debug.log(3, "ImageCache: evicted: %s", entry.getKey());
+      }
+    }
+
+    // called with the cache lock held
+    private static void release(Object content) {
+      if (content == null) {
+        return;
+      }
+      Mat mat = (Mat) content;
+      if (users.containsKey(mat)) {
+        removed.add(mat);
+      } else {
+        mat.release();
+      }
+    }
+
+    static Mat use(Element element) {
+      // a content released meanwhile is empty and no longer cached: get it again
+      for (int n = 0; n < 3; n++) {
+        Mat mat = getMat(element);
+        synchronized (cache) {
+          if (!mat.empty()) {
+            users.merge(mat, 1, Integer::sum);
+            return mat;
+          }
+        }
+      }
+      return new Mat();
+    }
+
+    static void done(Mat mat) {
+      synchronized (cache) {
+        Integer count = users.get(mat);
+        if (count == null) {
+          return;
+        }
+        if (count > 1) {
+          users.put(mat, count - 1);
+        } else {
+          users.remove(mat);
+          if (removed.remove(mat)) {
+            mat.release();
+          }
+        }
+      }
+    }
+
+    // an image loaded before (has an url), that is no longer cached, is loaded again with the next use
+    static boolean canReload(URL url) {
+      if (url == null) {
+        return false;
+      }
+      return !isFile(url) || new File(url.getPath()).exists();
+    }
+
     static Match getLastMatched(Element element) {
       URL url = element.url();
       if (url == null) {
@@ -1157,7 +1310,18 @@ public abstract class Element {
       URL url = element.url();
       List<Object> items = cache.get(url);
       if (items == null) {
-        return new Mat();
+        if (url == null) {
+          return new Mat();
+        }
+        // evicted or purged: load again
+        synchronized (cache) {
+          misses++;
+        }
+        Mat content = getMatFromURL(url, element.isMaskImage());
+        if (content.empty()) {
+          return content;
+        }
+        return put(url, content);
       }
       Object content = items.get(ITEM_MAT);
       if (null == content) {
@@ -1166,7 +1330,14 @@ public abstract class Element {
       Mat newMat = possibleReload(element, url, items);
       if (element.isReloaded()) {
         content = newMat;
-        items.set(ITEM_MAT, content);
+        synchronized (cache) {
+          bytes += getBytes(content) - getBytes(items.get(ITEM_MAT));
+          release(items.get(ITEM_MAT));
+          items.set(ITEM_MAT, content);
+        }
+      }
+      synchronized (cache) {
+        hits++;
       }
       useCountUp(items);
       return (Mat) content;
@@ -1180,7 +1351,7 @@ public abstract class Element {
         if (modified > lastMod) {
           newContent = reload(url);
           if (!newContent.empty()) {
-            items.set(ITEM_COUNT, -1);
+            items.set(ITEM_COUNT, -1.0);
             items.set(ITEM_LASTMOD, modified);
             element.wasReloaded();
           }
@@ -1196,19 +1367,57 @@ public abstract class Element {
       }
     }
 
+    // remove all entries with an url starting with the given one (e.g. a folder in the image path)
+    static void purge(URL base) {
+      String prefix = base.toString().endsWith("/") ? base.toString() : base.toString() + "/";
+      synchronized (cache) {
+        Iterator<Map.Entry<URL, List<Object>>> entries = cache.entrySet().iterator();
+        while (entries.hasNext()) {
+          Map.Entry<URL, List<Object>> entry = entries.next();
+          if (entry.getKey().toString().startsWith(prefix)) {
+            bytes -= getBytes(entry.getValue().get(ITEM_MAT));
+            entries.remove();
+            release(entry.getValue().get(ITEM_MAT));
+            evictions++;
+          }
+        }
+      }
+    }
+
     static void reset() {
-      cache = Collections.synchronizedMap(new HashMap<>());
+      synchronized (cache) {
+        for (List<Object> items : cache.values()) {
+          release(items.get(ITEM_MAT));
+        }
+        cache.clear();
+        bytes = 0;
+      }
+    }
+
+    static Map<String, Long> counters() {
+      Map<String, Long> counters = new LinkedHashMap<>();
+      synchronized (cache) {
+        counters.put("urls", (long) cache.size());
+        counters.put("bytes", bytes);
+        counters.put("maxBytes", getMaxBytes());
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("evictions", evictions);
+      }
+      return counters;
     }
 
     public static String stats() {
-      int count = cache.size();
-      double size = 0;
+      int count;
       double used = 0;
-      for (List<Object> items : cache.values()) {
-        size += ((Mat) items.get(0)).width() * ((Mat) items.get(0)).height();
-        used += (Double) items.get(1);
+      synchronized (cache) {
+        count = cache.size();
+        for (List<Object> items : cache.values()) {
+          used += (Double) items.get(ITEM_COUNT);
+        }
       }
-      return String.format("ImageCache: urls(%d) size(%.0f KB) used(%.0f times)", count, size / 1000, used);
+      return String.format("ImageCache: urls(%d) size(%.0f KB) used(%.0f times) hits(%d) misses(%d) evicted(%d)",
+          count, bytes / 1000.0, used, hits, misses, evictions);
     }
   }
   //</editor-fold>
@@ -2012,7 +2221,7 @@ public abstract class Element {
     } catch (FindFailed findFailed) {
       return true;
     }
-    waitAfterScan(before, before + (int) (timeout * 1000));
+    waitAfterScan(new ScanPacer(getWaitScanRate()), before, before + (int) (timeout * 1000));
     long elapsed = new Date().getTime() - before;
     timeout = timeout - elapsed / 1000.0;
     if (timeout < 0) {
@@ -2160,6 +2369,23 @@ public abstract class Element {
     return mList;
   }
 
+  /**
+   * like findAny, but returns as soon as one of the targets is found (remaining searches are cancelled)
+   *
+   * @param args the targets
+   * @return the first match found (getIndex() is the target's position) or null if none is found
+   */
+  public Match findAnyFirst(Object... args) {
+    return findAnyFirstList(Arrays.asList(args));
+  }
+
+  public Match findAnyFirstList(List<Object> args) {
+    if (args == null || args.size() == 0) {
+      return null;
+    }
+    return FindPool.first(findAnyTasks(args.toArray()));
+  }
+
   public Match unionAny(Object... targets) {
     if (targets.length < 2) {
       return new Match(this);
@@ -2204,7 +2430,8 @@ public abstract class Element {
       return null;
     }
     Match mResult = null;
-    List<Match> mList = findAnyList(pList);
+    List<Match> mList = new ArrayList<>(findAnyList(pList));
+    mList.removeIf(Objects::isNull);
     if (mList.size() > 0) {
       Collections.sort(mList, (m1, m2) -> {
         double ms = m2.score() - m1.score();
@@ -2283,9 +2510,12 @@ public abstract class Element {
     while (true) {
       long startSearch, startWhat;
       long searchTime = 0;
-      Match matchResult;
+      Match matchResult = null;
       startWhat = new Date().getTime();
       findAttributes = new FindAttributes(target);
+      if (isOnScreen()) {
+        findAttributes.scaleContext(FindScale.context(getScreen()));
+      }
       whatTime = new Date().getTime() - startWhat;
       long before = new Date().getTime();
       long waitUntil = before + (int) (timeout * 1000);
@@ -2293,6 +2523,8 @@ public abstract class Element {
       boolean firstSearch = true;
       long whereTimeLS = 0;
       long searchTimeLS = 0;
+      Mat previousWhere = null;
+      ScanPacer pacer = new ScanPacer(getWaitScanRate());
       while (true) {
         if (firstSearch && isOnScreen() && shouldCheckLastSeen() && !findAll && !isVanish) {
           trace("checkLastSeen: enter");
@@ -2333,15 +2565,31 @@ public abstract class Element {
           whereTime = new Date().getTime() - startWhere;
         }
         startSearch = new Date().getTime();
-        matchResult = SXOpenCV.findMatch(where, findAttributes, findAll);
+        List<Rect> changes = null;
+        if (previousWhere != null && Settings.WaitChangeAware) {
+          changes = SXOpenCV.getChangedRects(previousWhere, where);
+        }
+        if (changes != null && changes.isEmpty()) {
+          // the result of the last search is still valid (also for waitVanish)
+          trace("doFind: frame unchanged - search skipped");
+        } else {
+          matchResult = SXOpenCV.findMatchWaiting(where, findAttributes, findAll, changes, isVanish);
+        }
+        if (changes != null) {
+          pacer.changed(!changes.isEmpty());
+        } else if (!Settings.WaitChangeAware) {
+          pacer.changed(where);
+        }
+        previousWhere = where;
         searchTime = new Date().getTime() - startSearch;
         if (timeout < 0.01) {
           break;
         }
         if ((isVanish && matchResult == null) || (!isVanish && matchResult != null) || before > waitUntil) {
+          trace("doFind: scans: %s", pacer);
           break;
         }
-        waitAfterScan(before, waitUntil);
+        waitAfterScan(pacer, before, waitUntil);
         before = new Date().getTime();
         firstSearch = false;
       }
@@ -2380,59 +2628,24 @@ public abstract class Element {
   }
 
   private List<Match> dofindAny(Object[] targets) {
-    class FindSub implements Runnable {
-      Element element;
-      Object target;
-      int nTarget;
-      Match[] matches;
-      Boolean finished = false;
-
-      FindSub(Element element, Object target, int nTarget, Match[] matches) {
-        this.element = element.getImage();
-        this.target = target;
-        this.nTarget = nTarget;
-        this.matches = matches;
-      }
-
-      public boolean hasFinished() {
-        return hasFinished(false);
-      }
-
-      public synchronized boolean hasFinished(boolean state) {
-        if (state) {
-          finished = true;
-        }
-        return finished;
-      }
-
-      @Override
-      public void run() {
-        try {
-          Match match = element.find(target);
-          matches[nTarget] = match;
-          matches[nTarget].setIndex(nTarget);
-        } catch (Exception ex) {
-        }
-        hasFinished(true);
-      }
-    }
+    return FindPool.all(findAnyTasks(targets));
+  }
 
-    Match[] matches = new Match[targets.length];
-    FindSub[] subs = new FindSub[targets.length];
-    int nTarget = 0;
+  private List<Callable<Match>> findAnyTasks(Object[] targets) {
     Image screenImage = this.getImage();
-    for (Object target : targets) {
-      subs[nTarget] = new FindSub(screenImage, target, nTarget, matches);
-      new Thread(subs[nTarget++]).start();
-    }
-    boolean all = false;
-    while (!all) {
-      all = true;
-      for (FindSub sub : subs) {
-        all &= sub.hasFinished();
-      }
+    List<Callable<Match>> finds = new ArrayList<>();
+    for (int n = 0; n < targets.length; n++) {
+      Object target = targets[n];
+      int nTarget = n;
+      finds.add(() -> {
+        Match match = screenImage.find(target);
+        if (match != null) {
+          match.setIndex(nTarget);
+        }
+        return match;
+      });
     }
-    return Arrays.asList(matches);
+    return finds;
   }
 
 //TODO   private Match findInImage(ScreenImage base, Object target) throws IOException {
@@ -7,6 +7,8 @@ import org.opencv.core.*;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.FindPool;
+import org.sikuli.script.support.MatchPeaks;
 import org.sikuli.script.support.RunTime;
 import org.sikuli.script.support.SXOpenCV;
 
@@ -14,6 +16,7 @@ import java.awt.Color;
 import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.regex.Matcher;
 
 public class Finder implements Matches {
@@ -84,7 +87,11 @@ public class Finder implements Matches {
    }
 
   protected void setScreenImage(ScreenImage simg) {
-    _findInput.setSource(SXOpenCV.makeMat(simg.getBufferedImage()));
+    setSource(simg.getContent());
+  }
+
+  protected void setSource(Mat source) {
+    _findInput.setSource(source);
   }
 //</editor-fold>
 
@@ -219,6 +226,30 @@ public class Finder implements Matches {
     return find(new Image(img));
   }
 
+  /**
+   * INTERNAL: search each of the given images in the Finder's image
+   * <br>the searches run in parallel on the same prepared base image
+   *
+   * @param images the images
+   * @return per image the best match (null if not found or not valid)
+   */
+  public List<Match> findEach(List<Image> images) {
+    List<Callable<Match>> tasks = new ArrayList<>();
+    for (Image img : images) {
+      tasks.add(() -> {
+        Finder finder = new Finder();
+        finder._region = _region;
+        finder.screenFinder = screenFinder;
+        finder._findInput.shareSource(_findInput);
+        if (img == null || finder.find(img) == null || !finder.hasNext()) {
+          return null;
+        }
+        return finder.next();
+      });
+    }
+    return FindPool.all(tasks);
+  }
+
   public List<Region> findChanges(Object changedImage) {
     if (SX.isNull(changedImage)) {
       return null;
@@ -541,9 +572,7 @@ public class Finder implements Matches {
     }
 
     private final float resizeMinFactor = 1.5f;
-    private final float[] resizeLevels = new float[]{1f, 0.4f};
     private boolean isCheckLastSeen = false;
-    private static final double downSimDiff = 0.15;
 
     private boolean isWord() {
       return fInput.getTextLevel() == OCR.PAGE_ITERATOR_LEVEL_WORD;
@@ -585,80 +614,25 @@ public class Finder implements Matches {
       FindInput2 findInput = fInput;
       log.trace("doFindImage: start %s", findInput);
       mBase = findInput.getBase();
-      boolean success = false;
       long begin_lap = 0;
       long begin_find = new Date().getTime();
       Core.MinMaxLocResult mMinMax = null;
 
-      double rfactor = 0;
-      boolean downSizeFound = false;
-      double downSizeScore = -1;
-      double downSizeWantedScore = 0;
-      Mat findWhere = SXOpenCV.newMat();
-      Mat findWhat = SXOpenCV.newMat();
-
-      boolean trueOrFalse = findInput.shouldSearchDownsized(resizeMinFactor);
-      //TODO search downsized?
-      trueOrFalse = false;
-      if (trueOrFalse) {
-        // ************************************************* search in downsized
+      if (Settings.FindDownsized && findInput.shouldSearchDownsized(resizeMinFactor) && !findInput.isPlainColor()) {
+        // ************************************************* search downsized and refine in original
         begin_lap = new Date().getTime();
-        double imgFactor = findInput.getResizeFactor();
-        Size sizeBase, sizePattern;
-        mResult = null;
-        for (double factor : resizeLevels) {
-          rfactor = factor * imgFactor;
-          sizeBase = new Size(this.mBase.cols() / rfactor, this.mBase.rows() / rfactor);
-          sizePattern = new Size(findInput.getTarget().cols() / rfactor, findInput.getTarget().rows() / rfactor);
-          Imgproc.resize(this.mBase, findWhere, sizeBase, 0, 0, Imgproc.INTER_AREA);
-          Imgproc.resize(findInput.getTarget(), findWhat, sizePattern, 0, 0, Imgproc.INTER_AREA);
-          mResult = doFindMatch(findWhat, findWhere, findInput);
-          mMinMax = Core.minMaxLoc(mResult);
-          downSizeWantedScore = ((int) ((findInput.getScore() - downSimDiff) * 100)) / 100.0;
-          downSizeScore = mMinMax.maxVal;
-          if (downSizeScore > downSizeWantedScore) {
-            downSizeFound = true;
-            break;
-          }
-        }
-        log.trace("downSizeFound: %s", downSizeFound);
-        log.trace("doFindImage: down: %%%.2f %d msec", 100 * mMinMax.maxVal, new Date().getTime() - begin_lap);
-      }
-      findWhere = this.mBase;
-      trueOrFalse = !findInput.isFindAll() && downSizeFound;
-      if (trueOrFalse) {
-        // ************************************* check after downsized success
-        if (findWhere.size().equals(findInput.getTarget().size())) {
-          // trust downsized mResult, if images have same size
-          return new FindResult2(mResult, findInput);
-        } else {
-          int maxLocX = (int) (mMinMax.maxLoc.x * rfactor);
-          int maxLocY = (int) (mMinMax.maxLoc.y * rfactor);
-          begin_lap = new Date().getTime();
-          int margin = ((int) findInput.getResizeFactor()) + 1;
-          Rectangle rSub = new Rectangle(Math.max(0, maxLocX - margin), Math.max(0, maxLocY - margin),
-                  Math.min(findInput.getTarget().width() + 2 * margin, findWhere.width()),
-                  Math.min(findInput.getTarget().height() + 2 * margin, findWhere.height()));
-          Rectangle rWhere = new Rectangle(0, 0, findWhere.cols(), findWhere.rows());
-          Rectangle rSubNew = rWhere.intersection(rSub);
-          Rect rectSub = new Rect(rSubNew.x, rSubNew.y, rSubNew.width, rSubNew.height);
-          mResult = doFindMatch(findInput.getTarget(), findWhere.submat(rectSub), findInput);
-          mMinMax = Core.minMaxLoc(mResult);
-          double maxVal = mMinMax.maxVal;
-          double wantedScore = findInput.getScore();
-          if (maxVal > wantedScore) {
-            findResult = new FindResult2(mResult, findInput, new int[]{rectSub.x, rectSub.y});
-          }
-          if (SX.isNotNull(findResult)) {
-            log.trace("doFindImage after down: %%%.2f(?%%%.2f) %d msec",
-                    maxVal * 100, wantedScore * 100, new Date().getTime() - begin_lap);
-          }
+        SXOpenCV.DownsizedMatch downsized = SXOpenCV.findMatchDownsized(mBase, findInput.getTarget(),
+                findInput.getScore(), (where, what) -> doFindMatch(what, where, findInput));
+        if (SX.isNotNull(downsized)) {
+          findResult = new FindResult2(downsized.result, findInput, new int[]{downsized.offX, downsized.offY});
+          log.trace("doFindImage: downsized: %%%.4f (?%.0f) %d msec",
+                  downsized.score * 100, findInput.getScore() * 100, new Date().getTime() - begin_lap);
         }
       }
       // ************************************** search in original
-      if (downSizeScore < 0) {
+      if (SX.isNull(findResult)) {
         begin_lap = new Date().getTime();
-        mResult = doFindMatch(findInput.getTarget(), findWhere, findInput);
+        mResult = doFindMatch(findInput.getTarget(), mBase, findInput);
         mMinMax = Core.minMaxLoc(mResult);
         if (!isCheckLastSeen) {
           log.trace("doFindImage: in original: %%%.4f (?%.0f) %d msec %s",
@@ -680,7 +654,12 @@ public class Finder implements Matches {
       } else {
         Mat mWhere = where;
         if (findInput.isGray()) {
-          Imgproc.cvtColor(where, mWhere, Imgproc.COLOR_BGR2GRAY);
+          if (where == findInput.getBase()) {
+            mWhere = findInput.getBaseGray();
+          } else {
+            mWhere = SXOpenCV.newMat();
+            Imgproc.cvtColor(where, mWhere, Imgproc.COLOR_BGR2GRAY);
+          }
         }
         if (!findInput.isPlainColor()) {
           if (findInput.hasMask()) {
@@ -693,11 +672,14 @@ public class Finder implements Matches {
           Mat wherePlain = mWhere;
           Mat whatPlain = what;
           if (findInput.isBlack()) {
+            // not in place: the base might be shared
+            wherePlain = SXOpenCV.newMat();
+            whatPlain = SXOpenCV.newMat();
             Core.bitwise_not(mWhere, wherePlain);
             Core.bitwise_not(what, whatPlain);
           }
           if (findInput.hasMask()) {
-            Imgproc.matchTemplate(wherePlain, what, mResult, Imgproc.TM_SQDIFF_NORMED, findInput.getMask());
+            Imgproc.matchTemplate(wherePlain, whatPlain, mResult, Imgproc.TM_SQDIFF_NORMED, findInput.getMask());
           } else {
             Imgproc.matchTemplate(wherePlain, whatPlain, mResult, Imgproc.TM_SQDIFF_NORMED);
           }
@@ -725,10 +707,12 @@ public class Finder implements Matches {
       } else {
         text = text.trim();
       }
+      // one OCR pass: lines and words are taken from the layout
+      TextRecognizer.Layout layout = OCR.readLayout(bimg);
       if (textLevel == OCR.PAGE_ITERATOR_LEVEL_LINE) {
-        wordsFound = OCR.readLines(bimg);
+        wordsFound = layout.getLines();
       } else if (textLevel == OCR.PAGE_ITERATOR_LEVEL_WORD) {
-        wordsFound = OCR.readWords(bimg);
+        wordsFound = layout.getWords();
       } else {
         globalSearch = true;
         textSplit = text.split("\\s");
@@ -738,12 +722,15 @@ public class Finder implements Matches {
             pattern = java.util.regex.Pattern.compile(textSplit[0] + ".*?" + textSplit[2]);
           }
         }
-        wordsFound = OCR.readLines(bimg);
+        wordsFound = layout.getLines();
       }
       timer = new Date().getTime() - timer;
       List<Match> wordsMatch = new ArrayList<>();
       if (!text.isEmpty()) {
-        for (Match match : wordsFound) {
+        List<Match> candidates = new ArrayList<>();
+        List<List<Match>> wordsInLines = new ArrayList<>();
+        for (int nFound = 0; nFound < wordsFound.size(); nFound++) {
+          Match match = wordsFound.get(nFound);
           if (isWord()) {
             if (!isTextMatching(match.getText(), text, pattern)) {
               continue;
@@ -759,19 +746,22 @@ public class Finder implements Matches {
           } else {
             continue;
           }
-          Rectangle wordOrLine = match.getRect();
+          candidates.add(match);
+          if (globalSearch) {
+            wordsInLines.add(layout.getWords(nFound));
+          }
+        }
+        for (int nMatch = 0; nMatch < candidates.size(); nMatch++) {
+          Match match = candidates.get(nMatch);
           List<Match> wordsInLine;
           if (globalSearch) {
-            BufferedImage bLine = Image.createSubimage(bimg, wordOrLine);
-            wordsInLine = OCR.readWords(bLine);
+            wordsInLine = wordsInLines.get(nMatch);
             if (singleWord) {
               for (Match wordInLine : wordsInLine) {
                 if (!isTextContained(wordInLine.getText().toLowerCase(), text.toLowerCase(), null)) {
                   continue;
                 }
                 Rectangle rword = new Rectangle(wordInLine.getRect());
-                rword.x += wordOrLine.x;
-                rword.y += wordOrLine.y;
                 wordsMatch.add(new Match(rword, wordInLine.score(), wordInLine.getText(), where));
               }
             } else {
@@ -797,8 +787,6 @@ public class Finder implements Matches {
               if (startText > -1 && endText > -1) {
                 Rectangle rword = (new Rectangle(wordsInLine.get(startText).getRect())).
                         union(new Rectangle(wordsInLine.get(endText).getRect()));
-                rword.x += wordOrLine.x;
-                rword.y += wordOrLine.y;
                 double score = (wordsInLine.get(startText).score() + wordsInLine.get(startText).score()) / 2;
                 String foundText = wordsInLine.get(startText).getText() + " ... " + wordsInLine.get(endText);
                 wordsMatch.add(new Match(rword, score, foundText, where));
@@ -847,41 +835,10 @@ public class Finder implements Matches {
 
     public static List<Region> findChanges(FindInput2 findInput) {
       findInput.setAttributes();
-      Mat previousGray = SXOpenCV.newMat();
-      Mat nextGray = SXOpenCV.newMat();
-      Mat mDiffAbs = SXOpenCV.newMat();
-      Mat mDiffThresh = SXOpenCV.newMat();
-      Imgproc.cvtColor(findInput.getBase(), previousGray, toGray);
-      Imgproc.cvtColor(findInput.getTarget(), nextGray, toGray);
-      Core.absdiff(previousGray, nextGray, mDiffAbs);
-      Imgproc.threshold(mDiffAbs, mDiffThresh, PIXEL_DIFF_THRESHOLD, 0.0, Imgproc.THRESH_TOZERO);
-
       List<Region> rectangles = new ArrayList<>();
-      if (Core.countNonZero(mDiffThresh) > IMAGE_DIFF_THRESHOLD) {
-        Imgproc.threshold(mDiffAbs, mDiffAbs, PIXEL_DIFF_THRESHOLD, 255, Imgproc.THRESH_BINARY);
-        Imgproc.dilate(mDiffAbs, mDiffAbs, SXOpenCV.newMat());
-        Mat se = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5, 5));
-        Imgproc.morphologyEx(mDiffAbs, mDiffAbs, Imgproc.MORPH_CLOSE, se);
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-        Mat mHierarchy = SXOpenCV.newMat();
-        Imgproc.findContours(mDiffAbs, contours, mHierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-        for (MatOfPoint contour : contours) {
-          int x1 = 99999;
-          int y1 = 99999;
-          int x2 = 0;
-          int y2 = 0;
-          List<org.opencv.core.Point> points = contour.toList();
-          for (Point point : points) {
-            int x = (int) point.x;
-            int y = (int) point.y;
-            if (x < x1) x1 = x;
-            if (x > x2) x2 = x;
-            if (y < y1) y1 = y;
-            if (y > y2) y2 = y;
-          }
-          Region rect = new Region(x1, y1, x2 - x1, y2 - y1);
-          rectangles.add(rect);
-        }
+      for (Rect rect : SXOpenCV.getChanges(findInput.getBase(), findInput.getTarget(),
+          PIXEL_DIFF_THRESHOLD, IMAGE_DIFF_THRESHOLD)) {
+        rectangles.add(new Region(rect.x, rect.y, rect.width, rect.height));
       }
       return rectangles;
     }
@@ -889,23 +846,8 @@ public class Finder implements Matches {
     public static List<Region> contoursToRectangle(List<MatOfPoint> contours) {
       List<Region> rects = new ArrayList<>();
       for (MatOfPoint contour : contours) {
-        //log.trace("*** new contour");
-        int x1 = 99999;
-        int y1 = 99999;
-        int x2 = 0;
-        int y2 = 0;
-        List<org.opencv.core.Point> points = contour.toList();
-        for (Point point : points) {
-          int x = (int) point.x;
-          int y = (int) point.y;
-          //log.trace("x: %d y: %d", x, y);
-          if (x < x1) x1 = x;
-          if (x > x2) x2 = x;
-          if (y < y1) y1 = y;
-          if (y > y2) y2 = y;
-        }
-        Region rect = new Region(x1, y1, x2 - x1, y2 - y1);
-        rects.add(rect);
+        Rect rect = Imgproc.boundingRect(contour);
+        rects.add(new Region(rect.x, rect.y, rect.width, rect.height));
       }
       return rects;
     }
@@ -1039,15 +981,43 @@ public class Finder implements Matches {
     }
 
     private Mat source = null;
+    private Mat sourceGray = null;
+    private FindInput2 sourceOwner = null;
 
     public void setSource(Mat source) {
       this.source = source;
+      sourceGray = null;
+      sourceOwner = null;
+    }
+
+    // use the base of the given input (the gray version is converted only once)
+    void shareSource(FindInput2 owner) {
+      source = owner.source;
+      sourceGray = null;
+      sourceOwner = owner;
     }
 
     public Mat getBase() {
       return source;
     }
 
+    public Mat getBaseGray() {
+      if (sourceOwner != null) {
+        return sourceOwner.getBaseGray();
+      }
+      synchronized (this) {
+        if (sourceGray == null) {
+          if (source.channels() == 1) {
+            sourceGray = source;
+          } else {
+            sourceGray = SXOpenCV.newMat();
+            Imgproc.cvtColor(source, sourceGray, Imgproc.COLOR_BGR2GRAY);
+          }
+        }
+        return sourceGray;
+      }
+    }
+
     boolean isPattern = false;
 
     public void setIsPattern() {
@@ -1223,23 +1193,9 @@ public class Finder implements Matches {
       offY = off[1];
     }
 
-    private Core.MinMaxLocResult resultMinMax = null;
-
-    private double currentScore = -1;
-    double targetScore = -1;
-    double lastScore = -1;
-    double scoreMeanDiff = -1;
-    double scoreMaxDiff = 0.005;
-    int matchCount = 0;
-
-    private int currentX = -1;
-    private int currentY = -1;
-    private int baseW = -1;
-    private int baseH = -1;
+    private MatchPeaks peaks = null;
     private int targetW = -1;
     private int targetH = -1;
-    private int marginX = -1;
-    private int marginY = -1;
 
     public boolean hasNext() {
       if (findInput.isText()) {
@@ -1248,40 +1204,14 @@ public class Finder implements Matches {
         }
         return false;
       }
-      resultMinMax = Core.minMaxLoc(result);
-      currentScore = resultMinMax.maxVal;
-      currentX = (int) resultMinMax.maxLoc.x;
-      currentY = (int) resultMinMax.maxLoc.y;
-      if (lastScore < 0) {
-        lastScore = currentScore;
-        targetScore = findInput.getScore();
-        baseW = result.width();
-        baseH = result.height();
+      if (peaks == null) {
         targetW = findInput.getTarget().width();
         targetH = findInput.getTarget().height();
-        marginX = (int) (targetW * 0.8);
-        marginY = (int) (targetH * 0.8);
-        matchCount = 0;
+        peaks = new MatchPeaks(result, findInput.getScore(), (int) (targetW * 0.8), (int) (targetH * 0.8),
+                !findInput.isPattern);
+        result = null;
       }
-      boolean isMatch = false;
-      if (currentScore > targetScore) {
-        if (matchCount == 0) {
-          isMatch = true;
-        } else if (matchCount == 1) {
-          scoreMeanDiff = lastScore - currentScore;
-          isMatch = true;
-        } else {
-          double scoreDiff = lastScore - currentScore;
-          if (findInput.isPattern || scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
-            scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
-            isMatch = true;
-          }
-        }
-        if (!isMatch) {
-          Debug.log(3, "findAll: (%d) stop: %.4f (%.4f) %s", matchCount, currentScore, scoreMeanDiff, findInput);
-        }
-      }
-      return isMatch;
+      return peaks.hasNext();
     }
 
     public Match next() {
@@ -1290,29 +1220,13 @@ public class Finder implements Matches {
         if (findInput.isText()) {
           return matches.remove(0);
         } else {
-          match = new Match(currentX + offX, currentY + offY, targetW, targetH, currentScore, null);
-          matchCount++;
-          lastScore = currentScore;
-          //int margin = getPurgeMargin();
-          Range rangeX = new Range(Math.max(currentX - marginX, 0), Math.min(currentX + marginX, result.width()));
-          Range rangeY = new Range(Math.max(currentY - marginY, 0), Math.min(currentY + marginY, result.height()));
-          result.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(0f));
+          match = new Match(peaks.getX() + offX, peaks.getY() + offY, targetW, targetH, peaks.getScore(), null);
+          peaks.next();
         }
       }
       return match;
     }
 
-    private int getPurgeMargin() {
-      if (currentScore < 0.95) {
-        return 4;
-      } else if (currentScore < 0.85) {
-        return 8;
-      } else if (currentScore < 0.71) {
-        return 16;
-      }
-      return 2;
-    }
-
     double bestScore = 0;
     double meanScore = 0;
     double stdDevScore = 0;
@@ -6,6 +6,7 @@ package org.sikuli.script;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.PathIndex;
 import org.sikuli.script.support.RunTime;
 
 import java.io.BufferedReader;
@@ -109,6 +110,9 @@ public class ImagePath {
       }
       bundle = "";
     }
+    if (Settings.ImagePathIndex) {
+      log(lvl, "index: %s", PathIndex.stats());
+    }
   }
 
   /**
@@ -125,15 +129,19 @@ public class ImagePath {
       if (pathEntry == null) {
         continue;
       }
-      imageCachePurge();
+      imageCachePurge(pathEntry.pathURL);
+      if (pathEntry != getBundle()) {
+        pathEntry.closeIndex();
+      }
     }
     PathEntry bundlePath = getBundle();
     imagePaths.clear();
     imagePaths.add(bundlePath);
   }
 
-  //TODO image cache purge ???
-  private static void imageCachePurge() {
+  // remove the images loaded from this path entry from the image cache
+  private static void imageCachePurge(URL pathURL) {
+    Element.purgeCache(pathURL);
   }
 
   //</editor-fold>
@@ -178,6 +186,25 @@ public class ImagePath {
       return path != null && pathURL != null;
     }
 
+    private PathIndex index = null;
+
+    /**
+     * @return the file name index of this entry (built with the first use)
+     */
+    public synchronized PathIndex getIndex() {
+      if (index == null) {
+        index = new PathIndex(pathURL);
+      }
+      return index;
+    }
+
+    synchronized void closeIndex() {
+      if (index != null) {
+        index.close();
+        index = null;
+      }
+    }
+
     public String getPath() {
       if (pathURL == null) {
         return "-- empty --";
@@ -505,7 +532,7 @@ public class ImagePath {
    */
   private static boolean remove(URL pURL) {
     if (bundleEquals(pURL)) {
-      imageCachePurge();
+      imageCachePurge(pURL);
       return true;
     }
     Iterator<PathEntry> it = imagePaths.subList(1, imagePaths.size()).iterator();
@@ -516,7 +543,8 @@ public class ImagePath {
         continue;
       }
       it.remove();
-      imageCachePurge();
+      imageCachePurge(pURL);
+      pathEntry.closeIndex();
     }
     return true;
   }
@@ -588,7 +616,10 @@ public class ImagePath {
     }
     if (folder.exists()) {
       PathEntry oldBundle = getBundle();
-      imageCachePurge();
+      if (oldBundle != null) {
+        imageCachePurge(oldBundle.pathURL);
+        oldBundle.closeIndex();
+      }
       PathEntry pathEntry = new PathEntry(folder);
       if (pathEntry.isValid()) {
         setBundle(pathEntry);
@@ -628,34 +659,30 @@ public class ImagePath {
   /**
    * try to find the given relative image file name on the image path<br>
    * starting from entry 0, the first found existence is taken<br>
-   * absolute file names are checked for existence
+   * absolute file names are checked for existence<br>
+   * with Settings.ImagePathIndex the file names of the path entries are looked up in an index first
    *
    * @param imageFile relative or absolute file
    * @return a valid URL or null if not found/exists
    */
   public static URL find(File imageFile) {
     URL fURL = null;
-    String proto = "";
     String imageFileName = imageFile.getPath();
     if (imageFile.isAbsolute() || imageFileName.startsWith("\\")) {
       fURL = Element.createURL(imageFile);
     } else {
-      for (PathEntry path : getPaths()) {
-        if (path == null) {
-          continue;
-        }
-        proto = path.pathURL.getProtocol();
-        if ("file".equals(proto)) {
-          imageFile = new File(path.pathURL.getPath(), imageFileName);
-          if (imageFile.exists()) {
-            fURL = Element.createURL(imageFile);
+      if (Settings.ImagePathIndex) {
+        // entries not covered by their index are searched as before
+        fURL = findIndexed(imageFileName);
+      } else {
+        for (PathEntry path : getPaths()) {
+          if (path == null) {
+            continue;
+          }
+          fURL = findInPath(path, imageFileName);
+          if (fURL != null) {
             break;
           }
-        } else if ("jar".equals(proto) || proto.startsWith("http")) { //TODO imagepath jar and net
-          fURL = FileManager.getURLForContentFromURL(path.pathURL, imageFileName);
-        }
-        if (fURL != null) {
-          break;
         }
       }
       if (fURL == null) {
@@ -670,6 +697,40 @@ public class ImagePath {
     return find(new File(imageFileName));
   }
 
+  private static URL findIndexed(String imageFileName) {
+    for (PathEntry path : getPaths()) {
+      if (path == null || path.pathURL == null) {
+        continue;
+      }
+      PathIndex index = path.getIndex();
+      URL fURL = index.find(imageFileName);
+      if (fURL != null) {
+        return fURL;
+      }
+      if (!index.covers(imageFileName)) {
+        fURL = findInPath(path, imageFileName);
+        if (fURL != null) {
+          index.found(imageFileName, fURL);
+          return fURL;
+        }
+      }
+    }
+    return null;
+  }
+
+  private static URL findInPath(PathEntry path, String imageFileName) {
+    String proto = path.pathURL.getProtocol();
+    if ("file".equals(proto)) {
+      File imageFile = new File(path.pathURL.getPath(), imageFileName);
+      if (imageFile.exists()) {
+        return Element.createURL(imageFile);
+      }
+    } else if ("jar".equals(proto) || proto.startsWith("http")) { //TODO imagepath jar and net
+      return FileManager.getURLForContentFromURL(path.pathURL, imageFileName);
+    }
+    return null;
+  }
+
   private static URL normalize(URL url) {
     String path = url.getPath();
     if ("file".equals(url.getProtocol())) {
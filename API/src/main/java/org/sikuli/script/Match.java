@@ -3,12 +3,10 @@
  */
 package org.sikuli.script;
 
-import org.opencv.core.Core;
 import org.opencv.core.Mat;
-import org.opencv.core.Range;
-import org.opencv.core.Scalar;
 import org.sikuli.script.support.FindAttributes;
 import org.sikuli.script.support.IScreen;
+import org.sikuli.script.support.MatchPeaks;
 
 import java.awt.*;
 import java.util.ArrayList;
@@ -132,6 +130,7 @@ public class Match extends Region implements Matches, Comparable<Match> {
     }
     lastFindTime = m.lastFindTime;
     lastSearchTime = m.lastSearchTime;
+    resultScale = m.resultScale;
     setScreen(m.getScreen());
   }
 
@@ -425,8 +424,10 @@ public class Match extends Region implements Matches, Comparable<Match> {
       match = new Match();
       match.setX(where.x + matchResult.x);
       match.setY(where.y + matchResult.y);
-      match.setW(findAttributes.target().w);
-      match.setH(findAttributes.target().h);
+      // multi-scale search: found with the scaled target
+      match.setW((int) Math.round(findAttributes.target().w * matchResult.resultScale));
+      match.setH((int) Math.round(findAttributes.target().h * matchResult.resultScale));
+      match.resultScale = matchResult.resultScale;
       match.score(matchResult.score());
       match.setTargetOffset(findAttributes.target().offset());
       match.setImage(findAttributes.originalTarget());
@@ -435,6 +436,8 @@ public class Match extends Region implements Matches, Comparable<Match> {
       match.lastSearchTime = times[1];
       match.times = times;
       match.result = matchResult.result;
+      match.offX = where.x;
+      match.offY = where.y;
     }
     return match;
   }
@@ -451,79 +454,50 @@ public class Match extends Region implements Matches, Comparable<Match> {
   //</editor-fold>
 
   //<editor-fold desc="21 Iterator iterate">
-  private Core.MinMaxLocResult resultMinMax = null;
+  private MatchPeaks peaks = null;
+  private int offX = 0;
+  private int offY = 0;
+  private double resultScale = 1;
 
-  private double currentScore = -1;
-  double targetScore = -1;
-  double lastScore = -1;
-  double scoreMeanDiff = -1;
-  int matchCount = 0;
+  /**
+   * @return the factor the target was found with (multi-scale search), else 1
+   */
+  public double resultScale() {
+    return resultScale;
+  }
 
-  private int currentX = -1;
-  private int currentY = -1;
-  private int targetW = -1;
-  private int targetH = -1;
-  private int marginX = -1;
-  private int marginY = -1;
+  /**
+   * INTERNAL: the search result was found with the target scaled by factor
+   *
+   * @param factor the scale factor
+   */
+  public void resultScale(double factor) {
+    resultScale = factor;
+  }
 
   @Override
   public boolean hasNext() {
-    resultMinMax = Core.minMaxLoc(result);
-    currentScore = resultMinMax.maxVal;
-    currentX = (int) resultMinMax.maxLoc.x;
-    currentY = (int) resultMinMax.maxLoc.y;
-    if (lastScore < 0) {
-      lastScore = currentScore;
-      targetScore = image.similarity();
-      targetW = image.w;
-      targetH = image.h;
-      marginX = (int) (targetW * 0.8);
-      marginY = (int) (targetH * 0.8);
-      matchCount = 0;
-    }
-    boolean isMatch = false;
-    if (currentScore > targetScore) {
-      if (matchCount == 0) {
-        isMatch = true;
-      } else if (matchCount == 1) {
-        scoreMeanDiff = lastScore - currentScore;
-        isMatch = true;
-      } else {
-        double scoreDiff = lastScore - currentScore;
-        if (scoreDiff <= (scoreMeanDiff + 0.01)) { // 0.005
-          scoreMeanDiff = ((scoreMeanDiff * matchCount) + scoreDiff) / (matchCount + 1);
-          isMatch = true;
-        }
+    if (peaks == null) {
+      if (result == null) {
+        return false;
       }
+      peaks = new MatchPeaks(result, image.similarity(), (int) (image.w * resultScale * 0.8),
+          (int) (image.h * resultScale * 0.8), true);
+      result = null;
     }
-    return isMatch;
+    return peaks.hasNext();
   }
 
   @Override
   public Match next() {
     Match match = null;
     if (hasNext()) {
-      match = new Match(currentX, currentY, targetW, targetH, currentScore, null);
-      matchCount++;
-      lastScore = currentScore;
-      //int margin = getPurgeMargin();
-      Range rangeX = new Range(Math.max(currentX - marginX, 0), Math.min(currentX + marginX, result.width()));
-      Range rangeY = new Range(Math.max(currentY - marginY, 0), Math.min(currentY + marginY, result.height()));
-      result.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(0f));
+      match = new Match(peaks.getX() + offX, peaks.getY() + offY, (int) Math.round(image.w * resultScale),
+          (int) Math.round(image.h * resultScale), peaks.getScore(), null);
+      peaks.next();
     }
     return match;
   }
-
-  private int getPurgeMargin() {
-    if (currentScore < 0.95) {
-      return 4;
-    } else if (currentScore < 0.85) {
-      return 8;
-    } else if (currentScore < 0.71) {
-      return 16;
-    }
-    return 2;
-  }
   //</editor-fold>
 
   //<editor-fold desc="025 as List / Match">
@@ -6,6 +6,7 @@ package org.sikuli.script;
 
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.support.FindPool;
 
 import java.awt.Font;
 import java.awt.FontMetrics;
@@ -14,11 +15,13 @@ import java.awt.Toolkit;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * Static helper class for OCR via Tess4J/Tesseract.
  * <p>
- * The methods in this class are not threadsafe.
+ * OCR can run in parallel threads (Tesseract engines are pooled per Options),
+ * but an Options set must not be changed while it is in use.
  * @see <a href="https://sikulix-2014.readthedocs.io/en/latest/textandocr.html">SikuliX docs: Text and OCR</a>
  */
 public class OCR {
@@ -124,6 +127,35 @@ public class OCR {
    */
   public static void status() {
     Debug.logp("Global settings " + globalOptions().toString());
+    long[] engines = TextRecognizer.engineCounters();
+    Debug.logp("Tesseract engines: %d (created: %d reused: %d)", engines[0], engines[1], engines[2]);
+    if (Settings.OcrCache) {
+      Debug.logp("OCR result cache: %s", cacheCounters());
+    }
+  }
+
+  /**
+   * counters of the OCR result cache (Settings.OcrCache) to tune its size and time.
+   * <p>entries, maxEntries, hits, misses, expired, evictions
+   * @return the counters by name
+   */
+  public static Map<String, Long> cacheCounters() {
+    return TextRecognizer.ResultCache.counters();
+  }
+
+  /**
+   * clears the OCR result cache and its counters.
+   */
+  public static void cacheReset() {
+    TextRecognizer.ResultCache.reset();
+  }
+
+  /**
+   * frees the Tesseract engines kept ready for the next OCR (tessdata loaded).
+   * <p>they are created again when needed (engines currently in use are freed when done)
+   */
+  public static void closeEngines() {
+    TextRecognizer.closeEngines();
   }
   //</editor-fold>
 
@@ -279,6 +311,128 @@ public class OCR {
   }
   //</editor-fold>
 
+  //<editor-fold desc="24 Read many sources in parallel">
+  /**
+   * Reads text from each of the given sources in parallel.
+   * <p>Uses the global options.
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @return the texts in the order of the sources
+   */
+  public static <SFIRBS> List<String> readTextList(List<SFIRBS> from) {
+    return readTextList(from, globalOptions());
+  }
+
+  /**
+   * Reads text from each of the given sources in parallel.
+   * <p>Uses the given options
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @param options  Options to be used
+   * @return the texts in the order of the sources ("" if not readable)
+   */
+  public static <SFIRBS> List<String> readTextList(List<SFIRBS> from, Options options) {
+    TextRecognizer recognizer = TextRecognizer.get(options);
+    List<Callable<String>> tasks = new ArrayList<>();
+    for (SFIRBS item : from) {
+      tasks.add(() -> recognizer.readText(item));
+    }
+    List<String> texts = FindPool.all(tasks);
+    for (int n = 0; n < texts.size(); n++) {
+      if (texts.get(n) == null) {
+        texts.set(n, "");
+      }
+    }
+    return texts;
+  }
+
+  /**
+   * Get text lines from each of the given sources in parallel.
+   * <p>Uses the global options.
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @return per source the lines as matches (empty if not readable)
+   */
+  public static <SFIRBS> List<List<Match>> readLinesList(List<SFIRBS> from) {
+    return readLinesList(from, globalOptions());
+  }
+
+  /**
+   * Get text lines from each of the given sources in parallel.
+   * <p>Uses the given options
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @param options  Options to be used
+   * @return per source the lines as matches (empty if not readable)
+   */
+  public static <SFIRBS> List<List<Match>> readLinesList(List<SFIRBS> from, Options options) {
+    return readItemsList(from, options, PAGE_ITERATOR_LEVEL_LINE);
+  }
+
+  /**
+   * Get words from each of the given sources in parallel.
+   * <p>Uses the global options.
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @return per source the words as matches (empty if not readable)
+   */
+  public static <SFIRBS> List<List<Match>> readWordsList(List<SFIRBS> from) {
+    return readWordsList(from, globalOptions());
+  }
+
+  /**
+   * Get words from each of the given sources in parallel.
+   * <p>Uses the given options
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     sources to read text from
+   * @param options  Options to be used
+   * @return per source the words as matches (empty if not readable)
+   */
+  public static <SFIRBS> List<List<Match>> readWordsList(List<SFIRBS> from, Options options) {
+    return readItemsList(from, options, PAGE_ITERATOR_LEVEL_WORD);
+  }
+
+  private static <SFIRBS> List<List<Match>> readItemsList(List<SFIRBS> from, Options options, int level) {
+    TextRecognizer recognizer = TextRecognizer.get(options);
+    List<Callable<List<Match>>> tasks = new ArrayList<>();
+    for (SFIRBS item : from) {
+      tasks.add(() -> recognizer.readTextItems(Element.getBufferedImage(item), level));
+    }
+    List<List<Match>> items = FindPool.all(tasks);
+    for (int n = 0; n < items.size(); n++) {
+      if (items.get(n) == null) {
+        items.set(n, new ArrayList<>());
+      }
+    }
+    return items;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="25 Read blocks, lines and words in one pass">
+  /**
+   * Reads the text from the given source as blocks, lines and words with one OCR pass.
+   * <p>Uses the global options.
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     source to read text from
+   * @return the layout (boxes relative to the source)
+   */
+  public static <SFIRBS> TextRecognizer.Layout readLayout(SFIRBS from) {
+    return readLayout(from, OCR.globalOptions());
+  }
+
+  /**
+   * Reads the text from the given source as blocks, lines and words with one OCR pass.
+   * <p>Uses the given options.
+   * @param <SFIRBS> File name, File, Image, Region, BufferdImage or ScreenImage
+   * @param from     source to read text from
+   * @param options  options for the used TextRecognizer
+   * @return the layout (boxes relative to the source)
+   */
+  public static <SFIRBS> TextRecognizer.Layout readLayout(SFIRBS from, Options options) {
+    return TextRecognizer.get(options).readLayout(from);
+  }
+  //</editor-fold>
+
   //<editor-fold desc="30 The options set for OCR (OCR.Options.class)">
   /**
    * A container for the options relevant for using {@link OCR} on
@@ -784,6 +938,14 @@ public class OCR {
     //</editor-fold>
 
     //<editor-fold desc="20 helpers private">
+    /**
+     * INTERNAL: identifies the Tesseract engine setup (ready engines are shared for equal keys).
+     * @return the key
+     */
+    protected String engineKey() {
+      return String.format("%s|%s|%d|%d|%s|%s", dataPath(), language(), oem(), psm(), configsStore, variablesStore);
+    }
+
     private boolean hasVariablesOrConfigs() {
       return !configsStore.isEmpty() || !variablesStore.isEmpty();
     }
@@ -16,6 +16,7 @@ import java.awt.event.KeyEvent;
 import java.io.IOException;
 import java.util.List;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * A Region is a rectangular area on a screen.
@@ -663,6 +664,16 @@ public class Region extends Element {
   public Mat getContent() {
     return getImage().getContent();
   }
+
+  /**
+   * capture the region once to run many searches against this shot
+   * (find, exists, has, findAll, findText, ... without waiting)
+   *
+   * @return the {@link Snapshot} (use invalidate() to free it)
+   */
+  public Snapshot snapshot() {
+    return new Snapshot(this);
+  }
   //</editor-fold>
 
   //<editor-fold defaultstate="collapsed" desc="006 parts of a Region">
@@ -2023,9 +2034,21 @@ public class Region extends Element {
     if (pList == null || pList.size() == 0) {
       return new ArrayList<Match>();
     }
-    List<Match> mList = findAnyCollect(pList);
+    List<Match> mList = findAnyCollect(pList, false);
     return mList;
   }
+
+  @Override
+  public Match findAnyFirstList(List<Object> pList) {
+    if (Settings.NewAPI) {
+      return super.findAnyFirstList(pList);
+    }
+    if (pList == null || pList.size() == 0) {
+      return null;
+    }
+    List<Match> mList = findAnyCollect(pList, true);
+    return mList.isEmpty() ? null : mList.get(0);
+  }
   //</editor-fold>
 
   //<editor-fold desc="021 find text">
@@ -2114,7 +2137,11 @@ public class Region extends Element {
     if (repeating != null && repeating._finder != null) {
       finder = repeating._finder;
       simg = getScreen().capture(this);
-      finder.setScreenImage(simg);
+      Mat frame = simg.getContent();
+      if (repeating.isUnchanged(frame)) {
+        return null;
+      }
+      finder.setSource(frame);
       //TODO finder.setRepeating();
       if (Settings.FindProfiling) {
         Debug.logp("[FindProfiling] Region.doFind repeat: %d msec",
@@ -2311,6 +2338,7 @@ public class Region extends Element {
 
     private double findTimeout;
 
+    ScanPacer pacer = null;
 
     abstract void run();
 
@@ -2327,6 +2355,7 @@ public class Region extends Element {
       findTimeout = timeout;
       int MaxTimePerScan = (int) (1000.0 / getWaitScanRate());
       int timeoutMilli = (int) (timeout * 1000);
+      pacer = new ScanPacer(getWaitScanRate());
       long begin_t = (new Date()).getTime();
       do {
         long before_find = (new Date()).getTime();
@@ -2337,12 +2366,15 @@ public class Region extends Element {
           return false;
         }
         long after_find = (new Date()).getTime();
-        if (after_find - before_find < MaxTimePerScan) {
-          getRobotForElement().delay((int) (MaxTimePerScan - (after_find - before_find)));
+        long delay = pacer.delay(after_find - before_find);
+        long left = begin_t + timeoutMilli - after_find;
+        if (delay > 0) {
+          getRobotForElement().delay((int) Math.max(10, Math.min(delay, left)));
         } else {
           getRobotForElement().delay(10);
         }
       } while (begin_t + timeout * 1000 > (new Date()).getTime());
+      log(logLevel + 1, "repeat: %s", pacer);
       return false;
     }
   }
@@ -2368,6 +2400,28 @@ public class Region extends Element {
       }
     }
 
+    Mat _lastFrame = null;
+
+    // change aware wait: the screen did not change since the last (unsuccessful) search
+    // (the result is also given to the adaptive scan pacer)
+    boolean isUnchanged(Mat frame) {
+      Mat lastFrame = _lastFrame;
+      _lastFrame = frame;
+      boolean changeAware = Settings.WaitChangeAware && !(this instanceof RepeatableVanish);
+      boolean adaptive = pacer != null && pacer.isAdaptive();
+      if (lastFrame == null || !(changeAware || adaptive)) {
+        return false;
+      }
+      List<org.opencv.core.Rect> changes = SXOpenCV.getChangedRects(lastFrame, frame);
+      if (changes == null) {
+        return false;
+      }
+      if (adaptive) {
+        pacer.changed(!changes.isEmpty());
+      }
+      return changeAware && changes.isEmpty();
+    }
+
     public Match getMatch() {
       if (_finder != null) {
         _finder.destroy();
@@ -2428,46 +2482,6 @@ public class Region extends Element {
     }
   }
 
-  private class SubFindRun implements Runnable {
-
-    Match[] mArray;
-    ScreenImage base;
-    Object target;
-    Region reg;
-    boolean finished = false;
-    int subN;
-
-    public SubFindRun(Match[] pMArray, int pSubN,
-                      ScreenImage pBase, Object pTarget, Region pReg) {
-      subN = pSubN;
-      base = pBase;
-      target = pTarget;
-      reg = pReg;
-      mArray = pMArray;
-    }
-
-    @Override
-    public void run() {
-      try {
-        mArray[subN] = reg.findInImage(base, target);
-      } catch (Exception ex) {
-        log(-1, "findAnyCollect: image file not found:\n", target);
-      }
-      hasFinished(true);
-    }
-
-    public boolean hasFinished() {
-      return hasFinished(false);
-    }
-
-    public synchronized boolean hasFinished(boolean state) {
-      if (state) {
-        finished = true;
-      }
-      return finished;
-    }
-  }
-
   private Match findInImage(ScreenImage base, Object target) throws IOException {
     Finder finder = null;
     Match match = null;
@@ -2526,42 +2540,46 @@ public class Region extends Element {
     return match;
   }
 
-  private List<Match> findAnyCollect(List<Object> pList) {
+  private List<Match> findAnyCollect(List<Object> pList, boolean firstOnly) {
     List<Match> mList = new ArrayList<Match>();
     if (pList == null) {
       return mList;
     }
-    Match[] mArray = new Match[pList.size()];
-    SubFindRun[] theSubs = new SubFindRun[pList.size()];
+    List<Callable<Match>> finds = new ArrayList<>();
     int nobj = 0;
     ScreenImage base = getScreen().capture(this);
     for (Object obj : pList) {
-      mArray[nobj] = null;
       if (obj instanceof Pattern || obj instanceof String || obj instanceof Image) {
-        theSubs[nobj] = new SubFindRun(mArray, nobj, base, obj, this);
-        new Thread(theSubs[nobj]).start();
+        int subN = nobj;
+        finds.add(() -> {
+          Match match = null;
+          try {
+            match = findInImage(base, obj);
+          } catch (IOException ex) {
+            log(-1, "findAnyCollect: image file not found: %s", obj);
+          }
+          if (match != null) {
+            match.setIndex(subN);
+          }
+          return match;
+        });
       }
       nobj++;
     }
-    Debug.log(logLevel, "findAnyCollect: waiting for SubFindRuns");
-    nobj = 0;
-    boolean all = false;
-    while (!all) {
-      all = true;
-      for (SubFindRun sub : theSubs) {
-        all &= sub.hasFinished();
-      }
-    }
-    Debug.log(logLevel, "findAnyCollect: SubFindRuns finished");
-    nobj = 0;
-    for (Match match : mArray) {
+    Debug.log(logLevel, "findAnyCollect: waiting for finds");
+    if (firstOnly) {
+      Match match = FindPool.first(finds);
       if (match != null) {
-        match.setIndex(nobj);
         mList.add(match);
-      } else {
       }
-      nobj++;
+    } else {
+      for (Match match : FindPool.all(finds)) {
+        if (match != null) {
+          mList.add(match);
+        }
+      }
     }
+    Debug.log(logLevel, "findAnyCollect: finds finished");
     return mList;
   }
   //</editor-fold>
@@ -3028,18 +3046,51 @@ public class Region extends Element {
   }
 
   private boolean observeDo(double secs) {
+    long stop_t = observeStart(secs);
+    if (stop_t < 0) {
+      return false;
+    }
+    ScanPacer pacer = new ScanPacer(getObserveScanRate());
+    while (observing && stop_t > (new Date()).getTime()) {
+      long before_find = (new Date()).getTime();
+      ScreenImage simg = getScreen().capture(x, y, w, h);
+      if (pacer.isAdaptive()) {
+        pacer.changed(simg.getContent());
+      }
+      if (!observeStep(simg)) {
+        break;
+      }
+      long after_find = (new Date()).getTime();
+      long delay = Math.min(pacer.delay(after_find - before_find), stop_t - after_find);
+      try {
+        if (delay > 0) {
+          Thread.sleep(delay);
+        }
+      } catch (Exception e) {
+      }
+    }
+    log(logLevel + 1, "observe: %s", pacer);
+    return observeEnd(secs);
+  }
+
+  /**
+   * INTERNAL: observe: check and initialize
+   *
+   * @param secs time in seconds the observer should run
+   * @return the time (millisecs), when the observer should stop or -1 if not possible
+   */
+  public long observeStart(double secs) {
     if (regionObserver == null) {
       Debug.error("Region: observe: Nothing to observe (Region might be invalid): " + this.toStringShort());
-      return false;
+      return -1;
     }
     if (observing) {
       if (!observingInBackground) {
         Debug.error("Region: observe: already running for this region. Only one allowed!");
-        return false;
+        return -1;
       }
     }
     log(logLevel, "observe: starting in " + this.toStringShort() + " for " + secs + " seconds");
-    int MaxTimePerScan = (int) (1000.0 / getObserveScanRate());
     long begin_t = (new Date()).getTime();
     long stop_t;
     if (secs > Long.MAX_VALUE) {
@@ -3050,24 +3101,30 @@ public class Region extends Element {
     regionObserver.initialize();
     observing = true;
     Observing.addRunningObserver(this);
-    while (observing && stop_t > (new Date()).getTime()) {
-      long before_find = (new Date()).getTime();
-      ScreenImage simg = getScreen().capture(x, y, w, h);
-      if (!regionObserver.update(simg)) {
-        observing = false;
-        break;
-      }
-      if (!observing) {
-        break;
-      }
-      long after_find = (new Date()).getTime();
-      try {
-        if (after_find - before_find < MaxTimePerScan) {
-          Thread.sleep((int) (MaxTimePerScan - (after_find - before_find)));
-        }
-      } catch (Exception e) {
-      }
+    return stop_t;
+  }
+
+  /**
+   * INTERNAL: observe: one scan
+   *
+   * @param simg the actual capture of this region
+   * @return false if the observer should end
+   */
+  public boolean observeStep(ScreenImage simg) {
+    if (!regionObserver.update(simg)) {
+      observing = false;
+      return false;
     }
+    return observing;
+  }
+
+  /**
+   * INTERNAL: observe: finish
+   *
+   * @param secs time in seconds the observer should have run
+   * @return true if events have happened
+   */
+  public boolean observeEnd(double secs) {
     boolean observeSuccess = false;
     if (observing) {
       observing = false;
@@ -3077,6 +3134,10 @@ public class Region extends Element {
       log(logLevel, "observe: ended successfully: " + this.toStringShort());
       observeSuccess = Observing.hasEvents(this);
     }
+    if (!observingInBackground) {
+      // inline observe returns after the call backs are done
+      regionObserver.drainCallBacks(0);
+    }
     return observeSuccess;
   }
 
@@ -3094,8 +3155,18 @@ public class Region extends Element {
     }
     observing = true;
     observingInBackground = true;
-    Thread observeThread = new Thread(new ObserverThread(secs));
-    observeThread.start();
+    if (Settings.ObserveShared) {
+      long stop_t = observeStart(secs);
+      if (stop_t < 0) {
+        observing = false;
+        observingInBackground = false;
+        return false;
+      }
+      ObserveScheduler.get(getScreen()).add(this, secs, stop_t);
+    } else {
+      Thread observeThread = new Thread(new ObserverThread(secs));
+      observeThread.start();
+    }
     log(logLevel, "observeInBackground now running");
     return true;
   }
@@ -3623,121 +3694,12 @@ public class Region extends Element {
    */
   public int write(String text) {
     Debug.info("Write: " + text);
-    char c;
-    String token, tokenSave;
-    String modifier = "";
-    int k;
     IRobot robot = getRobotForElement();
     int pause = 20 + (Settings.TypeDelay > 1 ? 1000 : (int) (Settings.TypeDelay * 1000));
     Settings.TypeDelay = 0.0;
+    KeyPlan plan = KeyPlan.get(text);
     robot.typeStarts();
-    for (int i = 0; i < text.length(); i++) {
-      log(logLevel + 1, "write: (%d) %s", i, text.substring(i));
-      c = text.charAt(i);
-      token = null;
-      boolean isModifier = false;
-      if (c == '#') {
-        if (text.charAt(i + 1) == '#') {
-          log(logLevel, "write at: %d: %s", i, c);
-          i += 1;
-          continue;
-        }
-        if (text.charAt(i + 2) == '+' || text.charAt(i + 2) == '-') {
-          token = text.substring(i, i + 3);
-          isModifier = true;
-        } else if (-1 < (k = text.indexOf('.', i))) {
-          if (k > -1) {
-            token = text.substring(i, k + 1);
-            if (token.length() > Key.keyMaxLength || token.substring(1).contains("#")) {
-              token = null;
-            }
-          }
-        }
-      }
-      Integer key = -1;
-      if (token == null) {
-        log(logLevel + 1, "write: %d: %s", i, c);
-      } else {
-        log(logLevel + 1, "write: token at %d: %s", i, token);
-        int repeat = 0;
-        if (token.toUpperCase().startsWith("#W")) {
-          if (token.length() > 3) {
-            i += token.length() - 1;
-            int t = 0;
-            try {
-              t = Integer.parseInt(token.substring(2, token.length() - 1));
-            } catch (NumberFormatException ex) {
-            }
-            if ((token.startsWith("#w") && t > 60)) {
-              pause = 20 + (t > 1000 ? 1000 : t);
-              log(logLevel + 1, "write: type delay: " + t);
-            } else {
-              log(logLevel + 1, "write: wait: " + t);
-              robot.delay((t < 60 ? t * 1000 : t));
-            }
-            continue;
-          }
-        }
-        tokenSave = token;
-        token = token.substring(0, 2).toUpperCase() + ".";
-        if (Key.isRepeatable(token)) {
-          try {
-            repeat = Integer.parseInt(tokenSave.substring(2, tokenSave.length() - 1));
-          } catch (NumberFormatException ex) {
-            token = tokenSave;
-          }
-        } else if (tokenSave.length() == 3 && Key.isModifier(tokenSave.toUpperCase())) {
-          i += tokenSave.length() - 1;
-          modifier += tokenSave.substring(1, 2).toUpperCase();
-          continue;
-        } else {
-          token = tokenSave;
-        }
-        if (-1 < (key = Key.toJavaKeyCodeFromText(token))) {
-          if (repeat > 0) {
-            log(logLevel + 1, "write: %s Repeating: %d", token, repeat);
-          } else {
-            log(logLevel + 1, "write: %s", tokenSave);
-            repeat = 1;
-          }
-          i += tokenSave.length() - 1;
-          if (isModifier) {
-            if (tokenSave.endsWith("+")) {
-              robot.keyDown(key);
-            } else {
-              robot.keyUp(key);
-            }
-            continue;
-          }
-          if (repeat > 1) {
-            for (int n = 0; n < repeat; n++) {
-              robot.typeKey(key.intValue());
-            }
-            continue;
-          }
-        }
-      }
-      if (!modifier.isEmpty()) {
-        log(logLevel + 1, "write: modifier + " + modifier);
-        for (int n = 0; n < modifier.length(); n++) {
-          robot.keyDown(Key.toJavaKeyCodeFromText(String.format("#%s.", modifier.substring(n, n + 1))));
-        }
-      }
-      if (key > -1) {
-        robot.typeKey(key.intValue());
-      } else {
-        robot.typeChar(c, IRobot.KeyMode.PRESS_RELEASE);
-      }
-      if (!modifier.isEmpty()) {
-        log(logLevel + 1, "write: modifier - " + modifier);
-        for (int n = 0; n < modifier.length(); n++) {
-          robot.keyUp(Key.toJavaKeyCodeFromText(String.format("#%s.", modifier.substring(n, n + 1))));
-        }
-      }
-      robot.delay(pause);
-      modifier = "";
-    }
-
+    plan.run(robot, pause);
     robot.typeEnds();
     robot.waitForIdle();
     return 0;
@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+package org.sikuli.script;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A frozen screen shot of a {@link Region} to run many searches against one capture.
+ * <p>-</p>
+ * <p>Created by {@link Region#snapshot()}: the region is captured once and converted to a Mat once,
+ * all find/exists/has/findAll/findText operations then search in this shot without waiting
+ * (there is no timeout, the content does not change).</p>
+ * <p>The matches have screen coordinates and belong to the region's screen (can be clicked, ...).</p>
+ * <p>{@link #refresh()} captures again, {@link #invalidate()} frees the shot (usage afterwards is an error).</p>
+ */
+public class Snapshot {
+
+  //<editor-fold desc="00 instance">
+  private final Region region;
+  private ScreenImage shot = null;
+  private long time = -1;
+
+  protected Snapshot(Region region) {
+    this.region = region;
+    refresh();
+  }
+
+  /**
+   * capture the region again (the previous shot is freed)
+   *
+   * @return this snapshot
+   */
+  public Snapshot refresh() {
+    invalidate();
+    shot = region.getScreen().capture(region);
+    shot.getContent();
+    time = new Date().getTime();
+    return this;
+  }
+
+  /**
+   * free the shot - after that all searches throw an exception until refreshed
+   */
+  public void invalidate() {
+    if (shot != null) {
+      shot.getContent().release();
+      shot = null;
+    }
+  }
+
+  /**
+   * @return true if the snapshot can be used for searches
+   */
+  public boolean isValid() {
+    return shot != null;
+  }
+
+  /**
+   * @return the region the snapshot was taken from
+   */
+  public Region getRegion() {
+    return region;
+  }
+
+  /**
+   * @return the shot
+   */
+  public ScreenImage getImage() {
+    return getShot();
+  }
+
+  /**
+   * @return when the shot was taken (millisecs) or -1 if invalidated
+   */
+  public long getTime() {
+    return isValid() ? time : -1;
+  }
+
+  private ScreenImage getShot() {
+    if (shot == null) {
+      throw new SikuliXception("Snapshot: not valid (invalidated): " + region);
+    }
+    return shot;
+  }
+
+  // matches from the shot have screen coordinates, but are not on screen
+  private Match onScreen(Match match) {
+    if (match == null) {
+      return null;
+    }
+    Match screenMatch = Match.create(match, region.getScreen());
+    screenMatch.setIndex(match.getIndex());
+    return screenMatch;
+  }
+
+  // text matches are relative to the shot
+  private Match relocate(Match match) {
+    match.x += shot.x;
+    match.y += shot.y;
+    return onScreen(match);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Snapshot(%s)%s", region, isValid() ? "" : " invalid");
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="10 find image">
+
+  /**
+   * like {@link Region#find(Object)} but in the shot (no waiting)
+   *
+   * @param <PSI>  Pattern, String or Image
+   * @param target what to find
+   * @return the match
+   * @throws FindFailed if not found
+   */
+  public <PSI> Match find(PSI target) throws FindFailed {
+    return onScreen(getShot().find(target));
+  }
+
+  /**
+   * like {@link Region#exists(Object, double)} with timeout 0 but in the shot
+   *
+   * @param <PSI>  Pattern, String or Image
+   * @param target what to find
+   * @return the match or null
+   */
+  public <PSI> Match exists(PSI target) {
+    try {
+      return find(target);
+    } catch (FindFailed findFailed) {
+      return null;
+    }
+  }
+
+  /**
+   * @param <PSI>  Pattern, String or Image
+   * @param target what to find
+   * @return true if found in the shot
+   */
+  public <PSI> boolean has(PSI target) {
+    return null != exists(target);
+  }
+
+  /**
+   * like {@link Region#findAllList(Object)} but in the shot
+   *
+   * @param <PSI>  Pattern, String or Image
+   * @param target what to find
+   * @return the matches (empty if not found)
+   */
+  public <PSI> List<Match> findAllList(PSI target) {
+    List<Match> matches = new ArrayList<>();
+    for (Match match : getShot().getAll(target)) {
+      matches.add(onScreen(match));
+    }
+    return matches;
+  }
+
+  /**
+   * like {@link Region#findAnyList(List)} but in the shot
+   *
+   * @param targets what to find
+   * @return the matches in the order of the targets (null if not found)
+   */
+  public List<Match> findAnyList(List<Object> targets) {
+    List<Match> matches = new ArrayList<>();
+    for (Match match : getShot().findAnyList(targets)) {
+      matches.add(onScreen(match));
+    }
+    return matches;
+  }
+
+  /**
+   * like {@link Region#findBestList(List)} but in the shot
+   *
+   * @param targets what to find
+   * @return the best match or null
+   */
+  public Match findBestList(List<Object> targets) {
+    return onScreen(getShot().findBestList(targets));
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="20 find text">
+
+  /**
+   * like {@link Region#findText(String)} but in the shot
+   *
+   * @param text the text
+   * @return the match
+   * @throws FindFailed if not found
+   */
+  public Match findText(String text) throws FindFailed {
+    Match match = existsText(text);
+    if (match == null) {
+      throw new FindFailed(String.format("Snapshot: text not found: %s in %s", text, region));
+    }
+    return match;
+  }
+
+  /**
+   * @param text the text
+   * @return the match or null
+   */
+  public Match existsText(String text) {
+    Finder finder = new Finder(getContent());
+    finder.findText(text);
+    if (finder.hasNext()) {
+      return relocate(finder.next());
+    }
+    return null;
+  }
+
+  /**
+   * @param text the text
+   * @return true if found in the shot
+   */
+  public boolean hasText(String text) {
+    return null != existsText(text);
+  }
+
+  /**
+   * like {@link Region#findAllText(String)} but in the shot
+   *
+   * @param text the text
+   * @return the matches (empty if not found)
+   */
+  public List<Match> findAllText(String text) {
+    List<Match> matches = new ArrayList<>();
+    Finder finder = new Finder(getContent());
+    finder.findAllText(text);
+    while (finder.hasNext()) {
+      matches.add(relocate(finder.next()));
+    }
+    return matches;
+  }
+
+  private Mat getContent() {
+    return getShot().getContent();
+  }
+  //</editor-fold>
+}
@@ -3,7 +3,11 @@
  */
 package org.sikuli.script;
 
-import net.sourceforge.tess4j.ITesseract;
+import com.sun.jna.Pointer;
+import net.sourceforge.tess4j.ITessAPI.TessBaseAPI;
+import net.sourceforge.tess4j.ITessAPI.TessPageIterator;
+import net.sourceforge.tess4j.ITessAPI.TessPageIteratorLevel;
+import net.sourceforge.tess4j.ITessAPI.TessResultIterator;
 import net.sourceforge.tess4j.Tesseract1;
 import net.sourceforge.tess4j.TesseractException;
 import net.sourceforge.tess4j.Word;
@@ -15,13 +19,22 @@ import org.sikuli.script.support.SXOpenCV;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Date;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -78,9 +91,201 @@ public class TextRecognizer {
     return textRecognizer;
   }
 
-  private ITesseract getTesseractAPI() {
+  /**
+   * @deprecated use OCR.reset() instead
+   * @see OCR#reset()
+   */
+  @Deprecated
+  public static void reset() {
+    OCR.globalOptions().reset();
+  }
+
+  /**
+   * @deprecated use OCR.status() instead
+   * @see OCR#status()
+   */
+  @Deprecated
+  public static void status() {
+    Debug.logp("Global settings " + OCR.globalOptions().toString());
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="01 Tesseract engine pool">
+  /**
+   * a Tesseract1, that keeps its native handle (tessdata loaded) between the OCR calls
+   * <br>Tess4J inits and disposes the handle with every doOCR/getWords
+   */
+  private static class PooledTesseract extends Tesseract1 {
+    private boolean initialized = false;
+
+    @Override
+    protected void init() {
+      if (!initialized) {
+        super.init();
+        initialized = true;
+      }
+    }
+
+    @Override
+    protected void dispose() {
+      // kept for the next usage - see close()
+    }
+
+    void close() {
+      if (initialized) {
+        super.dispose();
+        initialized = false;
+      }
+    }
+
+    /**
+     * one recognition, then blocks, lines and words are collected with one walk through the result iterator
+     * (Tess4J getWords needs a recognition per level)
+     */
+    Layout readLayout(BufferedImage image, double wFactor, double hFactor) throws IOException {
+      init();
+      setTessVariables();
+      setImage(image, null);
+      Layout layout = new Layout();
+      TessBaseAPI handle = getHandle();
+      if (TessBaseAPIRecognize(handle, null) != 0) {
+        return layout;
+      }
+      TessResultIterator iterator = TessBaseAPIGetIterator(handle);
+      if (iterator == null) {
+        return layout;
+      }
+      try {
+        TessPageIterator pageIterator = TessResultIteratorGetPageIterator(iterator);
+        TessPageIteratorBegin(pageIterator);
+        do {
+          if (TessPageIteratorIsAtBeginningOf(pageIterator, TessPageIteratorLevel.RIL_BLOCK) == TRUE) {
+            layout.addBlock(readItem(iterator, pageIterator, TessPageIteratorLevel.RIL_BLOCK, wFactor, hFactor));
+          }
+          if (TessPageIteratorIsAtBeginningOf(pageIterator, TessPageIteratorLevel.RIL_TEXTLINE) == TRUE) {
+            layout.addLine(readItem(iterator, pageIterator, TessPageIteratorLevel.RIL_TEXTLINE, wFactor, hFactor));
+          }
+          layout.addWord(readItem(iterator, pageIterator, TessPageIteratorLevel.RIL_WORD, wFactor, hFactor));
+        } while (TessPageIteratorNext(pageIterator, TessPageIteratorLevel.RIL_WORD) == TRUE);
+      } finally {
+        TessResultIteratorDelete(iterator);
+      }
+      return layout;
+    }
+
+    private static Match readItem(TessResultIterator iterator, TessPageIterator pageIterator, int level,
+                                  double wFactor, double hFactor) {
+      Pointer textPointer = TessResultIteratorGetUTF8Text(iterator, level);
+      if (textPointer == null) {
+        return null;
+      }
+      String text = textPointer.getString(0, "UTF-8").trim();
+      TessDeleteText(textPointer);
+      float confidence = TessResultIteratorConfidence(iterator, level);
+      IntBuffer left = IntBuffer.allocate(1);
+      IntBuffer top = IntBuffer.allocate(1);
+      IntBuffer right = IntBuffer.allocate(1);
+      IntBuffer bottom = IntBuffer.allocate(1);
+      TessPageIteratorBoundingBox(pageIterator, level, left, top, right, bottom);
+      Rectangle boundingBox = new Rectangle(left.get(0), top.get(0),
+          right.get(0) - left.get(0), bottom.get(0) - top.get(0));
+      return new Match(realBox(boundingBox, wFactor, hFactor), confidence, text);
+    }
+  }
+
+  // text item box in the optimized image to box in the original image
+  private static Rectangle realBox(Rectangle boundingBox, double wFactor, double hFactor) {
+    return new Rectangle(
+        (int) (boundingBox.x * wFactor) - 1,
+        (int) (boundingBox.y * hFactor) - 1,
+        1 + (int) (boundingBox.width * wFactor) + 2,
+        1 + (int) (boundingBox.height * hFactor) + 2);
+  }
+
+  private static final int POOL_MAX_OPTIONS = 8;
+
+  // idle engines per Options.engineKey(), least recently used options are closed first
+  private static final Map<String, Deque<PooledTesseract>> enginePool =
+      new LinkedHashMap<String, Deque<PooledTesseract>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Deque<PooledTesseract>> eldest) {
+          if (size() > POOL_MAX_OPTIONS) {
+            closeEngines(eldest.getValue());
+            return true;
+          }
+          return false;
+        }
+      };
+
+  private static int engineCount = 0;
+  private static long engineCreated = 0;
+  private static long engineReused = 0;
+
+  private PooledTesseract borrowTesseractAPI() {
+    String key = options.engineKey();
+    synchronized (enginePool) {
+      Deque<PooledTesseract> engines = enginePool.get(key);
+      if (engines != null && !engines.isEmpty()) {
+        engineReused++;
+        return engines.pop();
+      }
+      engineCreated++;
+      engineCount++;
+    }
+    Debug.log(lvl, "OCR: new Tesseract engine (%d): %s %s", engineCount, options.language(), key);
+    return getTesseractAPI();
+  }
+
+  private void returnTesseractAPI(PooledTesseract tesseract, boolean reuse) {
+    if (reuse) {
+      synchronized (enginePool) {
+        Deque<PooledTesseract> engines = enginePool.computeIfAbsent(options.engineKey(), k -> new ArrayDeque<>());
+        if (engines.size() < Math.max(1, Settings.OcrEngines)) {
+          engines.push(tesseract);
+          return;
+        }
+      }
+    }
+    synchronized (enginePool) {
+      engineCount--;
+    }
+    tesseract.close();
+  }
+
+  private static void closeEngines(Deque<PooledTesseract> engines) {
+    for (PooledTesseract engine : engines) {
+      engine.close();
+      engineCount--;
+    }
+    engines.clear();
+  }
+
+  /**
+   * INTERNAL: close all idle Tesseract engines (engines in use are closed when returned)
+   */
+  protected static void closeEngines() {
+    synchronized (enginePool) {
+      for (Deque<PooledTesseract> engines : enginePool.values()) {
+        closeEngines(engines);
+      }
+      enginePool.clear();
+    }
+  }
+
+  /**
+   * INTERNAL: state of the engine pool
+   *
+   * @return engines (existing), created, reused
+   */
+  protected static long[] engineCounters() {
+    synchronized (enginePool) {
+      return new long[]{engineCount, engineCreated, engineReused};
+    }
+  }
+
+  private PooledTesseract getTesseractAPI() {
     try {
-      ITesseract tesseract = new Tesseract1();
+      PooledTesseract tesseract = new PooledTesseract();
       tesseract.setOcrEngineMode(options.oem());
       tesseract.setPageSegMode(options.psm());
       tesseract.setLanguage(options.language());
@@ -111,24 +316,6 @@ public class TextRecognizer {
       throw new SikuliXception(String.format("OCR: start: Tesseract library problems: %s", e.getMessage()));
     }
   }
-
-  /**
-   * @deprecated use OCR.reset() instead
-   * @see OCR#reset()
-   */
-  @Deprecated
-  public static void reset() {
-    OCR.globalOptions().reset();
-  }
-
-  /**
-   * @deprecated use OCR.status() instead
-   * @see OCR#status()
-   */
-  @Deprecated
-  public static void status() {
-    Debug.logp("Global settings " + OCR.globalOptions().toString());
-  }
   //</editor-fold>
 
   //<editor-fold desc="02 set OEM, PSM">
@@ -245,6 +432,149 @@ public class TextRecognizer {
   }
   //</editor-fold>
 
+  //<editor-fold desc="04 OCR result cache">
+  /**
+   * OCR results (text or lines/words) per image content (MD5 of the pixels) and Options
+   * <br>opt-in: Settings.OcrCache, bounded: Settings.OcrCacheMax entries (least recently used are evicted),
+   * entries older than Settings.OcrCacheTime seconds are not used
+   */
+  static class ResultCache {
+
+    private static class Entry {
+      final Object result;
+      final long time;
+
+      Entry(Object result) {
+        this.result = result;
+        time = new Date().getTime();
+      }
+    }
+
+    private static final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > Math.max(1, Settings.OcrCacheMax)) {
+          evictions++;
+          return true;
+        }
+        return false;
+      }
+    };
+
+    private static long hits = 0;
+    private static long misses = 0;
+    private static long expired = 0;
+    private static long evictions = 0;
+
+    static String key(String kind, OCR.Options options, BufferedImage bimg) {
+      int width = bimg.getWidth();
+      int height = bimg.getHeight();
+      DataBuffer buffer = bimg.getRaster().getDataBuffer();
+      MessageDigest digest = getDigest();
+      digest.update((byte) bimg.getType());
+      if (buffer instanceof DataBufferByte && buffer.getNumBanks() == 1 && bimg.getRaster().getParent() == null) {
+        digest.update(((DataBufferByte) buffer).getData());
+      } else {
+        int[] row = new int[width];
+        ByteBuffer bytes = ByteBuffer.allocate(width * 4);
+        for (int y = 0; y < height; y++) {
+          bimg.getRGB(0, y, width, 1, row, 0, width);
+          bytes.clear();
+          bytes.asIntBuffer().put(row);
+          digest.update(bytes.array());
+        }
+      }
+      return makeKey(kind, options, width, height, digest);
+    }
+
+    static String key(String kind, OCR.Options options, int width, int height, byte[] content) {
+      MessageDigest digest = getDigest();
+      digest.update(content);
+      return makeKey(kind, options, width, height, digest);
+    }
+
+    private static MessageDigest getDigest() {
+      try {
+        return MessageDigest.getInstance("MD5");
+      } catch (NoSuchAlgorithmException e) {
+        throw new SikuliXception("OCR: cache: no MD5: " + e.getMessage());
+      }
+    }
+
+    private static String makeKey(String kind, OCR.Options options, int width, int height, MessageDigest digest) {
+      StringBuilder hash = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hash.append(String.format("%02x", b));
+      }
+      return String.format("%s|%dx%d|%s|%s|%.3f|%s", kind, width, height, hash,
+          options.engineKey(), options.factor(), options.resizeInterpolation());
+    }
+
+    static Object get(String key) {
+      synchronized (cache) {
+        Entry entry = cache.get(key);
+        if (entry != null && Settings.OcrCacheTime > 0
+            && new Date().getTime() - entry.time > Settings.OcrCacheTime * 1000) {
+          cache.remove(key);
+          expired++;
+          entry = null;
+        }
+        if (entry == null) {
+          misses++;
+          return null;
+        }
+        hits++;
+        return entry.result;
+      }
+    }
+
+    static void put(String key, Object result) {
+      synchronized (cache) {
+        cache.put(key, new Entry(result));
+      }
+    }
+
+    // the matches of readTextItems as cached (typed, so no unchecked cast is needed)
+    static class Items {
+      final List<Match> matches;
+
+      Items(List<Match> matches) {
+        this.matches = matches;
+      }
+    }
+
+    // cached matches must not be changed by the caller (e.g. relocated)
+    static List<Match> copy(List<Match> matches) {
+      List<Match> copies = new ArrayList<>();
+      for (Match match : matches) {
+        // the constructor takes the confidence (0 .. 100)
+        copies.add(new Match(match.getRect(), match.score() * 100, match.getText()));
+      }
+      return copies;
+    }
+
+    static void reset() {
+      synchronized (cache) {
+        cache.clear();
+        hits = misses = expired = evictions = 0;
+      }
+    }
+
+    static Map<String, Long> counters() {
+      Map<String, Long> counters = new LinkedHashMap<>();
+      synchronized (cache) {
+        counters.put("entries", (long) cache.size());
+        counters.put("maxEntries", (long) Settings.OcrCacheMax);
+        counters.put("hits", hits);
+        counters.put("misses", misses);
+        counters.put("expired", expired);
+        counters.put("evictions", evictions);
+      }
+      return counters;
+    }
+  }
+  //</editor-fold>
+
   //<editor-fold desc="10 image optimization">
   /**
    * @param size expected font size in pt
@@ -309,47 +639,219 @@ public class TextRecognizer {
   }
 
   protected <SFIRBS> String doRead(SFIRBS from) {
-    try {
-      String text = "";
-      if (from instanceof Mat) {
-        Mat img = ((Mat) from).clone();
-        if (!img.empty()) {
-          img = SXOpenCV.optimize(img, options.factor(), options.resizeInterpolation());
-          byte[] bytes = new byte[img.width() * img.height()];
-          int n = img.get(0, 0, bytes);
-          text = getTesseractAPI().doOCR(img.width(), img.height(), ByteBuffer.wrap(bytes), null, 8);
-        } else {
-          return "";
+    String text = "";
+    int width = 0;
+    int height = 0;
+    byte[] bytes = null;
+    BufferedImage bimg = null;
+    String cacheKey = null;
+    if (from instanceof Mat) {
+      Mat img = ((Mat) from).clone();
+      if (img.empty()) {
+        return "";
+      }
+      if (Settings.OcrCache) {
+        byte[] content = new byte[(int) (img.total() * img.elemSize())];
+        img.get(0, 0, content);
+        cacheKey = ResultCache.key("text", options, img.width(), img.height(), content);
+        Object cached = ResultCache.get(cacheKey);
+        if (cached != null) {
+          return (String) cached;
         }
+      }
+      img = SXOpenCV.optimize(img, options.factor(), options.resizeInterpolation());
+      width = img.width();
+      height = img.height();
+      bytes = new byte[width * height];
+      img.get(0, 0, bytes);
+    } else {
+      bimg = Element.getBufferedImage(from);
+      if (Settings.OcrCache) {
+        cacheKey = ResultCache.key("text", options, bimg);
+        Object cached = ResultCache.get(cacheKey);
+        if (cached != null) {
+          return (String) cached;
+        }
+      }
+      bimg = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
+    }
+    PooledTesseract tesseract = borrowTesseractAPI();
+    boolean reuse = false;
+    try {
+      if (bytes != null) {
+        text = tesseract.doOCR(width, height, ByteBuffer.wrap(bytes), null, 8);
       } else {
-        BufferedImage bimg = SXOpenCV.optimize(Element.getBufferedImage(from), options.factor(), options.resizeInterpolation());
-        text = getTesseractAPI().doOCR(bimg);
+        text = tesseract.doOCR(bimg);
+      }
+      reuse = true;
+      text = text.trim().replace("\n\n", "\n");
+      if (cacheKey != null) {
+        ResultCache.put(cacheKey, text);
       }
-      return text.trim().replace("\n\n", "\n");
+      return text;
     } catch (TesseractException e) {
       Debug.error("OCR: read: Tess4J: doOCR: %s", e.getMessage());
       return "";
+    } finally {
+      returnTesseractAPI(tesseract, reuse);
     }
   }
 
   protected <SFIRBS> List<Match> readTextItems(SFIRBS from, int level) {
     List<Match> lines = new ArrayList<>();
     BufferedImage bimg = Element.getBufferedImage(from);
+    String cacheKey = null;
+    if (Settings.OcrCache) {
+      cacheKey = ResultCache.key("level" + level, options, bimg);
+      Object cached = ResultCache.get(cacheKey);
+      if (cached != null) {
+        return ResultCache.copy(((ResultCache.Items) cached).matches);
+      }
+    }
     BufferedImage bimgResized = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
-    List<Word> textItems = getTesseractAPI().getWords(bimgResized, level);
+    List<Word> textItems;
+    PooledTesseract tesseract = borrowTesseractAPI();
+    boolean reuse = false;
+    try {
+      textItems = tesseract.getWords(bimgResized, level);
+      reuse = true;
+    } finally {
+      returnTesseractAPI(tesseract, reuse);
+    }
     double wFactor = (double) bimg.getWidth() / bimgResized.getWidth();
     double hFactor = (double) bimg.getHeight() / bimgResized.getHeight();
     for (Word textItem : textItems) {
-      Rectangle boundingBox = textItem.getBoundingBox();
-      Rectangle realBox = new Rectangle(
-          (int) (boundingBox.x * wFactor) - 1,
-          (int) (boundingBox.y * hFactor) - 1,
-          1 + (int) (boundingBox.width * wFactor) + 2,
-          1 + (int) (boundingBox.height * hFactor) + 2);
+      Rectangle realBox = realBox(textItem.getBoundingBox(), wFactor, hFactor);
       lines.add(new Match(realBox, textItem.getConfidence(), textItem.getText().trim()));
     }
+    if (cacheKey != null) {
+      ResultCache.put(cacheKey, new ResultCache.Items(ResultCache.copy(lines)));
+    }
     return lines;
   }
+
+  protected <SFIRBS> Layout readLayout(SFIRBS from) {
+    BufferedImage bimg = Element.getBufferedImage(from);
+    String cacheKey = null;
+    if (Settings.OcrCache) {
+      cacheKey = ResultCache.key("layout", options, bimg);
+      Object cached = ResultCache.get(cacheKey);
+      if (cached != null) {
+        return ((Layout) cached).copy();
+      }
+    }
+    BufferedImage bimgResized = SXOpenCV.optimize(bimg, options.factor(), options.resizeInterpolation());
+    double wFactor = (double) bimg.getWidth() / bimgResized.getWidth();
+    double hFactor = (double) bimg.getHeight() / bimgResized.getHeight();
+    Layout layout;
+    PooledTesseract tesseract = borrowTesseractAPI();
+    boolean reuse = false;
+    try {
+      layout = tesseract.readLayout(bimgResized, wFactor, hFactor);
+      reuse = true;
+    } catch (IOException e) {
+      Debug.error("OCR: readLayout: %s", e.getMessage());
+      layout = new Layout();
+    } finally {
+      returnTesseractAPI(tesseract, reuse);
+    }
+    if (cacheKey != null) {
+      ResultCache.put(cacheKey, layout.copy());
+    }
+    return layout;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="25 layout">
+  /**
+   * INTERNAL: the text of an image from one OCR pass as blocks, lines and words (see OCR.readLayout)
+   * <br>a block has lines, a line has words - boxes are relative to the image
+   */
+  public static class Layout {
+    private final List<Match> blocks = new ArrayList<>();
+    private final List<Match> lines = new ArrayList<>();
+    private final List<Match> words = new ArrayList<>();
+    private final List<List<Match>> linesInBlock = new ArrayList<>();
+    private final List<List<Match>> wordsInLine = new ArrayList<>();
+
+    void addBlock(Match block) {
+      if (block != null) {
+        blocks.add(block);
+        linesInBlock.add(new ArrayList<>());
+      }
+    }
+
+    void addLine(Match line) {
+      if (line != null && !line.getText().isEmpty()) {
+        if (blocks.isEmpty()) {
+          addBlock(new Match(line.getRect(), line.score() * 100, line.getText()));
+        }
+        lines.add(line);
+        linesInBlock.get(linesInBlock.size() - 1).add(line);
+        wordsInLine.add(new ArrayList<>());
+      }
+    }
+
+    void addWord(Match word) {
+      if (word != null && !word.getText().isEmpty() && !lines.isEmpty()) {
+        words.add(word);
+        wordsInLine.get(wordsInLine.size() - 1).add(word);
+      }
+    }
+
+    public List<Match> getBlocks() {
+      return blocks;
+    }
+
+    public List<Match> getLines() {
+      return lines;
+    }
+
+    /**
+     * @param nBlock index in getBlocks()
+     * @return the lines of the block
+     */
+    public List<Match> getLines(int nBlock) {
+      return linesInBlock.get(nBlock);
+    }
+
+    public List<Match> getWords() {
+      return words;
+    }
+
+    /**
+     * @param nLine index in getLines()
+     * @return the words of the line
+     */
+    public List<Match> getWords(int nLine) {
+      return wordsInLine.get(nLine);
+    }
+
+    // cached layouts must not be changed by the caller (e.g. relocated)
+    Layout copy() {
+      Layout layout = new Layout();
+      int nLine = 0;
+      for (int nBlock = 0; nBlock < blocks.size(); nBlock++) {
+        layout.addBlock(copy(blocks.get(nBlock)));
+        for (Match line : linesInBlock.get(nBlock)) {
+          layout.addLine(copy(line));
+          for (Match word : wordsInLine.get(nLine++)) {
+            layout.addWord(copy(word));
+          }
+        }
+      }
+      return layout;
+    }
+
+    private static Match copy(Match item) {
+      return new Match(item.getRect(), item.score() * 100, item.getText());
+    }
+
+    @Override
+    public String toString() {
+      return String.format("Layout: blocks %d lines %d words %d", blocks.size(), lines.size(), words.size());
+    }
+  }
   //</editor-fold>
 
   //<editor-fold desc="99 obsolete">
@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.runnerSupport;
+
+import org.python.core.PyList;
+import org.python.core.PyObject;
+import org.python.core.PySystemState;
+import org.python.util.PythonInterpreter;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL: pre-warmed Jython interpreters (Settings.JythonPoolSize), so scripts can run in parallel (SikulixServer)
+ * <br>each interpreter has its own sys (sys.path, sys.argv, sys.modules) and is warmed in the background:
+ * sys.path of the main interpreter and the script header (import of the sikuli module)
+ * <br>after a run (Settings.JythonPoolReset):
+ * <ul>
+ * <li>clean: globals, sys.path, sys.argv and sys.modules are set back to the state after the warm up</li>
+ * <li>new: the interpreter is dropped and a fresh one is warmed in the background</li>
+ * <li>keep: reused as is (globals and modules of the last run are still there)</li>
+ * </ul>
+ * the Java side (Screen, Settings, ImagePath, ...) is shared by all interpreters
+ */
+public class JythonPool {
+
+  private static String me = "JythonPool: ";
+  private static int lvl = 3;
+
+  private static JythonPool instance = null;
+
+  /**
+   * @return the pool (created with Settings.JythonPoolSize interpreters, at least 1, with the first call)
+   */
+  public static synchronized JythonPool get() {
+    if (instance == null) {
+      instance = new JythonPool(Math.max(1, Settings.JythonPoolSize));
+    }
+    return instance;
+  }
+
+  /**
+   * @return true if Jython scripts should run on pooled interpreters (Settings.JythonPoolSize &gt; 0)
+   */
+  public static boolean isActive() {
+    return Settings.JythonPoolSize > 0;
+  }
+
+  //<editor-fold desc="01 interpreters">
+  private static class Warm {
+    final PythonInterpreter interpreter;
+    PyObject globals;
+    List<String> path;
+    Set<String> modules;
+    int runs = 0;
+
+    Warm(PythonInterpreter interpreter) {
+      this.interpreter = interpreter;
+    }
+
+    void snapshot() {
+      PySystemState state = interpreter.getSystemState();
+      globals = interpreter.getLocals().invoke("copy");
+      path = new ArrayList<>();
+      for (Object entry : state.path) {
+        path.add(entry.toString());
+      }
+      modules = new HashSet<>();
+      for (PyObject key : state.modules.invoke("keys").asIterable()) {
+        modules.add(key.toString());
+      }
+    }
+
+    void reset() {
+      PySystemState state = interpreter.getSystemState();
+      interpreter.setLocals(globals.invoke("copy"));
+      state.path.clear();
+      for (String entry : path) {
+        state.path.add(entry);
+      }
+      state.argv.clear();
+      for (PyObject key : state.modules.invoke("keys").asIterable()) {
+        if (!modules.contains(key.toString())) {
+          state.modules.__delitem__(key);
+        }
+      }
+    }
+  }
+
+  private final int size;
+  private final LinkedBlockingQueue<Warm> free = new LinkedBlockingQueue<>();
+  private final Map<PythonInterpreter, Warm> busy = new HashMap<>();
+  private final AtomicInteger warming = new AtomicInteger(0);
+  private final ExecutorService warmer;
+  private long created = 0;
+  private long runs = 0;
+
+  private JythonPool(int size) {
+    this.size = size;
+    warmer = Executors.newSingleThreadExecutor(r -> {
+      Thread thread = new Thread(r, "JythonPool warm up");
+      thread.setDaemon(true);
+      return thread;
+    });
+    for (int n = 0; n < size; n++) {
+      warmUp();
+    }
+    Debug.log(lvl, me + "%d interpreters (reset: %s)", size, Settings.JythonPoolReset);
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private void warmUp() {
+    warming.incrementAndGet();
+    warmer.execute(() -> {
+      try {
+        free.add(create());
+      } catch (Exception ex) {
+        Debug.error(me + "warm up: %s", ex);
+      } finally {
+        warming.decrementAndGet();
+      }
+    });
+  }
+
+  private Warm create() {
+    long start = new Date().getTime();
+    JythonSupport jythonSupport = JythonSupport.get();
+    List<String> mainPath = new ArrayList<>();
+    for (Object entry : jythonSupport.interpreterGet().getSystemState().path) {
+      mainPath.add(entry.toString());
+    }
+    PythonInterpreter interpreter = new PythonInterpreter(null, new PySystemState());
+    PyList path = interpreter.getSystemState().path;
+    path.clear();
+    for (String entry : mainPath) {
+      path.add(entry);
+    }
+    jythonSupport.interpreterBind(interpreter);
+    try {
+      jythonSupport.executeScriptHeader(null, false);
+    } finally {
+      jythonSupport.interpreterBind(null);
+    }
+    Warm warm = new Warm(interpreter);
+    warm.snapshot();
+    synchronized (this) {
+      created++;
+    }
+    Debug.log(lvl, me + "warmed up in %d msec", new Date().getTime() - start);
+    return warm;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 borrow / release">
+
+  /**
+   * wait for a free interpreter (created in the calling thread, if none is ready nor warming up)
+   *
+   * @return the interpreter - to be given back with release()
+   */
+  public PythonInterpreter borrow() {
+    Warm warm = null;
+    try {
+      while (warm == null) {
+        warm = free.poll(1, TimeUnit.SECONDS);
+        if (warm == null && warming.get() == 0) {
+          Debug.log(lvl, me + "no interpreter ready - creating one");
+          warm = create();
+        }
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(me + "interrupted while waiting for an interpreter");
+    }
+    synchronized (this) {
+      busy.put(warm.interpreter, warm);
+      runs++;
+    }
+    warm.runs++;
+    return warm.interpreter;
+  }
+
+  /**
+   * give back the interpreter after the run (reset according to Settings.JythonPoolReset)
+   *
+   * @param interpreter as given by borrow()
+   */
+  public void release(PythonInterpreter interpreter) {
+    Warm warm;
+    synchronized (this) {
+      warm = busy.remove(interpreter);
+    }
+    if (warm == null) {
+      return;
+    }
+    String reset = Settings.JythonPoolReset;
+    if ("keep".equals(reset)) {
+      free.add(warm);
+      return;
+    }
+    if (!"new".equals(reset)) {
+      try {
+        warm.reset();
+        free.add(warm);
+        return;
+      } catch (Exception ex) {
+        Debug.error(me + "reset (%d runs): %s - replaced by a new interpreter", warm.runs, ex);
+      }
+    }
+    try {
+      interpreter.close();
+    } catch (Exception ex) {
+    }
+    warmUp();
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("%s(size %d free %d busy %d created %d runs %d)",
+        me.trim(), size, free.size(), busy.size(), created, runs);
+  }
+  //</editor-fold>
+}
@@ -104,39 +104,61 @@ public class JythonSupport implements IRunnerSupport {
     runTime.isJythonReady = true;
   }
 
+  private static final ThreadLocal<PythonInterpreter> boundInterpreter = new ThreadLocal<>();
+
+  // the interpreter bound to this thread (JythonPool) or the singleton
+  private static PythonInterpreter interpreter() {
+    PythonInterpreter bound = boundInterpreter.get();
+    return bound != null ? bound : interpreter;
+  }
+
+  /**
+   * INTERNAL: the interpreter methods called in this thread use the given interpreter (JythonPool)
+   *
+   * @param pooled the interpreter, null: back to the singleton
+   */
+  public void interpreterBind(PythonInterpreter pooled) {
+    if (pooled == null) {
+      boundInterpreter.remove();
+    } else {
+      boundInterpreter.set(pooled);
+    }
+  }
+
   /**
    * For experts, who want to tweak the Jython interprter instance<br>
    *   Usage: org.sikuli.script.runnerSupport.JythonSupport.get().interpreterGet()
    * @return the singleton Jython interpreter instance (org.python.util.PythonInterpreter)
+   * or the pooled one bound to the current thread
    */
   public PythonInterpreter interpreterGet() {
-    return interpreter;
+    return interpreter();
   }
 
   public void interpreterCleanup() {
-    if (null != interpreter) {
-      interpreter.cleanup();
+    if (null != interpreter()) {
+      interpreter().cleanup();
     }
   }
 
   public void interpreterClose() {
-    if (null != interpreter) {
-      interpreter.close();
+    if (null != interpreter()) {
+      interpreter().close();
     }
   }
 
   public boolean interpreterRedirect(PrintStream stdout, PrintStream stderr) {
-    if (interpreter == null) {
+    if (interpreter() == null) {
       return false;
     }
     try {
-      interpreter.setOut(stdout);
+      interpreter().setOut(stdout);
     } catch (Exception e) {
       log(-1, "Jython: redirect STDOUT: %s", e.getMessage());
       return false;
     }
     try {
-      interpreter.setErr(stderr);
+      interpreter().setErr(stderr);
     } catch (Exception e) {
       log(-1, "Jython: redirect STDERR: %s", e.getMessage());
       return false;
@@ -296,14 +318,14 @@ public class JythonSupport implements IRunnerSupport {
 
   //<editor-fold desc="17 exec/eval">
   public Object interpreterEval(String expression) {
-    if (interpreter == null) {
+    if (interpreter() == null) {
       return "";
     }
-    return interpreter.eval(expression);
+    return interpreter().eval(expression);
   }
 
   public boolean interpreterExecString(String script) {
-    interpreter.exec(script);
+    interpreter().exec(script);
     return true;
   }
 
@@ -316,18 +338,31 @@ public class JythonSupport implements IRunnerSupport {
       log(-1, "exec compiled script: %s", e.getMessage());
     }
     PyCode pyCode = BytecodeLoader.makeCode(FilenameUtils.getBaseName(scriptFile), data, scriptFile);
-    interpreter.exec(pyCode);
+    interpreter().exec(pyCode);
   }
 
   public void interpreterExecFile(String script) {
-    interpreter.execfile(script);
+    interpreter().execfile(script);
   }
 
   public void executeScriptHeader(List<String> codeBefore) {
+    executeScriptHeader(codeBefore, true);
+  }
+
+  /**
+   * INTERNAL: the script header
+   *
+   * @param codeBefore lines to run after the header (might be null)
+   * @param resetROI   false: without use() (pooled interpreters: the SCREEN is shared, see PooledBundle)
+   */
+  public void executeScriptHeader(List<String> codeBefore, boolean resetROI) {
     for (String line : SCRIPT_HEADER) {
       log(lvl + 1, "executeScriptHeader: %s", line);
       interpreterExecString(line);
     }
+    if (resetROI) {
+      interpreterResetROI();
+    }
     if (codeBefore != null) {
       for (String line : codeBefore) {
         interpreterExecString(line);
@@ -341,9 +376,18 @@ public class JythonSupport implements IRunnerSupport {
   private static String[] SCRIPT_HEADER = new String[]{
           "# -*- coding: utf-8 -*- ",
           "import org.sikuli.script.SikulixForJython",
-          "from sikuli import *",
-          "use() #resetROI()"
+          "from sikuli import *"
   };
+
+  /**
+   * INTERNAL: use() #resetROI() (needs the script header)
+   */
+  public void interpreterResetROI() {
+    log(lvl + 1, "executeScriptHeader: %s", SCRIPT_RESET);
+    interpreterExecString(SCRIPT_RESET);
+  }
+
+  private static final String SCRIPT_RESET = "use() #resetROI()";
   //</editor-fold>
 
   //<editor-fold desc="10 sys.path handling">
@@ -356,12 +400,12 @@ public class JythonSupport implements IRunnerSupport {
 
   public void getSysPath() {
     synchronized (sysPath) {
-      if (null == interpreter) {
+      if (null == interpreter()) {
         return;
       }
       sysPath.clear();
       try {
-        PySystemState pyState = interpreter.getSystemState();
+        PySystemState pyState = interpreter().getSystemState();
         PyList pyPath = pyState.path;
         int pathLen = pyPath.__len__();
         for (int i = 0; i < pathLen; i++) {
@@ -377,11 +421,11 @@ public class JythonSupport implements IRunnerSupport {
 
   public void setSysPath() {
     synchronized (sysPath) {
-      if (null == interpreter || null == sysPath) {
+      if (null == interpreter() || null == sysPath) {
         return;
       }
       try {
-        PySystemState pyState = interpreter.getSystemState();
+        PySystemState pyState = interpreter().getSystemState();
         PyList pyPath = pyState.path;
         int pathLen = pyPath.__len__();
         for (int i = 0; i < pathLen && i < sysPath.size(); i++) {
@@ -673,12 +717,12 @@ public class JythonSupport implements IRunnerSupport {
 
   public List<String> getSysArgv() {
     sysArgv = new ArrayList<String>();
-    if (null == interpreter) {
+    if (null == interpreter()) {
       sysArgv = null;
       return null;
     }
     try {
-      PyList pyArgv = interpreter.getSystemState().argv;
+      PyList pyArgv = interpreter().getSystemState().argv;
       Integer argvLen = pyArgv.__len__();
       for (int i = 0; i < argvLen; i++) {
         String entry = (String) pyArgv.get(i);
@@ -692,11 +736,11 @@ public class JythonSupport implements IRunnerSupport {
   }
 
   public void setSysArgv(List<String> args) {
-    if (null == interpreter) {
+    if (null == interpreter()) {
       return;
     }
     try {
-      PyList pyArgv = interpreter.getSystemState().argv;
+      PyList pyArgv = interpreter().getSystemState().argv;
       pyArgv.clear();
       for (String arg : args) {
         pyArgv.add(arg);
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.runnerSupport;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.script.ImagePath;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * INTERNAL: the bundle folder of the scripts running on pooled interpreters (JythonPool)
+ * <br>the image path and the SCREEN are global: scripts from the same bundle run in parallel,
+ * a script from another bundle waits until the running ones have ended
+ * <br>the bundle folder is set and the ROI reset only by the first script (no running one):
+ * a parallel script does not purge the image cache or reset the ROI of the others
+ */
+public class PooledBundle {
+
+  private static String me = "PooledBundle: ";
+  private static int lvl = 3;
+
+  private static final Object lock = new Object();
+  private static File folder = null;
+  private static int users = 0;
+
+  /**
+   * waits until the script can run with the given bundle folder
+   *
+   * @param bundle the folder of the script (null: any bundle)
+   * @param first  run by the first script only, while no other one is running (reset of the ROI)
+   * @throws InterruptedException while waiting
+   */
+  public static void enter(File bundle, Runnable first) throws InterruptedException {
+    if (bundle != null) {
+      try {
+        bundle = bundle.getCanonicalFile();
+      } catch (IOException e) {
+        bundle = bundle.getAbsoluteFile();
+      }
+    }
+    synchronized (lock) {
+      boolean waited = false;
+      while (users > 0 && bundle != null && folder != null && !folder.equals(bundle)) {
+        if (!waited) {
+          Debug.log(lvl, me + "%s waits for %s (%d running)", bundle, folder, users);
+          waited = true;
+        }
+        lock.wait();
+      }
+      if (bundle != null && folder == null) {
+        folder = bundle;
+        ImagePath.setBundleFolder(bundle);
+      }
+      if (users == 0 && first != null) {
+        first.run();
+      }
+      users++;
+    }
+  }
+
+  /**
+   * the script has ended (the next bundle can be set, when it was the last one)
+   */
+  public static void leave() {
+    synchronized (lock) {
+      if (users > 0 && --users == 0) {
+        folder = null;
+        lock.notifyAll();
+      }
+    }
+  }
+
+  /**
+   * @return the bundle folder of the running scripts (null: none)
+   */
+  public static File folder() {
+    synchronized (lock) {
+      return folder;
+    }
+  }
+
+  /**
+   * @return the number of running scripts
+   */
+  public static int users() {
+    synchronized (lock) {
+      return users;
+    }
+  }
+}
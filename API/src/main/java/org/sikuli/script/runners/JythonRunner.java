@@ -3,9 +3,12 @@
  */
 package org.sikuli.script.runners;
 
+import org.python.util.PythonInterpreter;
 import org.sikuli.basics.Debug;
 import org.sikuli.script.Sikulix;
+import org.sikuli.script.runnerSupport.JythonPool;
 import org.sikuli.script.runnerSupport.JythonSupport;
+import org.sikuli.script.runnerSupport.PooledBundle;
 import org.sikuli.script.support.IScriptRunner;
 import org.sikuli.script.support.RunTime;
 
@@ -149,50 +152,109 @@ public class JythonRunner extends AbstractLocalFileScriptRunner {
     // Since we have a static interpreter, we have to synchronize class wide
     synchronized (JythonRunner.class) {
       initAbort();
+      return execScript(scriptFile, argv, options);
+    }
+  }
 
+  /**
+   * INTERNAL: executes the jythonscript on a pre-warmed interpreter of the JythonPool (SikulixServer)
+   * <br>not synchronized class wide: scripts on different interpreters run in parallel
+   * <br>no abort and no timeout (not in the runner's worker thread)
+   * <br>the image path and the SCREEN are global: scripts from another bundle folder wait
+   * and the ROI is only reset while no other script is running (see PooledBundle)
+   *
+   * @param scriptFile
+   * @param argv       arguments to be populated into sys.argv
+   * @param options
+   * @return The exitcode
+   */
+  public int runPooled(String scriptFile, String[] argv, IScriptRunner.Options options) {
+    if (!poolReady) {
+      preparePool();
+    }
+    JythonPool pool = JythonPool.get();
+    PythonInterpreter interpreter = pool.borrow();
+    jythonSupport.interpreterBind(interpreter);
+    try {
       File pyFile = new File(scriptFile);
-
       jythonSupport.interpreterFillSysArgv(pyFile, argv);
-      jythonSupport.executeScriptHeader(codeBefore);
+      jythonSupport.executeScriptHeader(codeBefore, false);
+      try {
+        PooledBundle.enter(pyFile.exists() ? pyFile.getParentFile() : null, jythonSupport::interpreterResetROI);
+      } catch (InterruptedException e) {
+        log(-1, "runPooled: interrupted while waiting for the bundle: %s", scriptFile);
+        return -1;
+      }
+      try {
+        return execFile(pyFile, null != options ? options : new IScriptRunner.Options());
+      } finally {
+        PooledBundle.leave();
+      }
+    } finally {
+      jythonSupport.interpreterBind(null);
+      pool.release(interpreter);
+    }
+  }
 
-      prepareFileLocation(pyFile, options);
+  /**
+   * INTERNAL: initialize the runner (sys.path of the main interpreter) and start the warm up of the JythonPool
+   */
+  public void preparePool() {
+    // init waits for a running script (class wide lock): only once
+    init(null);
+    JythonPool.get();
+    poolReady = true;
+  }
 
-      int exitCode = 0;
+  private static volatile boolean poolReady = false;
 
-      try {
-        if (scriptFile.endsWith("$py.class")) {
-          jythonSupport.interpreterExecCode(new File(scriptFile));
+  private int execScript(String scriptFile, String[] argv, IScriptRunner.Options options) {
+    File pyFile = new File(scriptFile);
+
+    jythonSupport.interpreterFillSysArgv(pyFile, argv);
+    jythonSupport.executeScriptHeader(codeBefore);
+
+    prepareFileLocation(pyFile, options);
+
+    return execFile(pyFile, options);
+  }
+
+  private int execFile(File pyFile, IScriptRunner.Options options) {
+    int exitCode = 0;
+
+    try {
+      if (pyFile.getName().endsWith("$py.class")) {
+        jythonSupport.interpreterExecCode(pyFile);
+      } else {
+        jythonSupport.interpreterExecFile(pyFile.getAbsolutePath());
+      }
+    } catch (Throwable scriptException) {
+      if(!isAborted()) {
+        exitCode = 1;
+        java.util.regex.Pattern p = java.util.regex.Pattern.compile("SystemExit: (-?[0-9]+)");
+        String exception = scriptException.toString();
+
+        Matcher matcher = p.matcher(exception);
+        if (matcher.find()) {
+          exitCode = Integer.parseInt(matcher.group(1));
+          Debug.info("Exit code: " + exitCode);
         } else {
-          jythonSupport.interpreterExecFile(pyFile.getAbsolutePath());
-        }
-      } catch (Throwable scriptException) {
-        if(!isAborted()) {
-          exitCode = 1;
-          java.util.regex.Pattern p = java.util.regex.Pattern.compile("SystemExit: (-?[0-9]+)");
-          String exception = scriptException.toString();
-
-          Matcher matcher = p.matcher(exception);
-          if (matcher.find()) {
-            exitCode = Integer.parseInt(matcher.group(1));
-            Debug.info("Exit code: " + exitCode);
-          } else {
-            int errorExit = jythonSupport.findErrorSource(scriptException, pyFile.getAbsolutePath());
-            if (null != options) {
-              options.setErrorLine(errorExit);
-            }
+          int errorExit = jythonSupport.findErrorSource(scriptException, pyFile.getAbsolutePath());
+          if (null != options) {
+            options.setErrorLine(errorExit);
           }
         }
-      } finally {
-        jythonSupport.interpreterCleanup();
-      }
-
-      if (System.out.checkError()) {
-        Sikulix.popError("System.out is broken (console output)!" + "\nYou will not see any messages anymore!"
-                + "\nSave your work and restart the IDE!", "Fatal Error");
       }
+    } finally {
+      jythonSupport.interpreterCleanup();
+    }
 
-      return exitCode;
+    if (System.out.checkError()) {
+      Sikulix.popError("System.out is broken (console output)!" + "\nYou will not see any messages anymore!"
+              + "\nSave your work and restart the IDE!", "Fatal Error");
     }
+
+    return exitCode;
   }
 
   @Override
@@ -0,0 +1,40 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+
+/**
+ * INTERNAL: a native screen capture used by {@link RobotDesktop#captureScreen(Rectangle)}
+ * <br>java Robot's createScreenCapture is the fallback, if there is no provider,
+ * it is not available or a capture returns null
+ */
+public interface CaptureProvider {
+
+  /**
+   * @return a short name for logging
+   */
+  String getName();
+
+  /**
+   * @return true if the provider can be used in this environment (checked once)
+   */
+  boolean isAvailable();
+
+  /**
+   * capture the given rectangle (global screen coordinates)
+   *
+   * @param rect the rectangle
+   * @return the ScreenImage (content should be a BGR Mat) or null to fall back to java Robot
+   */
+  ScreenImage capture(Rectangle rect);
+
+  /**
+   * free native resources
+   */
+  void close();
+}
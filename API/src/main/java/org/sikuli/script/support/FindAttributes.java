@@ -7,6 +7,8 @@ package org.sikuli.script.support;
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Settings;
 import org.sikuli.script.Element;
 import org.sikuli.script.Image;
@@ -14,7 +16,13 @@ import org.sikuli.script.Match;
 import org.sikuli.script.Pattern;
 
 import java.awt.*;
+import java.io.File;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class FindAttributes {
 
@@ -62,63 +70,362 @@ public class FindAttributes {
       target = new Image(searchTarget);
       originalTarget = target;
     }
-    what = target.getContent();
-    if (target.hasURL()) {
-      what = possibleImageResizeOrCallback(target, what);
+    template = Template.get(target);
+    what = template.what;
+    mask = template.mask;
+    gray = template.gray;
+    target.stdDev(template.stdDev);
+    target.plain(template.plain);
+    target.mean(template.mean);
+    target.black(template.black);
+    if (template.meanColor != null) {
+      target.white(template.white);
+      target.meanColor(template.meanColor);
     }
-    if (target.isMasked()) {
-      List<Mat> mats = SXOpenCV.extractMask(what, false);
-      what = mats.get(0);
-      mask = mats.get(1);
-    } else {
-      if (what.channels() == 4) {
-        List<Mat> mats = SXOpenCV.extractMask(what, true);
-        what = mats.get(0);
-        mask = mats.get(1);
+  }
+
+  private FindAttributes(FindAttributes base, Template template) {
+    target = base.target;
+    originalTarget = base.originalTarget;
+    this.template = template;
+    what = template.what;
+    mask = template.mask;
+    gray = template.gray;
+  }
+
+  private Template template;
+
+  //<editor-fold desc="multi-scale search">
+  private String scaleContext = null;
+
+  /**
+   * @return where the target is searched (learned factor of the multi-scale search), null if not known
+   */
+  public String scaleContext() {
+    return scaleContext;
+  }
+
+  public void scaleContext(String context) {
+    scaleContext = context;
+  }
+
+  /**
+   * @param factor the scale factor
+   * @return the target with what and mask scaled by factor (made once per template and factor)
+   */
+  public FindAttributes scaled(double factor) {
+    if (factor == 1) {
+      return this;
+    }
+    return new FindAttributes(this, template.scaled(factor));
+  }
+  //</editor-fold>
+
+  /**
+   * @return what inverted (plain black targets) - made once per template
+   */
+  public Mat whatInverted() {
+    return template.inverted();
+  }
+
+  /**
+   * @param size the wanted size
+   * @return what resized to size (search downsized) - made once per template and size
+   */
+  public Mat whatDownsized(Size size) {
+    return template.downsized(size);
+  }
+
+  /**
+   * INTERNAL: a search with this target starts (whatInverted/whatDownsized are not released until done)
+   */
+  public void use() {
+    searches++;
+    if (!template.use()) {
+      // evicted and its content given back to the image cache: prepared again
+      template = Template.get(target);
+      what = template.what;
+      mask = template.mask;
+      gray = template.gray;
+      template.use();
+    }
+  }
+
+  /**
+   * INTERNAL: the search started with use() has ended
+   */
+  public void done() {
+    template.done();
+  }
+
+  private int searches = 0;
+
+  /**
+   * @return the number of searches started with use() (findMatch, checkLastSeen)
+   */
+  public int searches() {
+    return searches;
+  }
+
+  //<editor-fold desc="template cache">
+  /**
+   * the prepared content of a search target (resized, mask extracted, statistics)
+   * <br>kept in a cache (Settings.FindTemplateCache), if the target is an image file (not ImageCallback),
+   * so repeated finds of the same image need no preparation
+   * <br>the key: URL and modification time of image and mask, resize factor (Settings.AlwaysResize), masked
+   * <br>the Mats are never changed after preparation (shared by all finds with the same key)
+   * <br>a cached template holds the image content (Element.useContent), so the image cache does not release it
+   * <br>evicted: when no search uses it, the Mats made by the template (inverted, downsized) are released
+   * and the image content is given back (Element.doneContent)
+   */
+  private static class Template {
+    Mat what;
+    Mat mask = new Mat();
+    boolean gray = false;
+    double stdDev = 0;
+    double mean = 0;
+    boolean plain = false;
+    boolean black = false;
+    boolean white = false;
+    Color meanColor = null;
+    private Mat inverted = null;
+    private final Map<Size, Mat> downsized = new ConcurrentHashMap<>();
+    private final Map<Double, Template> scaled = new ConcurrentHashMap<>();
+    private int users = 0;
+    private boolean evicted = false;
+    // the image cache content held by a cached template
+    private Mat shared = null;
+    private boolean released = false;
+
+    Template scaled(double factor) {
+      return scaled.computeIfAbsent(factor, wanted -> new Template(this, wanted));
+    }
+
+    private Template(Template base, double factor) {
+      what = new Mat();
+      Imgproc.resize(base.what, what, new Size(), factor, factor, factor < 1 ? Imgproc.INTER_AREA : Imgproc.INTER_CUBIC);
+      if (!base.mask.empty()) {
+        Imgproc.resize(base.mask, mask, what.size(), 0, 0, Imgproc.INTER_NEAREST);
       }
-      if (target.hasMask()) {
-        mask = possibleImageResizeMask(target, what);
+      gray = base.gray;
+      stdDev = base.stdDev;
+      mean = base.mean;
+      plain = base.plain;
+      black = base.black;
+      white = base.white;
+      meanColor = base.meanColor;
+    }
+
+    synchronized Mat inverted() {
+      if (inverted == null) {
+        inverted = new Mat();
+        Core.bitwise_not(what, inverted);
       }
+      return inverted;
     }
-    if (what.channels() == 1) {
-      gray = true;
+
+    Mat downsized(Size size) {
+      return downsized.computeIfAbsent(size, wanted -> {
+        Mat whatDown = new Mat();
+        Imgproc.resize(what, whatDown, wanted, 0, 0, Imgproc.INTER_AREA);
+        return whatDown;
+      });
     }
-    Mat finalContent = new Mat();
-    if (mask.empty()) {
-      finalContent = what;
-    } else {
-      Core.multiply(what, mask, finalContent);
+
+    // false: released after eviction (what might be released by the image cache)
+    synchronized boolean use() {
+      if (released) {
+        return false;
+      }
+      users++;
+      return true;
     }
 
-    MatOfDouble pMean = new MatOfDouble();
-    MatOfDouble pStdDev = new MatOfDouble();
-    Core.meanStdDev(finalContent, pMean, pStdDev);
+    synchronized void done() {
+      users--;
+      if (evicted && users == 0) {
+        releaseOwned();
+      }
+    }
 
-    double sum = 0.0;
-    double[] arr = pStdDev.toArray();
-    for (int i = 0; i < arr.length; i++) {
-      sum += arr[i];
+    synchronized void evict() {
+      evicted = true;
+      if (users == 0) {
+        releaseOwned();
+      }
+    }
+
+    // the scaled templates are used with the base template: their own Mats go with it
+    private synchronized void releaseOwned() {
+      if (inverted != null) {
+        inverted.release();
+        inverted = null;
+      }
+      for (Mat whatDown : downsized.values()) {
+        whatDown.release();
+      }
+      downsized.clear();
+      for (Template other : scaled.values()) {
+        other.releaseOwned();
+      }
+      if (shared != null) {
+        Element.doneContent(shared);
+        shared = null;
+        released = true;
+      }
+    }
+
+    // access ordered: iteration starts with the least recently used
+    private static final Map<String, Template> cache = Collections.synchronizedMap(
+        new LinkedHashMap<String, Template>(16, 0.75f, true) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+            if (size() > Settings.FindTemplateCache) {
+              eldest.getValue().evict();
+              return true;
+            }
+            return false;
+          }
+        });
+    private static long hits = 0;
+    private static long misses = 0;
+
+    static Template get(Image target) {
+      String key = key(target);
+      if (key == null) {
+        return new Template(target, false);
+      }
+      Template template = cache.get(key);
+      if (template != null) {
+        synchronized (cache) {
+          hits++;
+        }
+        return template;
+      }
+      template = new Template(target, true);
+      synchronized (cache) {
+        Template other = cache.get(key);
+        if (other != null) {
+          // prepared meanwhile by another find
+          template.evict();
+          hits++;
+          return other;
+        }
+        misses++;
+        cache.put(key, template);
+      }
+      return template;
+    }
+
+    private static String key(Image target) {
+      if (Settings.FindTemplateCache < 1 || Settings.ImageCallback != null || !target.hasURL()) {
+        return null;
+      }
+      String key = target.url().toExternalForm() + "|" + lastModified(target.url())
+          + "|" + target.resize() + "|" + Settings.AlwaysResize + "|" + target.isMasked();
+      if (target.hasMask()) {
+        Image maskImage = target.getMask();
+        if (!maskImage.hasURL()) {
+          return null;
+        }
+        key += "|" + maskImage.url().toExternalForm() + "|" + lastModified(maskImage.url());
+      }
+      return key;
     }
-    target.stdDev(sum);
-    target.plain(sum < SXOpenCV.MIN_THRESHHOLD);
 
-    sum = 0.0;
-    arr = pMean.toArray();
-    int[] cvMeanColor = new int[arr.length];
-    for (int i = 0; i < arr.length; i++) {
-      cvMeanColor[i] = (int) arr[i];
-      sum += arr[i];
+    private static long lastModified(URL url) {
+      return "file".equals(url.getProtocol()) ? new File(url.getPath()).lastModified() : -1;
     }
-    target.mean(sum);
-    target.black(sum < SXOpenCV.MIN_THRESHHOLD && target.plain());
 
-    if (cvMeanColor.length > 1) {
-      target.white(SXOpenCV.isColorEqual(cvMeanColor, Color.WHITE));
-      target.meanColor(new Color(cvMeanColor[2], cvMeanColor[1], cvMeanColor[0]));
+    private Template(Image target, boolean cached) {
+      Mat content;
+      if (cached) {
+        content = Element.useContent(target);
+        shared = content;
+      } else {
+        content = target.getContent();
+        if (Settings.ImageCaching && target.hasURL()) {
+          // not held: the image cache might release it while still used here
+          content = content.clone();
+        }
+      }
+      what = content;
+      if (target.hasURL()) {
+        what = possibleImageResizeOrCallback(target, what);
+      }
+      if (target.isMasked()) {
+        List<Mat> mats = SXOpenCV.extractMask(what, false);
+        what = mats.get(0);
+        mask = mats.get(1);
+      } else {
+        if (what.channels() == 4) {
+          List<Mat> mats = SXOpenCV.extractMask(what, true);
+          what = mats.get(0);
+          mask = mats.get(1);
+        }
+        if (target.hasMask()) {
+          mask = possibleImageResizeMask(target, what);
+        }
+      }
+      if (what.channels() == 1) {
+        gray = true;
+      }
+      Mat finalContent = new Mat();
+      if (mask.empty()) {
+        finalContent = what;
+      } else {
+        Core.multiply(what, mask, finalContent);
+      }
+
+      MatOfDouble pMean = new MatOfDouble();
+      MatOfDouble pStdDev = new MatOfDouble();
+      Core.meanStdDev(finalContent, pMean, pStdDev);
+
+      double sum = 0.0;
+      double[] arr = pStdDev.toArray();
+      for (int i = 0; i < arr.length; i++) {
+        sum += arr[i];
+      }
+      stdDev = sum;
+      plain = sum < SXOpenCV.MIN_THRESHHOLD;
+
+      sum = 0.0;
+      arr = pMean.toArray();
+      int[] cvMeanColor = new int[arr.length];
+      for (int i = 0; i < arr.length; i++) {
+        cvMeanColor[i] = (int) arr[i];
+        sum += arr[i];
+      }
+      mean = sum;
+      black = sum < SXOpenCV.MIN_THRESHHOLD && plain;
+
+      if (cvMeanColor.length > 1) {
+        white = SXOpenCV.isColorEqual(cvMeanColor, Color.WHITE);
+        meanColor = new Color(cvMeanColor[2], cvMeanColor[1], cvMeanColor[0]);
+      }
+    }
+  }
+
+  /**
+   * @return prepared search targets used again / prepared and cached
+   */
+  public static String cacheStats() {
+    synchronized (Template.cache) {
+      return String.format("FindTemplates: %d (hits %d prepared %d)", Template.cache.size(), Template.hits, Template.misses);
+    }
+  }
+
+  public static void resetCache() {
+    synchronized (Template.cache) {
+      for (Template template : Template.cache.values()) {
+        template.evict();
+      }
+      Template.cache.clear();
     }
   }
+  //</editor-fold>
 
-  private Mat possibleImageResizeOrCallback(Image image, Mat what) {
+  private static Mat possibleImageResizeOrCallback(Image image, Mat what) {
     Mat originalContent = what;
     if (Settings.ImageCallback != null) {
       Mat contentResized = SXOpenCV.makeMat(Settings.ImageCallback.callback(image), false);
@@ -134,7 +441,7 @@ public class FindAttributes {
     return originalContent;
   }
 
-  private Mat possibleImageResizeMask(Image image, Mat what) {
+  private static Mat possibleImageResizeMask(Image image, Mat what) {
     Mat mask = image.getMask().getContent();
     double factor = mask.width() / what.width();
     if (factor > 0.1 && factor != 1) {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL: shared bounded thread pool for parallel find operations (findAny, findBest)
+ * <br>the pool is created when first needed with Settings.FindAnyThreads threads (daemon)
+ * <br>tasks started from a pool thread are run inline (no deadlock with nested findAny)
+ */
+public class FindPool {
+
+  private static ExecutorService executor = null;
+  private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+  private static class PoolThread extends Thread {
+    PoolThread(Runnable runnable) {
+      super(runnable, "FindPool-" + threadCount.incrementAndGet());
+      setDaemon(true);
+    }
+  }
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      int threads = Settings.FindAnyThreads;
+      if (threads < 1) {
+        threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+      }
+      Debug.log(3, "FindPool: starting with %d threads", threads);
+      executor = Executors.newFixedThreadPool(threads, PoolThread::new);
+    }
+    return executor;
+  }
+
+  private static boolean isPoolThread() {
+    return Thread.currentThread() instanceof PoolThread;
+  }
+
+  private static <T> T call(Callable<T> task) {
+    try {
+      return task.call();
+    } catch (Exception ex) {
+      Debug.log(3, "FindPool: task: %s", ex.getMessage());
+      return null;
+    }
+  }
+
+  /**
+   * run all tasks in parallel and wait until all are finished
+   *
+   * @param tasks the tasks
+   * @param <T>   result type
+   * @return the results in the order of the tasks (null for failed tasks)
+   */
+  public static <T> List<T> all(List<Callable<T>> tasks) {
+    List<T> results = new ArrayList<>();
+    if (isPoolThread()) {
+      for (Callable<T> task : tasks) {
+        results.add(call(task));
+      }
+      return results;
+    }
+    ExecutorService pool = getExecutor();
+    List<CompletableFuture<T>> futures = new ArrayList<>();
+    for (Callable<T> task : tasks) {
+      futures.add(CompletableFuture.supplyAsync(() -> call(task), pool));
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    for (CompletableFuture<T> future : futures) {
+      results.add(future.join());
+    }
+    return results;
+  }
+
+  /**
+   * run the tasks in parallel and return the first result, that is not null
+   * <br>tasks not yet started are skipped, running tasks are left to finish (result ignored)
+   *
+   * @param tasks the tasks
+   * @param <T>   result type
+   * @return the first valid result or null if there is none
+   */
+  public static <T> T first(List<Callable<T>> tasks) {
+    if (isPoolThread()) {
+      for (Callable<T> task : tasks) {
+        T result = call(task);
+        if (result != null) {
+          return result;
+        }
+      }
+      return null;
+    }
+    ExecutorService pool = getExecutor();
+    AtomicBoolean done = new AtomicBoolean(false);
+    CompletableFuture<T> winner = new CompletableFuture<>();
+    List<CompletableFuture<T>> futures = new ArrayList<>();
+    List<CompletableFuture<Void>> accepted = new ArrayList<>();
+    for (Callable<T> task : tasks) {
+      CompletableFuture<T> future = CompletableFuture.supplyAsync(() -> done.get() ? null : call(task), pool);
+      futures.add(future);
+      accepted.add(future.thenAccept(result -> {
+        if (result != null && done.compareAndSet(false, true)) {
+          winner.complete(result);
+        }
+      }));
+    }
+    CompletableFuture.allOf(accepted.toArray(new CompletableFuture[0]))
+        .whenComplete((ignored, ex) -> winner.complete(null));
+    T result = winner.join();
+    done.set(true);
+    for (CompletableFuture<T> future : futures) {
+      future.cancel(false);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.awt.Rectangle;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * INTERNAL: scales for the multi-scale search (Settings.FindScales)
+ * <br>a target not found as is, is searched scaled with the other factors (template pyramid per FindAttributes)
+ * <br>the factor a target was found with on a screen is learned (Settings.FindScaleLearn)
+ * and tried first with the next finds on this screen
+ * <br>learned factors are kept in SikulixStore/FindScales.properties (per screen id and size)
+ */
+public class FindScale {
+
+  private static String me = "FindScale: ";
+  private static int lvl = 3;
+
+  private static final double MIN = 0.2;
+  private static final double MAX = 5;
+  private static final double STEP = 0.25;
+
+  //<editor-fold desc="01 scales">
+  private static String parsed = "";
+  private static double[] scales = new double[0];
+
+  /**
+   * Settings.FindScales: a list of factors ("0.8,1.25,1.5,2") or a range with optional step ("0.5-2" or "0.5-2:0.1")
+   *
+   * @return the factors (without 1), empty if multi-scale search is off
+   */
+  public static synchronized double[] scales() {
+    String given = Settings.FindScales == null ? "" : Settings.FindScales.trim();
+    if (!given.equals(parsed)) {
+      parsed = given;
+      scales = parse(given);
+    }
+    return scales;
+  }
+
+  private static double[] parse(String given) {
+    List<Double> factors = new ArrayList<>();
+    try {
+      if (given.contains("-")) {
+        String[] parts = given.split(":");
+        String[] range = parts[0].split("-");
+        double from = Double.parseDouble(range[0].trim());
+        double to = Double.parseDouble(range[1].trim());
+        double step = parts.length > 1 ? Double.parseDouble(parts[1].trim()) : STEP;
+        for (int n = 0; step > 0 && from + n * step <= to + 1e-9; n++) {
+          factors.add(from + n * step);
+        }
+      } else if (!given.isEmpty()) {
+        for (String factor : given.split(",")) {
+          factors.add(Double.parseDouble(factor.trim()));
+        }
+      }
+    } catch (Exception e) {
+      Debug.error(me + "Settings.FindScales not valid: %s", given);
+      factors.clear();
+    }
+    factors.removeIf(factor -> factor < MIN || factor > MAX || Math.abs(factor - 1) < 0.01);
+    double[] result = new double[factors.size()];
+    for (int n = 0; n < result.length; n++) {
+      result[n] = Math.round(factors.get(n) * 1000) / 1000.0;
+    }
+    return result;
+  }
+
+  /**
+   * @param context where the target is searched (see context()), might be null
+   * @return the factors in the order to try: learned first, then 1 and the others with increasing distance
+   */
+  public static double[] order(String context) {
+    double[] given = scales();
+    double first = learned(context);
+    List<Double> factors = new ArrayList<>();
+    factors.add(first);
+    if (first != 1) {
+      factors.add(1.0);
+    }
+    for (double factor : given) {
+      if (factor != first) {
+        factors.add(factor);
+      }
+    }
+    factors.subList(1, factors.size()).sort((f1, f2) ->
+        Double.compare(Math.abs(Math.log(f1 / first)), Math.abs(Math.log(f2 / first))));
+    double[] result = new double[factors.size()];
+    for (int n = 0; n < result.length; n++) {
+      result[n] = factors.get(n);
+    }
+    return result;
+  }
+
+  /**
+   * @return the largest factor (at least 1)
+   */
+  public static double max() {
+    double max = 1;
+    for (double factor : scales()) {
+      max = Math.max(max, factor);
+    }
+    return max;
+  }
+
+  /**
+   * @return the smallest factor (at most 1)
+   */
+  public static double min() {
+    double min = 1;
+    for (double factor : scales()) {
+      min = Math.min(min, factor);
+    }
+    return min;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 learned">
+  private static Properties learned = null;
+
+  /**
+   * @param screen the screen searched on
+   * @return the context for the learned factor: screen class, id and size
+   */
+  public static String context(IScreen screen) {
+    if (screen == null) {
+      return null;
+    }
+    Rectangle bounds = screen.getBounds();
+    return String.format("%s%d-%dx%d", screen.getClass().getSimpleName(), screen.getID(), bounds.width, bounds.height);
+  }
+
+  /**
+   * @param context see context()
+   * @return the factor learned for this context, 1 if none
+   */
+  public static synchronized double learned(String context) {
+    if (context == null || !Settings.FindScaleLearn) {
+      return 1;
+    }
+    String factor = load().getProperty(context);
+    try {
+      return factor == null ? 1 : Double.parseDouble(factor);
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * remember the factor the target was found with (stored, if changed)
+   *
+   * @param context see context()
+   * @param factor  the found factor
+   */
+  public static synchronized void learn(String context, double factor) {
+    if (context == null || !Settings.FindScaleLearn || learned(context) == factor) {
+      return;
+    }
+    load().setProperty(context, "" + factor);
+    Debug.log(lvl, me + "%s: learned %.3f", context, factor);
+    File file = file();
+    try (OutputStream stream = new FileOutputStream(file)) {
+      learned.store(stream, "SikuliX: factors learned by the multi-scale search (Settings.FindScales)");
+    } catch (Exception e) {
+      Debug.log(lvl, me + "not stored: %s (%s)", file, e.getMessage());
+    }
+  }
+
+  /**
+   * forget all learned factors
+   */
+  public static synchronized void reset() {
+    load().clear();
+    file().delete();
+  }
+
+  private static File file() {
+    return new File(RunTime.get().fSikulixStore, "FindScales.properties");
+  }
+
+  private static Properties load() {
+    if (learned == null) {
+      learned = new Properties();
+      File file = file();
+      if (file.exists()) {
+        try (InputStream stream = new FileInputStream(file)) {
+          learned.load(stream);
+        } catch (Exception e) {
+          Debug.log(lvl, me + "not loaded: %s (%s)", file, e.getMessage());
+        }
+      }
+    }
+    return learned;
+  }
+  //</editor-fold>
+}
@@ -26,6 +26,22 @@ public interface IRobot {
    void releaseModifiers(int modifiers);
    void typeChar(char character, KeyMode mode);
    void typeKey(int key);
+
+   /**
+    * type the characters one after the other (plain characters, no key tokens)
+    *
+    * @param chars the characters
+    * @param delay millisecs between the characters
+    */
+   default void typeChars(String chars, int delay) {
+      for (int i = 0; i < chars.length(); i++) {
+         typeChar(chars.charAt(i), KeyMode.PRESS_RELEASE);
+         if (delay > 0) {
+            delay(delay);
+         }
+      }
+   }
+
    void typeStarts();
    void typeEnds();
    void mouseMove(int x, int y);
@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import com.sun.jna.Pointer;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32C;
+
+/**
+ * INTERNAL: decoded image files kept on disk (Settings.ImageStore)
+ * <br>the pixels of an image file as decoded (e.g. BGR or BGRA with the alpha plane as mask) are stored in a sidecar file
+ * <br>with the next load the sidecar is memory mapped and copied once (native) into the Mat
+ * instead of decoding the image file again
+ * <br>a sidecar is only used, if size and modification time of the image file are the same as stored
+ * and the checksum is correct (header, the first and the last 4 KB of the pixels: a load does not read all pages)
+ * <br>a store folder is kept below Settings.ImageStoreMax: the least recently used sidecars are deleted
+ * (the first load in a process touches the sidecar)
+ * <br>location: Settings.ImageStorePath (null: SikulixStore/ImageStore in the app data folder,
+ * "." : subfolder .sxstore next to the image file)
+ */
+public class ImageStore {
+
+  private static String me = "ImageStore: ";
+  private static int lvl = 3;
+
+  private static final int MAGIC = 0x53584D32; // SXM2
+  private static final int SAMPLE = 4096;
+  private static final int HEADER = 4 + 8 + 8 + 4 + 4 + 4 + 8 + 4;
+  private static final String SUFFIX = ".sxm";
+  private static final String BUNDLE_FOLDER = ".sxstore";
+
+  //<editor-fold desc="01 counters">
+  private static long loads = 0;
+  private static long loadTime = 0;
+  private static long misses = 0;
+  private static long saves = 0;
+
+  /**
+   * @return images loaded from the store (with time used), not found or not valid and stored
+   */
+  public static synchronized String stats() {
+    return String.format("ImageStore: loaded %d (%d msec) missed %d stored %d", loads, loadTime, misses, saves);
+  }
+
+  private static synchronized void count(long load, long time, long miss, long save) {
+    loads += load;
+    loadTime += time;
+    misses += miss;
+    saves += save;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 location">
+  private static File sidecar(File imageFile, boolean isMask) {
+    String name = imageFile.getName() + (isMask ? "-mask" : "") + SUFFIX;
+    String storePath = Settings.ImageStorePath;
+    if (".".equals(storePath)) {
+      return new File(new File(imageFile.getParentFile(), BUNDLE_FOLDER), name);
+    }
+    File store = storePath == null ? new File(RunTime.get().fSikulixStore, "ImageStore") : new File(storePath);
+    // the same file name might be in different folders
+    return new File(store, hash(imageFile.getAbsolutePath()) + "-" + name);
+  }
+
+  private static String hash(String text) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-1").digest(text.getBytes(StandardCharsets.UTF_8));
+      StringBuilder hex = new StringBuilder();
+      for (int n = 0; n < 8; n++) {
+        hex.append(String.format("%02x", digest[n]));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      return Integer.toHexString(text.hashCode());
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="03 load / save">
+
+  /**
+   * @param imageFile the image file
+   * @param isMask    the content is the mask extracted from the image
+   * @return the decoded content as stored or null (no valid sidecar)
+   */
+  public static Mat load(File imageFile, boolean isMask) {
+    long start = new Date().getTime();
+    File sidecar = sidecar(imageFile, isMask);
+    if (!sidecar.exists()) {
+      count(0, 0, 1, 0);
+      return null;
+    }
+    try (RandomAccessFile file = new RandomAccessFile(sidecar, "r");
+         FileChannel channel = file.getChannel()) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.capacity() < HEADER || buffer.getInt() != MAGIC
+          || buffer.getLong() != imageFile.length() || buffer.getLong() != imageFile.lastModified()) {
+        count(0, 0, 1, 0);
+        return null;
+      }
+      int rows = buffer.getInt();
+      int cols = buffer.getInt();
+      int type = buffer.getInt();
+      long length = buffer.getLong();
+      int crc = buffer.getInt();
+      if (length != buffer.remaining() || length > Integer.MAX_VALUE || CvType.depth(type) != CvType.CV_8U) {
+        count(0, 0, 1, 0);
+        return null;
+      }
+      if (checksum(buffer.duplicate(), rows, cols, type) != crc) {
+        Debug.log(lvl, me + "checksum not valid: %s", sidecar);
+        count(0, 0, 1, 0);
+        return null;
+      }
+      Mat content = new Mat(rows, cols, type);
+      if (content.total() * content.elemSize() != length) {
+        content.release();
+        count(0, 0, 1, 0);
+        return null;
+      }
+      // mapped file to the Mat's memory: one copy, no java array
+      new Pointer(content.dataAddr()).getByteBuffer(0, length).put(buffer);
+      if (touched.add(sidecar.getPath())) {
+        sidecar.setLastModified(new Date().getTime());
+      }
+      count(1, new Date().getTime() - start, 0, 0);
+      return content;
+    } catch (Exception e) {
+      Debug.log(lvl, me + "not loaded: %s (%s)", sidecar, e.getMessage());
+      count(0, 0, 1, 0);
+      return null;
+    }
+  }
+
+  /**
+   * store the decoded content of the image file (replaces an existing sidecar)
+   *
+   * @param imageFile the image file
+   * @param isMask    the content is the mask extracted from the image
+   * @param content   as decoded
+   */
+  public static void save(File imageFile, boolean isMask, Mat content) {
+    // 8 bit per channel only (16 bit PNGs are decoded as before)
+    if (content.empty() || !content.isContinuous() || CvType.depth(content.type()) != CvType.CV_8U) {
+      return;
+    }
+    long length = content.total() * content.elemSize();
+    if (length > Integer.MAX_VALUE - HEADER) {
+      return;
+    }
+    File sidecar = sidecar(imageFile, isMask);
+    File temp = null;
+    try {
+      byte[] pixels = new byte[(int) length];
+      content.get(0, 0, pixels);
+      ByteBuffer header = ByteBuffer.allocate(HEADER);
+      header.putInt(MAGIC);
+      header.putLong(imageFile.length());
+      header.putLong(imageFile.lastModified());
+      header.putInt(content.rows());
+      header.putInt(content.cols());
+      header.putInt(content.type());
+      header.putLong(length);
+      header.putInt(checksum(ByteBuffer.wrap(pixels), content.rows(), content.cols(), content.type()));
+      header.flip();
+      sidecar.getParentFile().mkdirs();
+      // written to a temp file first: other processes might read the sidecar meanwhile
+      temp = File.createTempFile(sidecar.getName(), ".tmp", sidecar.getParentFile());
+      try (RandomAccessFile file = new RandomAccessFile(temp, "rw");
+           FileChannel channel = file.getChannel()) {
+        channel.write(header);
+        channel.write(ByteBuffer.wrap(pixels));
+      }
+      try {
+        Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        Files.move(temp.toPath(), sidecar.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      }
+      count(0, 0, 0, 1);
+      Debug.log(lvl + 1, me + "stored: %s", imageFile);
+      prune(sidecar.getParentFile());
+    } catch (Exception e) {
+      Debug.log(lvl, me + "not stored: %s (%s)", sidecar, e.getMessage());
+      if (temp != null) {
+        temp.delete();
+      }
+    }
+  }
+
+  // the sidecars touched in this process (LRU of prune: once per process, not with every load)
+  private static final Set<String> touched = ConcurrentHashMap.newKeySet();
+
+  // CRC32C of the header values and the first and last SAMPLE bytes of the pixels
+  // (a torn write is prevented by the atomic move, the length is checked separately)
+  private static int checksum(ByteBuffer pixels, int rows, int cols, int type) {
+    CRC32C checksum = new CRC32C();
+    ByteBuffer values = ByteBuffer.allocate(12);
+    values.putInt(rows).putInt(cols).putInt(type).flip();
+    checksum.update(values);
+    int length = pixels.remaining();
+    int start = pixels.position();
+    if (length <= 2 * SAMPLE) {
+      checksum.update(pixels);
+    } else {
+      ByteBuffer first = pixels.duplicate();
+      first.limit(start + SAMPLE);
+      checksum.update(first);
+      ByteBuffer last = pixels.duplicate();
+      last.position(start + length - SAMPLE);
+      checksum.update(last);
+    }
+    return (int) checksum.getValue();
+  }
+
+  // delete the least recently used sidecars until the folder fits into Settings.ImageStoreMax
+  private static void prune(File folder) {
+    long maxBytes = Settings.ImageStoreMax * 1024L * 1024L;
+    File[] sidecars = folder.listFiles((dir, name) -> name.endsWith(SUFFIX));
+    if (maxBytes <= 0 || sidecars == null) {
+      return;
+    }
+    long bytes = 0;
+    for (File sidecar : sidecars) {
+      bytes += sidecar.length();
+    }
+    if (bytes <= maxBytes) {
+      return;
+    }
+    Arrays.sort(sidecars, Comparator.comparingLong(File::lastModified));
+    int deleted = 0;
+    for (File sidecar : sidecars) {
+      if (bytes <= maxBytes) {
+        break;
+      }
+      long length = sidecar.length();
+      if (sidecar.delete()) {
+        bytes -= length;
+        deleted++;
+      }
+    }
+    Debug.log(lvl, me + "%s: %d sidecars deleted (Settings.ImageStoreMax %d MB)", folder, deleted, Settings.ImageStoreMax);
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.App;
+import org.sikuli.script.Key;
+
+import java.awt.Toolkit;
+import java.awt.datatransfer.Clipboard;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.datatransfer.Transferable;
+import java.awt.datatransfer.UnsupportedFlavorException;
+import java.awt.event.KeyEvent;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * INTERNAL: the key events of a Region.write text (#X. token grammar)
+ * <br>the text is parsed once into a list of steps and then run with a robot
+ * <br>only texts with key tokens are cached: the key is a hash of the text
+ * and a step holds the position of its character (the text itself is not kept)
+ * <br>normal: as before, each character/key is followed by the type delay (at least 20 msec)
+ * <br>fast (Settings.TypeFast): runs of plain characters are typed as one batch (IRobot.typeChars)
+ * with Settings.TypeFastDelay between the characters or pasted (Settings.TypePaste, local robot only)
+ * <br>when pasted, the clipboard content (text, image, file list) is restored after the text
+ * <br>a type delay token (#wnnn.) switches back to normal for the rest of the text
+ */
+public class KeyPlan {
+
+  private static String me = "KeyPlan: ";
+  private static int lvl = 4;
+
+  private static final int CACHE_MAX = 64;
+
+  private static final Map<String, List<Step>> cache = new LinkedHashMap<String, List<Step>>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, List<Step>> eldest) {
+      return size() > CACHE_MAX;
+    }
+  };
+
+  /**
+   * @param text the write text
+   * @return the plan for this text (the steps are cached if the text has key tokens)
+   */
+  public static KeyPlan get(String text) {
+    if (text.indexOf('#') < 0) {
+      return new KeyPlan(compile(text), text);
+    }
+    String key = hash(text);
+    List<Step> steps;
+    synchronized (cache) {
+      steps = cache.get(key);
+    }
+    if (steps == null) {
+      steps = compile(text);
+      if (hasKeys(steps)) {
+        synchronized (cache) {
+          cache.put(key, steps);
+        }
+      }
+    }
+    return new KeyPlan(steps, text);
+  }
+
+  private static String hash(String text) {
+    try {
+      byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+      return text.length() + ":" + Base64.getEncoder().encodeToString(digest);
+    } catch (NoSuchAlgorithmException e) {
+      // not expected: each JRE has SHA-256
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static boolean hasKeys(List<Step> steps) {
+    for (Step step : steps) {
+      if (!step.isPlain()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  //<editor-fold desc="01 steps">
+  private enum Op {
+    TYPE, REPEAT, DOWN, UP, WAIT, PAUSE
+  }
+
+  private static class Step {
+    final Op op;
+    final int pos;
+    final int key;
+    final int value;
+    final int[] modifiers;
+
+    Step(Op op, int pos, int key, int value, int[] modifiers) {
+      this.op = op;
+      this.pos = pos;
+      this.key = key;
+      this.value = value;
+      this.modifiers = modifiers;
+    }
+
+    // a character to be typed as is
+    boolean isPlain() {
+      return op == Op.TYPE && key < 0 && modifiers.length == 0;
+    }
+  }
+
+  private final List<Step> steps;
+  private final String text;
+
+  private KeyPlan(List<Step> steps, String text) {
+    this.steps = steps;
+    this.text = text;
+  }
+
+  public int size() {
+    return steps.size();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 compile">
+  private static final int[] NO_MODIFIERS = new int[0];
+
+  private static List<Step> compile(String text) {
+    List<Step> steps = new ArrayList<>();
+    char c;
+    String token, tokenSave;
+    String modifier = "";
+    int k;
+    for (int i = 0; i < text.length(); i++) {
+      c = text.charAt(i);
+      token = null;
+      boolean isModifier = false;
+      if (c == '#') {
+        if (text.charAt(i + 1) == '#') {
+          i += 1;
+          continue;
+        }
+        if (text.charAt(i + 2) == '+' || text.charAt(i + 2) == '-') {
+          token = text.substring(i, i + 3);
+          isModifier = true;
+        } else if (-1 < (k = text.indexOf('.', i))) {
+          token = text.substring(i, k + 1);
+          if (token.length() > Key.keyMaxLength || token.substring(1).contains("#")) {
+            token = null;
+          }
+        }
+      }
+      Integer key = -1;
+      if (token != null) {
+        int repeat = 0;
+        if (token.toUpperCase().startsWith("#W")) {
+          if (token.length() > 3) {
+            i += token.length() - 1;
+            int t = 0;
+            try {
+              t = Integer.parseInt(token.substring(2, token.length() - 1));
+            } catch (NumberFormatException ex) {
+            }
+            if ((token.startsWith("#w") && t > 60)) {
+              steps.add(new Step(Op.PAUSE, i, -1, 20 + (t > 1000 ? 1000 : t), NO_MODIFIERS));
+            } else {
+              steps.add(new Step(Op.WAIT, i, -1, (t < 60 ? t * 1000 : t), NO_MODIFIERS));
+            }
+            continue;
+          }
+        }
+        tokenSave = token;
+        token = token.substring(0, 2).toUpperCase() + ".";
+        if (Key.isRepeatable(token)) {
+          try {
+            repeat = Integer.parseInt(tokenSave.substring(2, tokenSave.length() - 1));
+          } catch (NumberFormatException ex) {
+            token = tokenSave;
+          }
+        } else if (tokenSave.length() == 3 && Key.isModifier(tokenSave.toUpperCase())) {
+          i += tokenSave.length() - 1;
+          modifier += tokenSave.substring(1, 2).toUpperCase();
+          continue;
+        } else {
+          token = tokenSave;
+        }
+        if (-1 < (key = Key.toJavaKeyCodeFromText(token))) {
+          if (repeat < 1) {
+            repeat = 1;
+          }
+          i += tokenSave.length() - 1;
+          if (isModifier) {
+            steps.add(new Step(tokenSave.endsWith("+") ? Op.DOWN : Op.UP, i, key, 0, NO_MODIFIERS));
+            continue;
+          }
+          if (repeat > 1) {
+            steps.add(new Step(Op.REPEAT, i, key, repeat, NO_MODIFIERS));
+            continue;
+          }
+        }
+      }
+      int[] modifiers = NO_MODIFIERS;
+      if (!modifier.isEmpty()) {
+        modifiers = new int[modifier.length()];
+        for (int n = 0; n < modifier.length(); n++) {
+          modifiers[n] = Key.toJavaKeyCodeFromText(String.format("#%s.", modifier.substring(n, n + 1)));
+        }
+      }
+      steps.add(new Step(Op.TYPE, i, key, 0, modifiers));
+      modifier = "";
+    }
+    Debug.log(lvl, me + "compiled: %d chars to %d steps", text.length(), steps.size());
+    return steps;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="03 run">
+
+  /**
+   * run the key events
+   *
+   * @param robot the robot
+   * @param pause millisecs after each typed character/key (might be changed by #w tokens)
+   */
+  public void run(IRobot robot, int pause) {
+    boolean fast = Settings.TypeFast;
+    boolean paste = fast && Settings.TypePaste && !robot.isRemote();
+    ClipboardContent saved = null;
+    try {
+      saved = run(robot, pause, fast, paste);
+    } finally {
+      if (saved != null) {
+        // the target reads the clipboard when handling the paste key
+        robot.delay(PASTE_RESTORE_DELAY);
+        saved.restore();
+      }
+    }
+  }
+
+  private ClipboardContent run(IRobot robot, int pause, boolean fast, boolean paste) {
+    ClipboardContent saved = null;
+    for (int n = 0; n < steps.size(); n++) {
+      Step step = steps.get(n);
+      if (fast && step.isPlain()) {
+        int end = n;
+        while (end < steps.size() && steps.get(end).isPlain()) {
+          end++;
+        }
+        StringBuilder chars = new StringBuilder();
+        for (int s = n; s < end; s++) {
+          chars.append(text.charAt(steps.get(s).pos));
+        }
+        if (paste && chars.length() > 1) {
+          Debug.log(lvl, me + "paste: %d chars", chars.length());
+          if (saved == null) {
+            saved = ClipboardContent.save();
+          }
+          App.setClipboard(chars.toString());
+          int mod = Key.getHotkeyModifier();
+          robot.keyDown(mod);
+          robot.keyDown(KeyEvent.VK_V);
+          robot.keyUp(KeyEvent.VK_V);
+          robot.keyUp(mod);
+        } else {
+          Debug.log(lvl, me + "type: %d chars", chars.length());
+          robot.typeChars(chars.toString(), Settings.TypeFastDelay);
+        }
+        robot.delay(Settings.TypeFastDelay);
+        n = end - 1;
+        continue;
+      }
+      switch (step.op) {
+        case PAUSE:
+          // an explicit type delay in the text is kept also in fast mode
+          pause = step.value;
+          fast = false;
+          break;
+        case WAIT:
+          robot.delay(step.value);
+          break;
+        case DOWN:
+          robot.keyDown(step.key);
+          break;
+        case UP:
+          robot.keyUp(step.key);
+          break;
+        case REPEAT:
+          for (int r = 0; r < step.value; r++) {
+            robot.typeKey(step.key);
+          }
+          break;
+        case TYPE:
+          for (int modifier : step.modifiers) {
+            robot.keyDown(modifier);
+          }
+          if (step.key > -1) {
+            robot.typeKey(step.key);
+          } else {
+            robot.typeChar(text.charAt(step.pos), IRobot.KeyMode.PRESS_RELEASE);
+          }
+          for (int modifier : step.modifiers) {
+            robot.keyUp(modifier);
+          }
+          robot.delay(fast ? Settings.TypeFastDelay : pause);
+          break;
+      }
+    }
+    return saved;
+  }
+
+  private static final int PASTE_RESTORE_DELAY = 100;
+
+  // the clipboard content before pasting (copied, the owner might change)
+  private static class ClipboardContent implements Transferable {
+    private static final DataFlavor[] FLAVORS = {DataFlavor.stringFlavor, DataFlavor.imageFlavor, DataFlavor.javaFileListFlavor};
+
+    private final Map<DataFlavor, Object> data = new LinkedHashMap<>();
+
+    static ClipboardContent save() {
+      ClipboardContent content = new ClipboardContent();
+      try {
+        Transferable given = clipboard().getContents(null);
+        for (DataFlavor flavor : FLAVORS) {
+          if (given != null && given.isDataFlavorSupported(flavor)) {
+            content.data.put(flavor, given.getTransferData(flavor));
+          }
+        }
+      } catch (Exception e) {
+        Debug.log(lvl, me + "clipboard not saved: %s", e.getMessage());
+      }
+      return content;
+    }
+
+    void restore() {
+      try {
+        clipboard().setContents(this, null);
+      } catch (Exception e) {
+        Debug.log(lvl, me + "clipboard not restored: %s", e.getMessage());
+      }
+    }
+
+    private static Clipboard clipboard() {
+      return Toolkit.getDefaultToolkit().getSystemClipboard();
+    }
+
+    @Override
+    public DataFlavor[] getTransferDataFlavors() {
+      return data.keySet().toArray(new DataFlavor[0]);
+    }
+
+    @Override
+    public boolean isDataFlavorSupported(DataFlavor flavor) {
+      return data.containsKey(flavor);
+    }
+
+    @Override
+    public Object getTransferData(DataFlavor flavor) throws UnsupportedFlavorException {
+      if (!data.containsKey(flavor)) {
+        throw new UnsupportedFlavorException(flavor);
+      }
+      return data.get(flavor);
+    }
+  }
+  //</editor-fold>
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.sikuli.basics.Debug;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * INTERNAL: extracts the matches of a find/findAll from a matchTemplate result
+ * <br>the first (best) match is taken with Core.minMaxLoc (a single find needs nothing else)
+ * <br>only if more matches are wanted (findAll), one scan of the result (in chunks of rows)
+ * collects all candidates above the wanted score into a primitive max-heap,
+ * <br>the matches are then taken from the heap best first,
+ * skipping candidates in the neighbourhood of already accepted matches (non-maximum suppression, grid of accepted)
+ * <br>so after the scan, the cost depends on the number of matches and not on the size of the result
+ */
+public class MatchPeaks {
+
+  private static final int CHUNK = 64 * 1024;
+
+  private Mat result;
+  private double targetScore;
+  private int marginX;
+  private int marginY;
+  private boolean stopOnScoreDrop;
+
+  private int cols = 0;
+  private int[] heapIndex = null;
+  private float[] heapScore = null;
+  private int heapSize = 0;
+
+  // accepted matches per grid cell (cell size: margins)
+  private final Map<Long, int[]> accepted = new HashMap<>();
+  private int matchCount = 0;
+
+  private boolean hasCurrent = false;
+  private int currentX = -1;
+  private int currentY = -1;
+  private double currentScore = -1;
+  private double lastScore = -1;
+  private double scoreMeanDiff = -1;
+  private boolean stopped = false;
+
+  /**
+   * @param result          matchTemplate result (CV_32F)
+   * @param targetScore     only scores above are matches
+   * @param marginX         horizontal distance, that a next match must have from an accepted one
+   * @param marginY         vertical distance, that a next match must have from an accepted one
+   * @param stopOnScoreDrop stop, if the score of the next match drops more than the mean drop so far (+0.01)
+   */
+  public MatchPeaks(Mat result, double targetScore, int marginX, int marginY, boolean stopOnScoreDrop) {
+    this.result = result;
+    this.targetScore = targetScore;
+    this.marginX = Math.max(1, marginX);
+    this.marginY = Math.max(1, marginY);
+    this.stopOnScoreDrop = stopOnScoreDrop;
+  }
+
+  /**
+   * evaluates the next match (does not advance)
+   *
+   * @return true if there is a next match (getX, getY, getScore)
+   */
+  public boolean hasNext() {
+    if (stopped) {
+      return false;
+    }
+    if (matchCount == 0 && !hasCurrent) {
+      best();
+    } else if (heapIndex == null && !hasCurrent) {
+      scan();
+    }
+    if (!hasCurrent) {
+      while (heapSize > 0) {
+        int index = heapIndex[0];
+        float score = heapScore[0];
+        pop();
+        int x = index % cols;
+        int y = index / cols;
+        if (!isSuppressed(x, y)) {
+          currentX = x;
+          currentY = y;
+          currentScore = score;
+          hasCurrent = true;
+          break;
+        }
+      }
+      if (!hasCurrent) {
+        stopped = true;
+        return false;
+      }
+    }
+    if (stopOnScoreDrop && matchCount > 1) {
+      double scoreDiff = lastScore - currentScore;
+      if (scoreDiff > (scoreMeanDiff + 0.01)) { // 0.005
+        Debug.log(3, "findAll: (%d) stop: %.4f (%.4f)", matchCount, currentScore, scoreMeanDiff);
+        stopped = true;
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * accept the current match and advance
+   *
+   * @return false if there is no current match
+   */
+  public boolean next() {
+    if (!hasNext()) {
+      return false;
+    }
+    if (matchCount == 1) {
+      scoreMeanDiff = lastScore - currentScore;
+    } else if (matchCount > 1) {
+      scoreMeanDiff = ((scoreMeanDiff * matchCount) + (lastScore - currentScore)) / (matchCount + 1);
+    }
+    long cell = cell(currentX / marginX, currentY / marginY);
+    int[] inCell = accepted.get(cell);
+    int[] added = inCell == null ? new int[2] : java.util.Arrays.copyOf(inCell, inCell.length + 2);
+    added[added.length - 2] = currentX;
+    added[added.length - 1] = currentY;
+    accepted.put(cell, added);
+    matchCount++;
+    lastScore = currentScore;
+    hasCurrent = false;
+    return true;
+  }
+
+  public int getX() {
+    return currentX;
+  }
+
+  public int getY() {
+    return currentY;
+  }
+
+  public double getScore() {
+    return currentScore;
+  }
+
+  public int getMatchCount() {
+    return matchCount;
+  }
+
+  private static long cell(int cellX, int cellY) {
+    return ((long) cellX << 32) | (cellY & 0xffffffffL);
+  }
+
+  // an accepted match within the margins: only the neighbour cells can have one
+  private boolean isSuppressed(int x, int y) {
+    int cellX = x / marginX;
+    int cellY = y / marginY;
+    for (int cx = cellX - 1; cx <= cellX + 1; cx++) {
+      for (int cy = cellY - 1; cy <= cellY + 1; cy++) {
+        int[] inCell = accepted.get(cell(cx, cy));
+        if (inCell == null) {
+          continue;
+        }
+        for (int n = 0; n < inCell.length; n += 2) {
+          if (x >= inCell[n] - marginX && x < inCell[n] + marginX
+              && y >= inCell[n + 1] - marginY && y < inCell[n + 1] + marginY) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  // the first match: native, no copy of the result
+  private void best() {
+    Core.MinMaxLocResult minMax = Core.minMaxLoc(result);
+    if (minMax.maxVal > targetScore) {
+      currentX = (int) minMax.maxLoc.x;
+      currentY = (int) minMax.maxLoc.y;
+      currentScore = minMax.maxVal;
+      hasCurrent = true;
+    }
+  }
+
+  private void scan() {
+    heapIndex = new int[0];
+    heapScore = new float[0];
+    heapSize = 0;
+    if (result == null) {
+      return;
+    }
+    Mat scores = result;
+    if (scores.type() != CvType.CV_32F) {
+      scores = new Mat();
+      result.convertTo(scores, CvType.CV_32F);
+    }
+    cols = scores.cols();
+    int rows = scores.rows();
+    int chunkRows = Math.max(1, CHUNK / Math.max(1, cols));
+    float[] data = new float[Math.min(rows, chunkRows) * cols];
+    heapIndex = new int[64];
+    heapScore = new float[64];
+    for (int row = 0; row < rows; row += chunkRows) {
+      int count = Math.min(chunkRows, rows - row);
+      if (count * cols != data.length) {
+        data = new float[count * cols];
+      }
+      scores.submat(row, row + count, 0, cols).get(0, 0, data);
+      int base = row * cols;
+      for (int n = 0; n < data.length; n++) {
+        if (data[n] > targetScore) {
+          if (heapSize == heapIndex.length) {
+            heapIndex = java.util.Arrays.copyOf(heapIndex, heapSize * 2);
+            heapScore = java.util.Arrays.copyOf(heapScore, heapSize * 2);
+          }
+          heapIndex[heapSize] = base + n;
+          heapScore[heapSize++] = data[n];
+        }
+      }
+    }
+    for (int n = heapSize / 2 - 1; n >= 0; n--) {
+      siftDown(n);
+    }
+    result = null;
+  }
+
+  private void pop() {
+    heapSize--;
+    if (heapSize > 0) {
+      heapIndex[0] = heapIndex[heapSize];
+      heapScore[0] = heapScore[heapSize];
+      siftDown(0);
+    }
+  }
+
+  private void siftDown(int n) {
+    int index = heapIndex[n];
+    float score = heapScore[n];
+    while (true) {
+      int child = 2 * n + 1;
+      if (child >= heapSize) {
+        break;
+      }
+      if (child + 1 < heapSize && heapScore[child + 1] > heapScore[child]) {
+        child++;
+      }
+      if (heapScore[child] <= score) {
+        break;
+      }
+      heapIndex[n] = heapIndex[child];
+      heapScore[n] = heapScore[child];
+      n = child;
+    }
+    heapIndex[n] = index;
+    heapScore[n] = score;
+  }
+}
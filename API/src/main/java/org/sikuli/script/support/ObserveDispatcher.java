@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.util.ArrayDeque;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL: runs the ObserverCallBacks of one Observer outside the observing thread
+ * <br>the calls are queued and run one after the other in the order of the events
+ * (a shared daemon thread pool is used), so a slow handler does not delay the scanning
+ * <br>queue size: Settings.ObserveCallbackQueue (default 0 = call in the observing thread as before, opt-in)
+ * <br>queue full (Settings.ObserveCallbackBackpressure):
+ * block - the observer waits, drop - the oldest pending call is dropped,
+ * coalesce - a pending call for the same event name is replaced by the new one (else drop)
+ */
+public class ObserveDispatcher {
+
+  private static String me = "ObserveDispatcher: ";
+  private static int lvl = 3;
+
+  public enum Backpressure {
+    BLOCK, DROP, COALESCE
+  }
+
+  private static ExecutorService executor = null;
+  private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ObserveCallback-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  private static Backpressure getBackpressure() {
+    try {
+      return Backpressure.valueOf(Settings.ObserveCallbackBackpressure.toUpperCase());
+    } catch (Exception e) {
+      return Backpressure.BLOCK;
+    }
+  }
+
+  private static class Item {
+    final String name;
+    Runnable call;
+    long queued;
+
+    Item(String name, Runnable call) {
+      this.name = name;
+      this.call = call;
+      queued = new Date().getTime();
+    }
+  }
+
+  private final String owner;
+  private final Deque<Item> queue = new ArrayDeque<>();
+  private final Map<String, Integer> pending = new HashMap<>();
+  private boolean running = false;
+
+  private long dispatched = 0;
+  private long handled = 0;
+  private long dropped = 0;
+  private long coalesced = 0;
+  private long maxDepth = 0;
+  private long waitTimeMax = 0;
+  private long handlerTime = 0;
+  private long handlerTimeMax = 0;
+
+  public ObserveDispatcher(String owner) {
+    this.owner = owner;
+  }
+
+  /**
+   * queue the call of an event handler (or run it, if queueing is switched off)
+   *
+   * @param name the event name (used to coalesce)
+   * @param call the handler call
+   */
+  public void dispatch(String name, Runnable call) {
+    int capacity = Settings.ObserveCallbackQueue;
+    if (capacity < 1) {
+      synchronized (this) {
+        dispatched++;
+      }
+      handle(new Item(name, call));
+      return;
+    }
+    Backpressure backpressure = getBackpressure();
+    synchronized (this) {
+      dispatched++;
+      if (backpressure == Backpressure.COALESCE) {
+        for (Item item : queue) {
+          if (item.name.equals(name)) {
+            item.call = call;
+            coalesced++;
+            return;
+          }
+        }
+      }
+      while (queue.size() >= capacity) {
+        if (backpressure == Backpressure.BLOCK) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        } else {
+          Item item = queue.pollFirst();
+          done(item.name);
+          dropped++;
+          Debug.log(lvl, me + "%s: queue full - dropped: %s", owner, item.name);
+        }
+      }
+      queue.addLast(new Item(name, call));
+      pending.merge(name, 1, Integer::sum);
+      maxDepth = Math.max(maxDepth, queue.size());
+      if (!running) {
+        running = true;
+        getExecutor().execute(this::run);
+      }
+    }
+  }
+
+  private void run() {
+    while (true) {
+      Item item;
+      synchronized (this) {
+        item = queue.pollFirst();
+        notifyAll();
+        if (item == null) {
+          running = false;
+          return;
+        }
+        waitTimeMax = Math.max(waitTimeMax, new Date().getTime() - item.queued);
+      }
+      handle(item);
+    }
+  }
+
+  private void handle(Item item) {
+    long start = new Date().getTime();
+    try {
+      item.call.run();
+    } catch (Exception e) {
+      Debug.error(me + "%s: handler for %s: %s", owner, item.name, e.getMessage());
+    }
+    long elapsed = new Date().getTime() - start;
+    synchronized (this) {
+      done(item.name);
+      handled++;
+      handlerTime += elapsed;
+      handlerTimeMax = Math.max(handlerTimeMax, elapsed);
+    }
+  }
+
+  private void done(String name) {
+    pending.computeIfPresent(name, (key, count) -> count > 1 ? count - 1 : null);
+  }
+
+  /**
+   * @param name the event name
+   * @return true if a call for this event is queued or running
+   * (the handler might still ask to repeat the event)
+   */
+  public synchronized boolean isPending(String name) {
+    return pending.containsKey(name);
+  }
+
+  /**
+   * wait until all pending calls are done
+   *
+   * @param timeout max millisecs to wait (0 = no limit)
+   * @return true if nothing is pending anymore
+   */
+  public synchronized boolean drain(long timeout) {
+    long end = timeout > 0 ? new Date().getTime() + timeout : Long.MAX_VALUE;
+    while (running || !queue.isEmpty()) {
+      long left = end - new Date().getTime();
+      if (left <= 0) {
+        return false;
+      }
+      try {
+        wait(Math.min(left, 1000));
+      } catch (InterruptedException e) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return queue depth (actual and max), calls dispatched, handled, dropped, coalesced,
+   * max time a call waited in the queue and handler time (sum, max) in millisecs
+   */
+  public synchronized Map<String, Long> counters() {
+    Map<String, Long> counters = new LinkedHashMap<>();
+    counters.put("depth", (long) queue.size());
+    counters.put("maxDepth", maxDepth);
+    counters.put("dispatched", dispatched);
+    counters.put("handled", handled);
+    counters.put("dropped", dropped);
+    counters.put("coalesced", coalesced);
+    counters.put("waitTimeMax", waitTimeMax);
+    counters.put("handlerTime", handlerTime);
+    counters.put("handlerTimeMax", handlerTimeMax);
+    return counters;
+  }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.sikuli.basics.Debug;
+import org.sikuli.script.Region;
+import org.sikuli.script.ScreenImage;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * INTERNAL: runs the background observers of one screen (Region.observeInBackground)
+ * <br>one thread per screen: per scan the union of the due regions is captured once,
+ * each observer gets its part (a submat view, not a copy) and the observers are checked in parallel on an own thread pool
+ * (not the FindPool: the patterns of an observer are searched in parallel on the FindPool)
+ * <br>each observer is paced by its own ScanPacer (the scan time is the time of the shared scan)
+ * <br>the thread ends, when no observer is left
+ */
+public class ObserveScheduler {
+
+  private static String me = "ObserveScheduler: ";
+  private static int lvl = 3;
+
+  private static final Map<String, ObserveScheduler> schedulers = new HashMap<>();
+
+  private static ExecutorService executor = null;
+  private static final AtomicInteger threadCount = new AtomicInteger(0);
+
+  private static synchronized ExecutorService getExecutor() {
+    if (executor == null) {
+      executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ObserveUpdate-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+    return executor;
+  }
+
+  /**
+   * @param screen the screen
+   * @return the scheduler for the screen (created if needed)
+   */
+  public static synchronized ObserveScheduler get(IScreen screen) {
+    String key = screen.getClass().getName() + ":" + screen.getIDString();
+    ObserveScheduler scheduler = schedulers.get(key);
+    if (scheduler == null) {
+      scheduler = new ObserveScheduler(screen);
+      schedulers.put(key, scheduler);
+    }
+    return scheduler;
+  }
+
+  private static class Task {
+    final Region region;
+    final double secs;
+    final long stopTime;
+    final ScanPacer pacer;
+    long nextTime = 0;
+
+    Task(Region region, double secs, long stopTime) {
+      this.region = region;
+      this.secs = secs;
+      this.stopTime = stopTime;
+      pacer = new ScanPacer(region.getObserveScanRate());
+    }
+  }
+
+  private final IScreen screen;
+  private final List<Task> tasks = new ArrayList<>();
+  private Thread thread = null;
+
+  private ObserveScheduler(IScreen screen) {
+    this.screen = screen;
+  }
+
+  /**
+   * add an observed region (already started - see Region.observeStart)
+   *
+   * @param region   the region
+   * @param secs     observe time in seconds
+   * @param stopTime when to stop (millisecs)
+   */
+  public synchronized void add(Region region, double secs, long stopTime) {
+    tasks.add(new Task(region, secs, stopTime));
+    Debug.log(lvl, me + "screen %s: added %s (%d observers)", screen.getIDString(), region.toStringShort(), tasks.size());
+    if (thread == null) {
+      thread = new Thread(this::run, "ObserveScheduler-" + screen.getIDString());
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  /**
+   * @return number of observed regions
+   */
+  public synchronized int size() {
+    return tasks.size();
+  }
+
+  private void run() {
+    while (true) {
+      List<Task> due = new ArrayList<>();
+      List<Task> ended = new ArrayList<>();
+      long now = new Date().getTime();
+      long wait = Long.MAX_VALUE;
+      synchronized (this) {
+        for (Task task : new ArrayList<>(tasks)) {
+          if (!task.region.isObserving() || task.stopTime <= now) {
+            tasks.remove(task);
+            ended.add(task);
+          } else if (task.nextTime <= now) {
+            due.add(task);
+          } else {
+            wait = Math.min(wait, task.nextTime - now);
+          }
+        }
+      }
+      for (Task task : ended) {
+        task.region.observeEnd(task.secs);
+      }
+      synchronized (this) {
+        if (tasks.isEmpty()) {
+          thread = null;
+          Debug.log(lvl, me + "screen %s: no more observers", screen.getIDString());
+          return;
+        }
+      }
+      if (due.isEmpty()) {
+        try {
+          Thread.sleep(Math.max(1, Math.min(wait, 1000)));
+        } catch (InterruptedException e) {
+        }
+        continue;
+      }
+      try {
+        scan(due, now);
+      } catch (Exception e) {
+        Debug.error(me + "scan: %s", e.getMessage());
+      }
+    }
+  }
+
+  private void scan(List<Task> due, long now) {
+    Rectangle union = null;
+    for (Task task : due) {
+      Rectangle rect = task.region.getRect();
+      union = union == null ? new Rectangle(rect) : union.union(rect);
+    }
+    ScreenImage shot = screen.capture(union);
+    Mat content = shot.getContent();
+    Rectangle captured = new Rectangle(shot.x, shot.y, content.cols(), content.rows());
+    List<Callable<Boolean>> updates = new ArrayList<>();
+    for (Task task : due) {
+      // a region partly off screen: only the captured part
+      Rectangle rect = task.region.getRect().intersection(captured);
+      if (rect.isEmpty()) {
+        continue;
+      }
+      Rect part = new Rect(rect.x - captured.x, rect.y - captured.y, rect.width, rect.height);
+      // a view into the shared capture (no copy): the observers only read it
+      ScreenImage simg = new ScreenImage(rect, content.submat(part));
+      if (task.pacer.isAdaptive()) {
+        task.pacer.changed(simg.getContent());
+      }
+      updates.add(() -> task.region.observeStep(simg));
+    }
+    try {
+      for (Future<Boolean> update : getExecutor().invokeAll(updates)) {
+        try {
+          update.get();
+        } catch (ExecutionException e) {
+          Debug.error(me + "update: %s", e.getCause().getMessage());
+        }
+      }
+    } catch (InterruptedException e) {
+      Debug.log(lvl, me + "scan: interrupted");
+    }
+    long elapsed = new Date().getTime() - now;
+    for (Task task : due) {
+      task.nextTime = now + task.pacer.period(elapsed / due.size());
+    }
+    Debug.log(lvl + 1, me + "scan: %d observers in %s (%d msec)", due.size(), union, elapsed);
+  }
+}
@@ -3,10 +3,13 @@
  */
 package org.sikuli.script.support;
 
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
 import org.sikuli.script.*;
 
+import java.awt.Rectangle;
 import java.util.*;
 
 /**
@@ -44,8 +47,11 @@ public class Observer {
 
   public Observer(Region region) {
     observedRegion = region;
+    dispatcher = new ObserveDispatcher(region.toStringShort());
   }
 
+  private ObserveDispatcher dispatcher = null;
+
   public void initialize() {
     log(3, "resetting observe states for " + observedRegion.toStringShort());
     synchronized (eventNames) {
@@ -141,29 +147,50 @@ public class Observer {
     Object callBack = eventCallBacks.get(name);
     Observing.addEvent(observeEvent);
     if (callBack != null && callBack instanceof ObserverCallBack) {
-      log(lvl, "running call back: %s", obsType);
-      if (obsType == ObserveEvent.Type.APPEAR) {
-        ((ObserverCallBack) callBack).appeared(observeEvent);
-      } else if (obsType == ObserveEvent.Type.VANISH) {
-        ((ObserverCallBack) callBack).vanished(observeEvent);
-      } else if (obsType == ObserveEvent.Type.CHANGE) {
-        ((ObserverCallBack) callBack).changed(observeEvent);
-      } else if (obsType == ObserveEvent.Type.GENERIC) {
-        ((ObserverCallBack) callBack).happened(observeEvent);
-      }
+      ObserverCallBack observerCallBack = (ObserverCallBack) callBack;
+      dispatcher.dispatch(name, () -> {
+        log(lvl, "running call back: %s", obsType);
+        if (obsType == ObserveEvent.Type.APPEAR) {
+          observerCallBack.appeared(observeEvent);
+        } else if (obsType == ObserveEvent.Type.VANISH) {
+          observerCallBack.vanished(observeEvent);
+        } else if (obsType == ObserveEvent.Type.CHANGE) {
+          observerCallBack.changed(observeEvent);
+        } else if (obsType == ObserveEvent.Type.GENERIC) {
+          observerCallBack.happened(observeEvent);
+        }
+      });
     }
   }
 
+  /**
+   * wait until the queued call backs are done
+   *
+   * @param timeout max millisecs to wait (0 = no limit)
+   * @return true if nothing is pending anymore
+   */
+  public boolean drainCallBacks(long timeout) {
+    return dispatcher.drain(timeout);
+  }
+
+  /**
+   * @return the call back queue metrics (see ObserveDispatcher.counters())
+   */
+  public Map<String, Long> callBackCounters() {
+    return dispatcher.counters();
+  }
+
   private boolean checkPatterns(ScreenImage simg) {
     log(lvl + 1, "update: checking patterns");
     if (!observedRegion.isObserving()) {
       return false;
     }
-    Finder finder = null;
+    if (!patternsToCheck()) {
+      return false;
+    }
+    List<String> names = new ArrayList<>();
+    List<Image> images = new ArrayList<>();
     for (String name : eventStates.keySet()) {
-      if (!patternsToCheck()) {
-        continue;
-      }
       if (eventStates.get(name) == State.REPEAT) {
         if ((new Date()).getTime() < eventRepeatWaitTimes.get(name)) {
           continue;
@@ -174,6 +201,12 @@ public class Observer {
       if (eventStates.get(name) == State.INACTIVE || eventStates.get(name) == State.MISSING) {
         continue;
       }
+      if (eventStates.get(name) == State.HAPPENED && dispatcher.isPending(name)) {
+        continue;
+      }
+      if (eventTypes.get(name) == ObserveEvent.Type.CHANGE) {
+        continue;
+      }
       Object ptn = eventNames.get(name);
       Image img = Element.getImage(ptn);
       if (img == null || !img.isValid()) {
@@ -181,47 +214,27 @@ public class Observer {
         eventStates.put(name, State.MISSING);
         continue;
       }
-      Match match = null;
-      boolean hasMatch = false;
-      long lastSearchTime;
-      long now = 0;
-//      if (!Settings.UseImageFinder && Settings.CheckLastSeen && null != img.getLastSeen()) {
-      if (Settings.CheckLastSeen && null != img.getLastSeen()) {
-        Region r = Region.create(img.getLastSeen());
-        if (observedRegion.contains(r)) {
-          lastSearchTime = (new Date()).getTime();
-          Finder f = new Finder(new Screen().capture(r), r);
-          f.find(new Pattern(img).similar(Settings.CheckLastSeenSimilar));
-          if (f.hasNext()) {
-            log(lvl + 1, "checkLastSeen: still there");
-            match = new Match(new Region(img.getLastSeen()), img.getLastSeenScore());
-            match.setTimes(0, (new Date()).getTime() - lastSearchTime);
-            hasMatch = true;
-          } else {
-            log(lvl + 1, "checkLastSeen: not there");
-          }
-        }
+      names.add(name);
+      images.add(img);
+    }
+    boolean[] stillThere = new boolean[images.size()];
+    List<Match> matches = findPatterns(simg, images, stillThere);
+    long now = (new Date()).getTime();
+    for (int n = 0; n < names.size(); n++) {
+      if (!patternsToCheck()) {
+        break;
       }
-      if (match == null) {
-        if (finder == null) {
-//          if (Settings.UseImageFinder) {
-//            finder = new ImageFinder(observedRegion);
-//            ((ImageFinder) finder).setIsMultiFinder();
-//          } else {
-//            finder = new Finder(simg, observedRegion);
-//          }
-          finder = new Finder(simg, observedRegion);
-        }
-        lastSearchTime = (new Date()).getTime();
-        now = (new Date()).getTime();
-        finder.find(img);
-        if (finder.hasNext()) {
-          match = finder.next();
-          match.setTimes(0, now - lastSearchTime);
-          if (match.score() >= getSimiliarity(ptn)) {
-            hasMatch = true;
-            img.setLastSeen(match.getRect(), match.score());
-          }
+      String name = names.get(n);
+      Object ptn = eventNames.get(name);
+      Image img = images.get(n);
+      Match match = matches.get(n);
+      boolean hasMatch = false;
+      if (match != null) {
+        if (stillThere[n]) {
+          hasMatch = true;
+        } else if (match.score() >= getSimiliarity(ptn)) {
+          hasMatch = true;
+          img.setLastSeen(match.getRect(), match.score());
         }
       }
       if (hasMatch) {
@@ -254,6 +267,63 @@ public class Observer {
     return patternsToCheck();
   }
 
+  /**
+   * the images are searched in parallel in the given capture (last seen checks first)
+   * <br>stillThere[n] is set, if image n was found at its last seen position
+   */
+  private List<Match> findPatterns(ScreenImage simg, List<Image> images, boolean[] stillThere) {
+    List<Match> matches = new ArrayList<>();
+    if (images.isEmpty()) {
+      return matches;
+    }
+    Finder finder = new Finder(simg, observedRegion);
+    List<Image> toFind = new ArrayList<>();
+    for (int n = 0; n < images.size(); n++) {
+      Image img = images.get(n);
+      Match match = null;
+      if (Settings.CheckLastSeen && null != img.getLastSeen()) {
+        match = checkLastSeen(simg, img);
+        stillThere[n] = match != null;
+      }
+      matches.add(match);
+      toFind.add(match == null ? img : null);
+    }
+    long lastSearchTime = (new Date()).getTime();
+    List<Match> found = finder.findEach(toFind);
+    for (int n = 0; n < matches.size(); n++) {
+      if (matches.get(n) == null && found.get(n) != null) {
+        Match match = found.get(n);
+        match.setTimes(0, match.getTime() > 0 ? match.getTime() : (new Date()).getTime() - lastSearchTime);
+        matches.set(n, match);
+      }
+    }
+    return matches;
+  }
+
+  private Match checkLastSeen(ScreenImage simg, Image img) {
+    Region r = Region.create(img.getLastSeen());
+    if (!observedRegion.contains(r)) {
+      return null;
+    }
+    long lastSearchTime = (new Date()).getTime();
+    Rectangle rect = r.getRect();
+    if (!new Rectangle(simg.x, simg.y, simg.w, simg.h).contains(rect)) {
+      // the capture might be clipped (region partly off screen)
+      return null;
+    }
+    Mat part = simg.getContent().submat(new Rect(rect.x - simg.x, rect.y - simg.y, rect.width, rect.height));
+    Finder f = new Finder(new ScreenImage(rect, part), r);
+    f.find(new Pattern(img).similar(Settings.CheckLastSeenSimilar));
+    if (f.hasNext()) {
+      log(lvl + 1, "checkLastSeen: still there");
+      Match match = new Match(new Region(img.getLastSeen()), img.getLastSeenScore());
+      match.setTimes(0, (new Date()).getTime() - lastSearchTime);
+      return match;
+    }
+    log(lvl + 1, "checkLastSeen: not there");
+    return null;
+  }
+
   private boolean patternsToCheck() {
     for (String name : eventNames.keySet()) {
       if (eventTypes.get(name) == ObserveEvent.Type.CHANGE) {
@@ -263,6 +333,10 @@ public class Observer {
       if (s == State.FIRST || s == State.UNKNOWN || s == State.REPEAT) {
         return true;
       }
+      if (s == State.HAPPENED && dispatcher.isPending(name)) {
+        // the queued handler might still call event.repeat()
+        return true;
+      }
     }
     return false;
   }
@@ -355,8 +429,10 @@ public class Observer {
         Observing.addEvent(observeEvent);
         Object callBack = eventCallBacks.get(name);
         if (callBack != null) {
-          log(lvl, "running call back");
-          ((ObserverCallBack) callBack).changed(observeEvent);
+          dispatcher.dispatch(name, () -> {
+            log(lvl, "running call back");
+            ((ObserverCallBack) callBack).changed(observeEvent);
+          });
         }
       }
     }
@@ -0,0 +1,339 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.FileManager;
+import org.sikuli.script.Element;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.file.*;
+import java.util.Date;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * INTERNAL: the file names of an image path entry (ImagePath.find, Settings.ImagePathIndex)
+ * <br>folder: listed once (file names up to MAX_DEPTH folder levels, max MAX_FILES files)
+ * and kept fresh with a WatchService
+ * <br>jar: listed once
+ * <br>http: only the names found so far (cannot be listed)
+ * <br>a name not covered by the index has to be checked in the path entry as before,
+ * a name covered is not (a folder index checks a name not yet seen by the watcher itself)
+ */
+public class PathIndex {
+
+  private static String me = "PathIndex: ";
+  private static int lvl = 3;
+
+  private static final int MAX_DEPTH = 3;
+  private static final int MAX_FILES = 20000;
+
+  //<editor-fold desc="01 counters">
+  private static final AtomicLong hits = new AtomicLong(0);
+  private static final AtomicLong misses = new AtomicLong(0);
+  private static final AtomicLong unknown = new AtomicLong(0);
+  private static final AtomicLong builds = new AtomicLong(0);
+  private static final AtomicLong buildTime = new AtomicLong(0);
+
+  /**
+   * @return lookups found / not found / not covered by an index and the index builds with the time used
+   */
+  public static String stats() {
+    long all = hits.get() + misses.get() + unknown.get();
+    return String.format("lookups %d (hits %d misses %d not indexed %d - hit rate %.0f%%) builds %d (%d msec)",
+        all, hits.get(), misses.get(), unknown.get(), all == 0 ? 0 : 100.0 * hits.get() / all,
+        builds.get(), buildTime.get());
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 instance">
+  private enum Kind {
+    FILE, JAR, OTHER
+  }
+
+  private final URL pathURL;
+  private final Kind kind;
+  private final boolean ignoreCase;
+  private File root = null;
+  private final Set<String> names = ConcurrentHashMap.newKeySet();
+  private final Map<String, URL> found = new ConcurrentHashMap<>();
+  private volatile boolean complete = false;
+  private volatile boolean stale = true;
+  private volatile boolean closed = false;
+
+  /**
+   * @param pathURL the URL of the image path entry
+   */
+  public PathIndex(URL pathURL) {
+    this.pathURL = pathURL;
+    String proto = pathURL == null ? "" : pathURL.getProtocol();
+    kind = "file".equals(proto) ? Kind.FILE : ("jar".equals(proto) ? Kind.JAR : Kind.OTHER);
+    ignoreCase = kind == Kind.FILE && !RunTime.get().runningLinux;
+  }
+
+  private String key(String name) {
+    String key = name.replace("\\", "/");
+    while (key.startsWith("./")) {
+      key = key.substring(2);
+    }
+    return ignoreCase ? key.toLowerCase() : key;
+  }
+
+  private static int depth(String key) {
+    int depth = 0;
+    for (int n = 0; n < key.length(); n++) {
+      if (key.charAt(n) == '/') {
+        depth++;
+      }
+    }
+    return depth;
+  }
+
+  /**
+   * @param name image file name relative to the path entry
+   * @return true if a null from find() means: not in this path entry
+   */
+  public boolean covers(String name) {
+    return complete && !stale && !closed && depth(key(name)) < MAX_DEPTH && !name.contains("..");
+  }
+
+  /**
+   * @param name image file name relative to the path entry
+   * @return the URL of the image file if in the index (folder: or existing), else null (see covers())
+   */
+  public URL find(String name) {
+    if (stale && !closed) {
+      build();
+    }
+    String key = key(name);
+    URL url = found.get(key);
+    if (url == null && names.contains(key)) {
+      url = makeURL(name);
+      if (url != null && kind == Kind.FILE && !new File(url.getPath()).exists()) {
+        // deleted, but not yet seen by the watcher (might take seconds, e.g. polling on macOS)
+        names.remove(key);
+        url = null;
+      }
+    } else if (url == null && kind == Kind.FILE && covers(name)) {
+      // created, but not yet seen by the watcher: checked here (ImagePath does not search a covered entry)
+      File file = new File(root, name);
+      if (file.isFile()) {
+        names.add(key);
+        url = Element.createURL(file);
+      }
+    }
+    if (url != null) {
+      hits.incrementAndGet();
+    } else if (covers(name)) {
+      misses.incrementAndGet();
+    } else {
+      unknown.incrementAndGet();
+    }
+    return url;
+  }
+
+  /**
+   * remember an image file found in the path entry (not covered by the index)
+   *
+   * @param name image file name relative to the path entry
+   * @param url  as found
+   */
+  public void found(String name, URL url) {
+    if (kind == Kind.OTHER && url != null) {
+      found.put(key(name), url);
+    }
+  }
+
+  private URL makeURL(String name) {
+    if (kind == Kind.FILE) {
+      // as for any other image file: the same URL (image cache key) for the same file
+      return Element.createURL(new File(root, name));
+    }
+    return FileManager.makeURL(pathURL, name);
+  }
+
+  /**
+   * stop watching (the path entry is no longer on the image path)
+   */
+  public void close() {
+    closed = true;
+    unwatch(this);
+    names.clear();
+    found.clear();
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="03 build">
+  private synchronized void build() {
+    if (!stale || closed) {
+      return;
+    }
+    long start = new Date().getTime();
+    unwatch(this);
+    names.clear();
+    complete = false;
+    if (kind == Kind.FILE) {
+      try {
+        root = new File(pathURL.getPath()).getCanonicalFile();
+        complete = listFolder(root, "", 0);
+      } catch (IOException e) {
+        Debug.log(lvl, me + "not indexed: %s (%s)", pathURL, e.getMessage());
+      }
+    } else if (kind == Kind.JAR) {
+      complete = listJar();
+    }
+    if (!complete) {
+      unwatch(this);
+      names.clear();
+    }
+    stale = false;
+    long time = new Date().getTime() - start;
+    if (kind != Kind.OTHER) {
+      builds.incrementAndGet();
+      buildTime.addAndGet(time);
+      Debug.log(lvl, me + "%s: %d files in %d msec%s", pathURL, names.size(), time, complete ? "" : " (not complete)");
+    }
+  }
+
+  private boolean listFolder(File folder, String prefix, int depth) {
+    File[] files = folder.listFiles();
+    if (files == null) {
+      return false;
+    }
+    watch(this, folder.toPath(), prefix, depth);
+    for (File file : files) {
+      if (file.isDirectory()) {
+        if (depth + 1 < MAX_DEPTH && !listFolder(file, prefix + file.getName() + "/", depth + 1)) {
+          return false;
+        }
+      } else {
+        names.add(key(prefix + file.getName()));
+      }
+      if (names.size() > MAX_FILES) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean listJar() {
+    try {
+      JarURLConnection connection = (JarURLConnection) pathURL.openConnection();
+      String prefix = connection.getEntryName();
+      prefix = prefix == null || prefix.isEmpty() ? "" : (prefix.endsWith("/") ? prefix : prefix + "/");
+      File jar = new File(connection.getJarFileURL().toURI());
+      try (JarFile jarFile = new JarFile(jar)) {
+        Enumeration<JarEntry> entries = jarFile.entries();
+        while (entries.hasMoreElements()) {
+          JarEntry entry = entries.nextElement();
+          if (!entry.isDirectory() && entry.getName().startsWith(prefix)) {
+            names.add(key(entry.getName().substring(prefix.length())));
+          }
+        }
+      }
+      return true;
+    } catch (Exception e) {
+      Debug.log(lvl, me + "not indexed: %s (%s)", pathURL, e.getMessage());
+      return false;
+    }
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="04 watch">
+  private static class Folder {
+    final PathIndex index;
+    final String prefix;
+    final int depth;
+
+    Folder(PathIndex index, String prefix, int depth) {
+      this.index = index;
+      this.prefix = prefix;
+      this.depth = depth;
+    }
+  }
+
+  private static WatchService watcher = null;
+  private static final Map<WatchKey, Folder> folders = new ConcurrentHashMap<>();
+
+  private static synchronized void watch(PathIndex index, Path folder, String prefix, int depth) {
+    try {
+      if (watcher == null) {
+        watcher = FileSystems.getDefault().newWatchService();
+        Thread thread = new Thread(PathIndex::watching, "ImagePath watcher");
+        thread.setDaemon(true);
+        thread.start();
+      }
+      WatchKey key = folder.register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+          StandardWatchEventKinds.ENTRY_DELETE);
+      folders.put(key, new Folder(index, prefix, depth));
+    } catch (IOException e) {
+      Debug.log(lvl, me + "not watched: %s (%s)", folder, e.getMessage());
+    }
+  }
+
+  private static void unwatch(PathIndex index) {
+    folders.entrySet().removeIf(entry -> {
+      if (entry.getValue().index == index) {
+        entry.getKey().cancel();
+        return true;
+      }
+      return false;
+    });
+  }
+
+  private static void watching() {
+    while (true) {
+      WatchKey key;
+      try {
+        key = watcher.take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      Folder folder = folders.get(key);
+      for (WatchEvent<?> event : key.pollEvents()) {
+        if (folder == null) {
+          continue;
+        }
+        PathIndex index = folder.index;
+        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+          index.stale = true;
+          continue;
+        }
+        String name = folder.prefix + event.context().toString();
+        File file = ((Path) key.watchable()).resolve((Path) event.context()).toFile();
+        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+          if (file.isDirectory()) {
+            // new sub folder: list it with the next lookup
+            index.stale = true;
+          } else {
+            index.names.add(index.key(name));
+          }
+        } else if (event.kind() == StandardWatchEventKinds.ENTRY_DELETE) {
+          String removed = index.key(name);
+          if (!index.names.remove(removed)) {
+            // might have been a folder
+            index.names.removeIf(entry -> entry.startsWith(removed + "/"));
+          }
+        }
+      }
+      if (!key.reset() && folder != null) {
+        folders.remove(key);
+        if (folder.depth == 0) {
+          folder.index.stale = true;
+        }
+      }
+    }
+  }
+  //</editor-fold>
+}
@@ -7,6 +7,7 @@ import org.sikuli.basics.Animator;
 import org.sikuli.basics.AnimatorOutQuarticEase;
 import org.sikuli.basics.AnimatorTimeBased;
 import org.sikuli.basics.Settings;
+import org.sikuli.natives.LinuxCapture;
 import org.sikuli.natives.SXUser32;
 import org.sikuli.basics.Debug;
 
@@ -81,11 +82,57 @@ public class RobotDesktop extends Robot implements IRobot {
 
   @Override
   public ScreenImage captureScreen(Rectangle rect) {
-    Rectangle cRect = new Rectangle(rect);
+    if (Settings.CaptureNative) {
+      CaptureProvider provider = getCaptureProvider();
+      if (provider != null) {
+        ScreenImage shot = provider.capture(rect);
+        if (shot != null) {
+          return shot;
+        }
+      }
+    }
     BufferedImage img = createScreenCapture(rect);
     return new ScreenImage(rect, img);
   }
 
+  private static CaptureProvider captureProvider = null;
+  private static boolean captureProviderChecked = false;
+
+  /**
+   * use the given native capture instead of the default for this system
+   * <br>java Robot is used, if null, not available or a capture fails
+   *
+   * @param provider the capture provider or null
+   */
+  public static synchronized void setCaptureProvider(CaptureProvider provider) {
+    if (captureProvider != null && captureProvider != provider) {
+      captureProvider.close();
+    }
+    captureProvider = provider;
+    captureProviderChecked = false;
+  }
+
+  /**
+   * @return the native capture used by captureScreen or null (java Robot)
+   */
+  public static synchronized CaptureProvider getCaptureProvider() {
+    if (!captureProviderChecked) {
+      captureProviderChecked = true;
+      if (captureProvider == null && Settings.isLinux()) {
+        captureProvider = new LinuxCapture();
+      }
+      if (captureProvider != null) {
+        if (captureProvider.isAvailable()) {
+          Debug.log(3, "RobotDesktop: captureScreen using %s", captureProvider.getName());
+        } else {
+          Debug.log(3, "RobotDesktop: %s not available - using java Robot", captureProvider.getName());
+          captureProvider = null;
+        }
+      }
+    }
+    return captureProvider;
+  }
+
   @Override
   public Color getColorAt(int x, int y) {
     return getPixelColor(x, y);
@@ -312,15 +359,7 @@ public class RobotDesktop extends Robot implements IRobot {
       delay(20);
     }
 
-    // on Windows we detect the current layout in KeyboardLayout.
-    // Since this layout is not compatible to AWT Robot, we have to use
-    // the User32 API to simulate the key press
-    if (Settings.AutoDetectKeyboardLayout && Settings.isWindows()) {
-        int scanCode =  SXUser32.INSTANCE.MapVirtualKeyW(keyCode, 0);
-        SXUser32.INSTANCE.keybd_event((byte)keyCode, (byte)scanCode, new WinDef.DWORD(0), new BaseTSD.ULONG_PTR(0));
-    }else{
-      keyPress(keyCode);
-    }
+    keyEvent(keyCode, true);
 
 
     if (stdAutoDelay == 0) {
@@ -363,15 +402,7 @@ public class RobotDesktop extends Robot implements IRobot {
   private void doKeyRelease(int keyCode) {
     logRobot(stdAutoDelay, "KeyRelease: WaitForIdle: %s - Delay: %d");
     setAutoDelay(stdAutoDelay);
-    // on Windows we detect the current layout in KeyboardLayout.
-    // Since this layout is not compatible to AWT Robot, we have to use
-    // the User32 API to simulate the key release
-    if (Settings.AutoDetectKeyboardLayout && Settings.isWindows()) {
-      int scanCode =  SXUser32.INSTANCE.MapVirtualKeyW(keyCode, 0);
-      SXUser32.INSTANCE.keybd_event((byte)keyCode, (byte)scanCode, new WinDef.DWORD(WinUser.KEYBDINPUT.KEYEVENTF_KEYUP), new BaseTSD.ULONG_PTR(0));
-    }else{
-      keyRelease(keyCode);
-    }
+    keyEvent(keyCode, false);
 
     if (stdAutoDelay == 0) {
       delay(stdDelay);
@@ -379,6 +410,21 @@ public class RobotDesktop extends Robot implements IRobot {
     logRobot("KeyRelease: extended delay: %d", stdMaxElapsed);
   }
 
+  private void keyEvent(int keyCode, boolean press) {
+    // on Windows we detect the current layout in KeyboardLayout.
+    // Since this layout is not compatible to AWT Robot, we have to use
+    // the User32 API to simulate the key press/release
+    if (Settings.AutoDetectKeyboardLayout && Settings.isWindows()) {
+      int scanCode = SXUser32.INSTANCE.MapVirtualKeyW(keyCode, 0);
+      int flags = press ? 0 : WinUser.KEYBDINPUT.KEYEVENTF_KEYUP;
+      SXUser32.INSTANCE.keybd_event((byte) keyCode, (byte) scanCode, new WinDef.DWORD(flags), new BaseTSD.ULONG_PTR(0));
+    } else if (press) {
+      keyPress(keyCode);
+    } else {
+      keyRelease(keyCode);
+    }
+  }
+
   @Override
   public void typeChar(char character, KeyMode mode) {
     Debug.log(4, "Robot: doType: %s ( %d )",
@@ -414,6 +460,36 @@ public class RobotDesktop extends Robot implements IRobot {
     doType(KeyMode.PRESS_RELEASE, key);
   }
 
+  /**
+   * the key events are sent one after the other with only the given delay
+   * (no wait for idle and no standard delay per key as with typeChar)
+   */
+  @Override
+  public void typeChars(String chars, int delay) {
+    Highlight fakeHighlight = null;
+    if (RunTime.get().needsRobotFake()) {
+      fakeHighlight = Highlight.fakeHighlight();
+      delay(20);
+      fakeHighlight.close();
+      delay(20);
+    }
+    setAutoDelay(stdAutoDelay);
+    waitForIdle();
+    for (int n = 0; n < chars.length(); n++) {
+      int[] keyCodes = Key.toJavaKeyCode(chars.charAt(n));
+      for (int i = 0; i < keyCodes.length; i++) {
+        keyEvent(keyCodes[i], true);
+      }
+      for (int i = keyCodes.length - 1; i >= 0; i--) {
+        keyEvent(keyCodes[i], false);
+      }
+      if (delay > 0) {
+        delay(delay);
+      }
+    }
+    waitForIdle();
+  }
+
   private void doType(KeyMode mode, int... keyCodes) {
     waitForIdle();
     if (mode == KeyMode.PRESS_ONLY) {
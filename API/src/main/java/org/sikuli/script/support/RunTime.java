@@ -735,8 +735,19 @@ java.desktop/sun.awt=ALL-UNNAMED
   }
 
   public static String[] resolveRelativeFiles(String[] givenScripts) {
+    return resolveRelativeFiles(givenScripts, get().fWorkDir);
+  }
+
+  /**
+   * as resolveRelativeFiles(givenScripts), but relative to the given folder instead of the work dir
+   *
+   * @param givenScripts the scripts as given
+   * @param workDir      the base folder
+   * @return the scripts to run (? prefix: not found)
+   */
+  public static String[] resolveRelativeFiles(String[] givenScripts, File workDir) {
     String[] runScripts = new String[givenScripts.length];
-    String baseDir = get().fWorkDir.getPath();
+    String baseDir = workDir.getPath();
     for (int i = 0; i < runScripts.length; i++) {
       String givenScript = givenScripts[i];
       String file = resolveRelativeFile(givenScript, baseDir);
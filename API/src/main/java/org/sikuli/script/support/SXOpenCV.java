@@ -8,6 +8,7 @@ import org.opencv.core.*;
 import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
 import org.sikuli.script.*;
 import org.sikuli.script.Image;
 
@@ -15,16 +16,20 @@ import javax.imageio.ImageIO;
 import java.awt.*;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
 import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferInt;
+import java.awt.image.WritableRaster;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 /**
  * INTERNAL: OpenCV related support for other features
@@ -39,7 +44,45 @@ public class SXOpenCV {
     return new Mat();
   }
 
-  private static BufferedImage makeBufferedImage(Mat content, String type) {
+  //<editor-fold desc="convert Mat <-> BufferedImage">
+  private static final ThreadLocal<byte[]> convertBuffer = new ThreadLocal<>();
+
+  // pooled per thread up to Settings.ConvertBufferMax, length always a multiple of 12 (valid for 1, 3 and 4 channels)
+  private static byte[] getConvertBuffer(int length) {
+    long max = Settings.ConvertBufferMax * 1024L * 1024L;
+    byte[] buffer = convertBuffer.get();
+    if (buffer != null && buffer.length > max) {
+      convertBuffer.remove();
+      buffer = null;
+    }
+    if (buffer == null || buffer.length < length) {
+      buffer = new byte[((length + 11) / 12) * 12];
+      if (buffer.length <= max) {
+        convertBuffer.set(buffer);
+      }
+    }
+    return buffer;
+  }
+
+  // the raster is not shared (e.g. getSubimage) and holds exactly the pixels in one bank
+  private static boolean isPlainRaster(BufferedImage bImg, int elementsPerPixel) {
+    WritableRaster raster = bImg.getRaster();
+    DataBuffer dataBuffer = raster.getDataBuffer();
+    return raster.getParent() == null
+        && raster.getSampleModelTranslateX() == 0 && raster.getSampleModelTranslateY() == 0
+        && dataBuffer.getNumBanks() == 1 && dataBuffer.getOffset() == 0
+        && dataBuffer.getSize() == bImg.getWidth() * bImg.getHeight() * elementsPerPixel;
+  }
+
+  /**
+   * INTERNAL: Mat to BufferedImage by encoding to the given format (e.g. .png) and reading it back
+   * <br>slow, only used for Mat types not supported by the direct copy
+   *
+   * @param content the Mat
+   * @param type    the image format as file ending
+   * @return the BufferedImage or null
+   */
+  public static BufferedImage makeBufferedImage(Mat content, String type) {
     if (content.empty()) {
       return null;
     }
@@ -57,7 +100,59 @@ public class SXOpenCV {
   }
 
   public static BufferedImage makeBufferedImage(Mat content) {
-    return makeBufferedImage(content, ".png");
+    return makeBufferedImage(content, (BufferedImage) null);
+  }
+
+  /**
+   * Mat to BufferedImage copying the pixels directly into the raster:
+   * <br>CV_8UC1 - BYTE_GRAY, CV_8UC3 - 3BYTE_BGR, CV_8UC4 - 4BYTE_ABGR (other Mat types via PNG)
+   *
+   * @param content the Mat
+   * @param target  a BufferedImage to be reused (if same size and type) or null
+   * @return the BufferedImage (target if reused) or null for an empty Mat
+   */
+  public static BufferedImage makeBufferedImage(Mat content, BufferedImage target) {
+    if (content.empty()) {
+      return null;
+    }
+    int channels = content.channels();
+    int bType;
+    if (content.depth() != CvType.CV_8U) {
+      bType = -1;
+    } else if (channels == 1) {
+      bType = BufferedImage.TYPE_BYTE_GRAY;
+    } else if (channels == 3) {
+      bType = BufferedImage.TYPE_3BYTE_BGR;
+    } else if (channels == 4) {
+      bType = BufferedImage.TYPE_4BYTE_ABGR;
+    } else {
+      bType = -1;
+    }
+    if (bType < 0) {
+      return makeBufferedImage(content, ".png");
+    }
+    int w = content.cols();
+    int h = content.rows();
+    BufferedImage bImg = target;
+    if (bImg == null || bImg.getType() != bType || bImg.getWidth() != w || bImg.getHeight() != h
+        || !isPlainRaster(bImg, channels)) {
+      bImg = new BufferedImage(w, h, bType);
+    }
+    byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
+    if (channels == 4) {
+      //B 0 - G 1 - R 2 - A 3 -> A 0 - B 1 - G 2 - R 3
+      byte[] bgra = getConvertBuffer(data.length);
+      content.get(0, 0, bgra);
+      for (int n = 0; n < data.length; n += 4) {
+        data[n] = bgra[n + 3];
+        data[n + 1] = bgra[n];
+        data[n + 2] = bgra[n + 1];
+        data[n + 3] = bgra[n + 2];
+      }
+    } else {
+      content.get(0, 0, data);
+    }
+    return bImg;
   }
 
   public static Mat makeMat(BufferedImage bImg) {
@@ -66,127 +161,99 @@ public class SXOpenCV {
   }
 
   public static Mat makeMat(BufferedImage bImg, boolean asBGR) {
+    return makeMat(bImg, asBGR, null);
+  }
+
+  /**
+   * BufferedImage to Mat copying the pixels directly from the raster
+   * <br>3BYTE_BGR, BYTE_GRAY, 4BYTE_ABGR, INT_RGB, INT_ARGB, INT_BGR are copied,
+   * other types are drawn into a 3BYTE_BGR (4BYTE_ABGR if having alpha and not asBGR) before
+   *
+   * @param bImg   the BufferedImage
+   * @param asBGR  if false, alpha is kept as 4th channel (BGRA) for 4BYTE_ABGR and INT_ARGB
+   * @param target a Mat to be reused (reallocated only if size or type differ) or null
+   * @return the Mat (target if given)
+   */
+  public static Mat makeMat(BufferedImage bImg, boolean asBGR, Mat target) {
     if (null == bImg) {
       return new Mat();
     }
-    if (bImg.getType() == BufferedImage.TYPE_INT_RGB) {
-      Debug.trace("makeMat: INT_RGB (%dx%d)", bImg.getWidth(), bImg.getHeight());
-      int[] data = ((DataBufferInt) bImg.getRaster().getDataBuffer()).getData();
-      ByteBuffer byteBuffer = ByteBuffer.allocate(data.length * 4);
-      IntBuffer intBuffer = byteBuffer.asIntBuffer();
-      intBuffer.put(data);
-      Mat aMat = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC4);
-      aMat.put(0, 0, byteBuffer.array());
-      Mat oMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
-      Mat oMatA = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC1);
-      List<Mat> mixIn = new ArrayList<Mat>(Arrays.asList(new Mat[]{aMat}));
-      List<Mat> mixOut = new ArrayList<Mat>(Arrays.asList(new Mat[]{oMatA, oMatBGR}));
-      //A 0 - R 1 - G 2 - B 3 -> A 0 - B 1 - G 2 - R 3
-      Core.mixChannels(mixIn, mixOut, new MatOfInt(0, 0, 1, 3, 2, 2, 3, 1));
-      return oMatBGR;
-    } else if (bImg.getType() == BufferedImage.TYPE_3BYTE_BGR) {
-      Debug.trace("makeMat: 3BYTE_BGR (%dx%d)", bImg.getWidth(), bImg.getHeight());
+    int w = bImg.getWidth();
+    int h = bImg.getHeight();
+    int bType = bImg.getType();
+    Mat mat = target == null ? new Mat() : target;
+    if ((bType == BufferedImage.TYPE_3BYTE_BGR && isPlainRaster(bImg, 3))
+        || (bType == BufferedImage.TYPE_BYTE_GRAY && isPlainRaster(bImg, 1))) {
+      Debug.trace("makeMat: %s (%dx%d)", bType == BufferedImage.TYPE_3BYTE_BGR ? "3BYTE_BGR" : "BYTE_GRAY", w, h);
       byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
-      Mat aMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
-      aMatBGR.put(0, 0, data);
-      return aMatBGR;
-    } else if (bImg.getType() == BufferedImage.TYPE_BYTE_INDEXED
-        || bImg.getType() == BufferedImage.TYPE_BYTE_BINARY) {
-      String bImgType = "BYTE_BINARY";
-      if (bImg.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
-        bImgType = "BYTE_INDEXED";
-      }
-      Debug.trace("makeMat: %s (%dx%d)", bImgType, bImg.getWidth(), bImg.getHeight());
-      BufferedImage bimg3b = new BufferedImage(bImg.getWidth(), bImg.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-      Graphics graphics = bimg3b.getGraphics();
-      graphics.drawImage(bImg, 0, 0, null);
-      byte[] data = ((DataBufferByte) bimg3b.getRaster().getDataBuffer()).getData();
-      Mat aMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
-      aMatBGR.put(0, 0, data);
-      return aMatBGR;
-    } else if (bImg.getType() == BufferedImage.TYPE_4BYTE_ABGR) {
-      Debug.trace("makeMat: TYPE_4BYTE_ABGR (%dx%d)", bImg.getWidth(), bImg.getHeight());
-      List<Mat> mats = getMatList(bImg);
-      Size size = mats.get(0).size();
+      mat.create(h, w, bType == BufferedImage.TYPE_3BYTE_BGR ? CvType.CV_8UC3 : CvType.CV_8UC1);
+      mat.put(0, 0, data);
+      return mat;
+    }
+    if (bType == BufferedImage.TYPE_4BYTE_ABGR && isPlainRaster(bImg, 4)) {
+      Debug.trace("makeMat: TYPE_4BYTE_ABGR (%dx%d)", w, h);
+      byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
+      int pixels = w * h;
+      byte[] bytes = getConvertBuffer(pixels * (asBGR ? 3 : 4));
       if (asBGR) {
-        Mat mBGR = makeMat(size, 3, -1);
-        mats.remove(0);
-        Core.merge(mats, mBGR);
-        return mBGR;
+        for (int n = 0, m = 0; n < pixels * 4; n += 4, m += 3) {
+          bytes[m] = data[n + 1];
+          bytes[m + 1] = data[n + 2];
+          bytes[m + 2] = data[n + 3];
+        }
       } else {
-        Mat mBGRA = makeMat(size, 4, -1);
-        mats.add(mats.remove(0));
-        Core.merge(mats, mBGRA);
-        return mBGRA;
+        for (int n = 0; n < pixels * 4; n += 4) {
+          bytes[n] = data[n + 1];
+          bytes[n + 1] = data[n + 2];
+          bytes[n + 2] = data[n + 3];
+          bytes[n + 3] = data[n];
+        }
       }
-    } else if (bImg.getType() == BufferedImage.TYPE_BYTE_GRAY) {
-      Debug.trace("makeMat: BYTE_GRAY (%dx%d)", bImg.getWidth(), bImg.getHeight());
-      byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
-      Mat aMat = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC1);
-      aMat.put(0, 0, data);
-      return aMat;
-    } else if (bImg.getType() == BufferedImage.TYPE_BYTE_BINARY) {
-      Debug.trace("makeMat: BYTE_BINARY (%dx%d)", bImg.getWidth(), bImg.getHeight());
-      BufferedImage bimg3b = new BufferedImage(bImg.getWidth(), bImg.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
-      Graphics graphics = bimg3b.getGraphics();
-      graphics.drawImage(bImg, 0, 0, null);
-      byte[] data = ((DataBufferByte) bimg3b.getRaster().getDataBuffer()).getData();
-      Mat aMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
-      aMatBGR.put(0, 0, data);
-      return aMatBGR;
-    } else {
-      //TYPE_CUSTOM 0
-      //*OK* TYPE_INT_RGB 1
-      //TYPE_INT_ARGB 2
-      //TYPE_INT_ARGB_PRE 3
-      //TYPE_INT_BGR 4
-      //*OK* TYPE_3BYTE_BGR 5
-      //*OK* TYPE_4BYTE_ABGR 6
-      //TYPE_4BYTE_ABGR_PRE 7
-      //TYPE_USHORT_565_RGB 8
-      //TYPE_USHORT_555_RGB 9
-      //*OK* TYPE_BYTE_GRAY 10
-      //TYPE_USHORT_GRAY 11
-      //*OK* TYPE_BYTE_BINARY 12
-      //TYPE_BYTE_INDEXED 13
-      throw new SikuliXception("SXOpenCV::makeMat: BufferedImage: type not supported: " + bImg.getType());
-    }
-  }
-
-  private static List<Mat> getMatList(BufferedImage bImg) {
-    byte[] data = ((DataBufferByte) bImg.getRaster().getDataBuffer()).getData();
-    Mat aMat = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC4);
-    aMat.put(0, 0, data);
-    List<Mat> mats = new ArrayList<Mat>();
-    Core.split(aMat, mats);
-    return mats;
-  }
-
-  private static Mat makeMat(Size size, int type, int fill) {
-    switch (type) {
-      case 1:
-        type = CvType.CV_8UC1;
-        break;
-      case 3:
-        type = CvType.CV_8UC3;
-        break;
-      case 4:
-        type = CvType.CV_8UC4;
-        break;
-      default:
-        type = -1;
-    }
-    if (type < 0) {
-      return new Mat();
+      mat.create(h, w, asBGR ? CvType.CV_8UC3 : CvType.CV_8UC4);
+      mat.put(0, 0, bytes);
+      return mat;
     }
-    Mat result;
-    if (fill < 0) {
-      result = new Mat(size, type);
-    } else {
-      result = new Mat(size, type, new Scalar(fill));
+    if ((bType == BufferedImage.TYPE_INT_RGB || bType == BufferedImage.TYPE_INT_ARGB
+        || bType == BufferedImage.TYPE_INT_BGR) && isPlainRaster(bImg, 1)) {
+      Debug.trace("makeMat: INT_%s (%dx%d)",
+          bType == BufferedImage.TYPE_INT_RGB ? "RGB" : (bType == BufferedImage.TYPE_INT_BGR ? "BGR" : "ARGB"), w, h);
+      int[] data = ((DataBufferInt) bImg.getRaster().getDataBuffer()).getData();
+      boolean withAlpha = bType == BufferedImage.TYPE_INT_ARGB && !asBGR;
+      int shiftB = bType == BufferedImage.TYPE_INT_BGR ? 16 : 0;
+      int shiftR = bType == BufferedImage.TYPE_INT_BGR ? 0 : 16;
+      byte[] bytes = getConvertBuffer(data.length * (withAlpha ? 4 : 3));
+      if (withAlpha) {
+        for (int n = 0, m = 0; n < data.length; n++, m += 4) {
+          int pixel = data[n];
+          bytes[m] = (byte) pixel;
+          bytes[m + 1] = (byte) (pixel >> 8);
+          bytes[m + 2] = (byte) (pixel >> 16);
+          bytes[m + 3] = (byte) (pixel >> 24);
+        }
+      } else {
+        for (int n = 0, m = 0; n < data.length; n++, m += 3) {
+          int pixel = data[n];
+          bytes[m] = (byte) (pixel >> shiftB);
+          bytes[m + 1] = (byte) (pixel >> 8);
+          bytes[m + 2] = (byte) (pixel >> shiftR);
+        }
+      }
+      mat.create(h, w, withAlpha ? CvType.CV_8UC4 : CvType.CV_8UC3);
+      mat.put(0, 0, bytes);
+      return mat;
     }
-    return result;
+    //TYPE_CUSTOM 0, TYPE_INT_ARGB_PRE 3, TYPE_4BYTE_ABGR_PRE 7, TYPE_USHORT_565_RGB 8, TYPE_USHORT_555_RGB 9
+    //TYPE_USHORT_GRAY 11, TYPE_BYTE_BINARY 12, TYPE_BYTE_INDEXED 13 and shared rasters (e.g. getSubimage)
+    Debug.trace("makeMat: type %d (%dx%d) drawn", bType, w, h);
+    boolean withAlpha = !asBGR && bImg.getColorModel().hasAlpha();
+    BufferedImage bImgDrawn = new BufferedImage(w, h,
+        withAlpha ? BufferedImage.TYPE_4BYTE_ABGR : BufferedImage.TYPE_3BYTE_BGR);
+    Graphics graphics = bImgDrawn.getGraphics();
+    graphics.drawImage(bImg, 0, 0, null);
+    graphics.dispose();
+    return makeMat(bImgDrawn, asBGR, mat);
   }
+  //</editor-fold>
 
   public static Mat getSubMat(Element element, Mat where, Element subElement) {
     int x = subElement.x - element.x;
@@ -320,66 +387,398 @@ public class SXOpenCV {
     return (double) Core.countNonZero(mDiffAbs) / (thisGray.cols() * thisGray.rows());
   }
 
-  private static boolean downSize = false;
   public static final double MIN_THRESHHOLD = 1.0E-5;
 
   public static Match findMatch(Mat where, FindAttributes findAttributes, boolean findAll) {
-    if (downSize) {
-      //TODO downsizing
-      double downSizeFactor;
-      Mat what = findAttributes.what();
-      final int downSizeMinSample = 12;
-      double downW = ((double) what.width()) / downSizeMinSample;
-      double downH = ((double) what.height()) / downSizeMinSample;
-      downSizeFactor = Math.max(1.0, Math.min(downW, downH));
+    findAttributes.use();
+    try {
+      return findMatchScaled(where, findAttributes, findAll);
+    } finally {
+      findAttributes.done();
+    }
+  }
+
+  // multi-scale search: a match with this score is taken without trying the other factors
+  private static final double scaleGoodScore = 0.99;
+
+  private static Match findMatchScaled(Mat where, FindAttributes findAttributes, boolean findAll) {
+    if (FindScale.scales().length == 0) {
+      return findMatchAsIs(where, findAttributes, findAll);
+    }
+    // multi-scale search: the learned factor first, then the others with increasing distance
+    // the best match of all factors (a near factor might match a bit worse than the right one)
+    Match bestMatch = null;
+    for (double factor : FindScale.order(findAttributes.scaleContext())) {
+      FindAttributes scaled = findAttributes.scaled(factor);
+      if (scaled.what().cols() > where.cols() || scaled.what().rows() > where.rows()) {
+        continue;
+      }
+      Match match = findMatchAsIs(where, scaled, findAll);
+      if (match != null && (bestMatch == null || match.score() > bestMatch.score())) {
+        match.resultScale(factor);
+        bestMatch = match;
+        if (match.score() >= scaleGoodScore) {
+          break;
+        }
+      }
+    }
+    if (bestMatch != null) {
+      double factor = bestMatch.resultScale();
+      if (factor != 1) {
+        Debug.log(3, "SXOpenCV: findMatch: %s: found with scale %.3f", findAttributes.target(), factor);
+      }
+      FindScale.learn(findAttributes.scaleContext(), factor);
+    }
+    return bestMatch;
+  }
+
+  private static Match findMatchAsIs(Mat where, FindAttributes findAttributes, boolean findAll) {
+    if (Settings.FindDownsized && !findAll && shouldSearchDownsized(findAttributes)) {
+      DownsizedMatch downsized = findMatchDownsized(where, findAttributes.what(),
+          findAttributes.target().similarity(),
+          (whereMat, whatMat) -> doMatchTemplate(whereMat, whatMat, findAttributes), findAttributes::whatDownsized);
+      if (downsized != null) {
+        return new Match(new Point(downsized.x, downsized.y), downsized.score, null);
+      }
     }
     Match matchResult = doFindMatch(where, findAttributes, findAll);
     return matchResult;
   }
 
   public static Match checkLastSeen(Mat where, FindAttributes findAttributes) {
-    Match matchResult = doFindMatch(where, findAttributes, false);
-    return matchResult;
+    findAttributes.use();
+    try {
+      return doFindMatch(where, findAttributes, false);
+    } finally {
+      findAttributes.done();
+    }
   }
 
   private static Match doFindMatch(Mat where, FindAttributes findAttributes, boolean findAll) {
+    Mat result = doMatchTemplate(where, findAttributes.what(), findAttributes);
+    Core.MinMaxLocResult minMax = Core.minMaxLoc(result);
+    double maxVal = minMax.maxVal;
+    if (maxVal > findAttributes.target().similarity()) {
+      Point point = new Point((int) minMax.maxLoc.x, (int) minMax.maxLoc.y);
+      if (!findAll) {
+        result = null;
+      }
+      return new Match(point, maxVal, result);
+    }
+    return null;
+  }
+
+  private static Mat doMatchTemplate(Mat where, Mat what, FindAttributes findAttributes) {
     Mat result = new Mat();
     Mat finalWhere = where;
-    if (findAttributes.gray()) {
-      Imgproc.cvtColor(where, finalWhere, Imgproc.COLOR_BGR2GRAY);
+    if (findAttributes.gray() && where.channels() > 1) {
+      // not in place: where might be shared (e.g. Snapshot, previous frame of the change aware wait)
+      finalWhere = new Mat();
+      Imgproc.cvtColor(where, finalWhere, where.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : Imgproc.COLOR_BGR2GRAY);
     }
-    Mat what = findAttributes.what();
     Mat mask = findAttributes.mask();
     if (findAttributes.target().plain()) {
       Mat finalWherePlain = finalWhere;
       Mat finalWhatPlain = what;
       if (findAttributes.target().black()) {
+        // not in place: where might be shared (e.g. VNCScreen frame)
+        finalWherePlain = new Mat();
         Core.bitwise_not(finalWhere, finalWherePlain);
-        Core.bitwise_not(what, finalWhatPlain);
+        // what is shared (template cache): inverted once into its own Mat
+        finalWhatPlain = findAttributes.whatInverted();
       }
       if (mask.empty()) {
         Imgproc.matchTemplate(finalWherePlain, finalWhatPlain, result, Imgproc.TM_SQDIFF_NORMED);
       } else {
-        Imgproc.matchTemplate(finalWherePlain, what, result, Imgproc.TM_SQDIFF_NORMED, mask);
+        Imgproc.matchTemplate(finalWherePlain, finalWhatPlain, result, Imgproc.TM_SQDIFF_NORMED, mask);
       }
       Core.subtract(Mat.ones(result.size(), CvType.CV_32F), result, result);
     } else if (mask.empty()) {
-      Imgproc.matchTemplate(where, what, result, Imgproc.TM_CCOEFF_NORMED);
+      Imgproc.matchTemplate(finalWhere, what, result, Imgproc.TM_CCOEFF_NORMED);
     } else {
-      Imgproc.matchTemplate(where, what, result, Imgproc.TM_CCORR_NORMED, mask);
+      Imgproc.matchTemplate(finalWhere, what, result, Imgproc.TM_CCORR_NORMED, mask);
     }
-    Core.MinMaxLocResult minMax = Core.minMaxLoc(result);
-    double maxVal = minMax.maxVal;
-    if (maxVal > findAttributes.target().similarity()) {
-      Point point = new Point((int) minMax.maxLoc.x, (int) minMax.maxLoc.y);
-      if (!findAll) {
-        result = null;
+    return result;
+  }
+
+  //<editor-fold desc="search downsized (coarse to fine)">
+  /**
+   * produces the matchTemplate result for the given images (where, what)
+   */
+  public interface TemplateMatcher {
+    Mat match(Mat where, Mat what);
+  }
+
+  /**
+   * result of a coarse to fine search
+   * <br>x, y: top left of the best match in where (full resolution)
+   * <br>result: the full resolution match result of the refined window at offX, offY in where
+   */
+  public static class DownsizedMatch {
+    public int x;
+    public int y;
+    public double score;
+    public Mat result;
+    public int offX;
+    public int offY;
+  }
+
+  private static final int downSizeMinSample = 12;
+  private static final double downSizeMinFactor = 1.5;
+  private static final double[] downSizeLevels = new double[]{1.0, 0.4};
+  private static final double downSizeSimDiff = 0.15;
+  private static final int downSizeMaxCandidates = 10;
+
+  public static double getDownSizeFactor(Mat what) {
+    double downW = ((double) what.width()) / downSizeMinSample;
+    double downH = ((double) what.height()) / downSizeMinSample;
+    return Math.max(1.0, Math.min(downW, downH));
+  }
+
+  private static boolean shouldSearchDownsized(FindAttributes findAttributes) {
+    return findAttributes.mask().empty()
+        && !findAttributes.target().plain()
+        && findAttributes.target().similarity() < 0.99
+        && getDownSizeFactor(findAttributes.what()) >= downSizeMinFactor;
+  }
+
+  /**
+   * coarse to fine search:
+   * <br>matchTemplate on the decimated images (where, what): each coarse peak above similarity - 0.15
+   * (at most 10) is refined in a small window at full resolution, the best refined score is taken.
+   * <br>the next (less decimated) level is tried, if no refined score reaches similarity.
+   * <br>null (full search), if a coarse peak not refined (more than 10) might be better
+   * (coarse score + 0.15 above the best refined score)
+   *
+   * @param where      image to search in
+   * @param what       image to search for (not masked, not plain)
+   * @param similarity the wanted score at full resolution
+   * @param matcher    makes the matchTemplate result
+   * @return the best confirmed match or null (caller has to search in original)
+   */
+  public static DownsizedMatch findMatchDownsized(Mat where, Mat what, double similarity, TemplateMatcher matcher) {
+    return findMatchDownsized(where, what, similarity, matcher, null);
+  }
+
+  /**
+   * coarse to fine search (see above) with the decimated what given by whatDownsized (e.g. cached)
+   *
+   * @param whatDownsized makes what with the given size (null: resized here)
+   */
+  public static DownsizedMatch findMatchDownsized(Mat where, Mat what, double similarity, TemplateMatcher matcher,
+                                                  Function<Size, Mat> whatDownsized) {
+    double factor = getDownSizeFactor(what);
+    if (factor < downSizeMinFactor) {
+      return null;
+    }
+    double wantedScore = ((int) ((similarity - downSizeSimDiff) * 100)) / 100.0;
+    Mat whereDown = new Mat();
+    Mat whatDown = new Mat();
+    for (double level : downSizeLevels) {
+      double rFactor = factor * level;
+      if (rFactor < downSizeMinFactor) {
+        break;
+      }
+      Size sizeWhat = new Size(Math.max(1, (int) (what.cols() / rFactor)), Math.max(1, (int) (what.rows() / rFactor)));
+      Size sizeWhere = new Size(Math.max(sizeWhat.width, (int) (where.cols() / rFactor)),
+          Math.max(sizeWhat.height, (int) (where.rows() / rFactor)));
+      Imgproc.resize(where, whereDown, sizeWhere, 0, 0, Imgproc.INTER_AREA);
+      if (whatDownsized == null) {
+        Imgproc.resize(what, whatDown, sizeWhat, 0, 0, Imgproc.INTER_AREA);
+      } else {
+        whatDown = whatDownsized.apply(sizeWhat);
+      }
+      Mat coarse = matcher.match(whereDown, whatDown);
+      if (coarse.empty()) {
+        return null;
+      }
+      int marginX = (int) sizeWhat.width / 2 + 1;
+      int marginY = (int) sizeWhat.height / 2 + 1;
+      DownsizedMatch best = null;
+      boolean allRefined = false;
+      double notRefined = -1;
+      for (int n = 0; ; n++) {
+        Core.MinMaxLocResult minMax = Core.minMaxLoc(coarse);
+        if (minMax.maxVal < wantedScore) {
+          allRefined = true;
+          break;
+        }
+        if (n == downSizeMaxCandidates) {
+          notRefined = minMax.maxVal;
+          break;
+        }
+        int coarseX = (int) minMax.maxLoc.x;
+        int coarseY = (int) minMax.maxLoc.y;
+        DownsizedMatch refined = refineDownsized(where, what, coarseX, coarseY, rFactor, matcher);
+        if (refined.score > similarity && (best == null || refined.score > best.score)) {
+          best = refined;
+        }
+        Range rangeX = new Range(Math.max(coarseX - marginX, 0), Math.min(coarseX + marginX, coarse.cols()));
+        Range rangeY = new Range(Math.max(coarseY - marginY, 0), Math.min(coarseY + marginY, coarse.rows()));
+        coarse.colRange(rangeX).rowRange(rangeY).setTo(new Scalar(-1f));
+      }
+      if (best != null) {
+        // a refined score is at most 0.15 above its coarse score (see wantedScore)
+        if (!allRefined && notRefined + downSizeSimDiff > best.score) {
+          Debug.log(4, "SXOpenCV: findMatchDownsized: (%.1f) %.4f - coarse peak %.4f not refined - full search",
+              rFactor, best.score, notRefined);
+          return null;
+        }
+        Debug.log(4, "SXOpenCV: findMatchDownsized: (%.1f) %.4f at (%d, %d)", rFactor, best.score, best.x, best.y);
+        return best;
       }
-      return new Match(point, maxVal, result);
     }
     return null;
   }
 
+  private static DownsizedMatch refineDownsized(Mat where, Mat what, int coarseX, int coarseY, double rFactor,
+                                                TemplateMatcher matcher) {
+    int margin = (int) Math.ceil(2 * rFactor);
+    int x = (int) (coarseX * rFactor);
+    int y = (int) (coarseY * rFactor);
+    int x0 = Math.max(0, Math.min(x - margin, where.cols() - what.cols()));
+    int y0 = Math.max(0, Math.min(y - margin, where.rows() - what.rows()));
+    int x1 = Math.min(where.cols(), Math.max(x + what.cols() + margin, x0 + what.cols()));
+    int y1 = Math.min(where.rows(), Math.max(y + what.rows() + margin, y0 + what.rows()));
+    Mat window = where.submat(new Rect(x0, y0, x1 - x0, y1 - y0));
+    DownsizedMatch refined = new DownsizedMatch();
+    refined.result = matcher.match(window, what);
+    Core.MinMaxLocResult minMax = Core.minMaxLoc(refined.result);
+    refined.score = minMax.maxVal;
+    refined.offX = x0;
+    refined.offY = y0;
+    refined.x = x0 + (int) minMax.maxLoc.x;
+    refined.y = y0 + (int) minMax.maxLoc.y;
+    return refined;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="search changed areas (change aware wait)">
+  private static final int changedMaxAreas = 8;
+
+  /**
+   * INTERNAL: the changed areas between two frames of the same size and type
+   * <br>exact: each pixel differing in any channel is inside one of the rectangles
+   *
+   * @param previous the previous frame
+   * @param next     the new frame
+   * @return the bounding rectangles (empty if the frames are equal) or null if not comparable
+   */
+  public static List<Rect> getChangedRects(Mat previous, Mat next) {
+    if (previous.empty() || next.empty() || previous.type() != next.type()
+        || previous.cols() != next.cols() || previous.rows() != next.rows()) {
+      return null;
+    }
+    List<Rect> changes = new ArrayList<>();
+    if (previous.dataAddr() == next.dataAddr()) {
+      // the same pixels (e.g. VNCScreen: unchanged frame)
+      return changes;
+    }
+    Mat mDiff = newMat();
+    Core.absdiff(previous, next, mDiff);
+    Mat mChanged = mDiff;
+    if (mDiff.channels() > 1) {
+      List<Mat> channels = new ArrayList<>();
+      Core.split(mDiff, channels);
+      mChanged = channels.get(0);
+      for (int n = 1; n < channels.size(); n++) {
+        Core.max(mChanged, channels.get(n), mChanged);
+      }
+    }
+    if (Core.countNonZero(mChanged) == 0) {
+      return changes;
+    }
+    Imgproc.threshold(mChanged, mChanged, 0, 255, Imgproc.THRESH_BINARY);
+    Imgproc.dilate(mChanged, mChanged, newMat());
+    List<MatOfPoint> contours = new ArrayList<>();
+    Imgproc.findContours(mChanged, contours, newMat(), Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
+    for (MatOfPoint contour : contours) {
+      changes.add(Imgproc.boundingRect(contour));
+    }
+    return changes;
+  }
+
+  /**
+   * INTERNAL: one search of a change aware wait (the last search of the previous frame found nothing)
+   * <ul>
+   * <li>unchanged frame: no search (the result of the last search is still valid)</li>
+   * <li>changed frame: only the areas given by {@link #getSearchAreas(Mat, FindAttributes, List)} are searched,
+   * the whole frame for findAll and waitVanish (any change might remove a match)</li>
+   * </ul>
+   *
+   * @param where          the new frame
+   * @param findAttributes what to find
+   * @param findAll        all matches
+   * @param changes        null: not known (the whole frame is searched),
+   *                       else as given by {@link #getChangedRects(Mat, Mat)}
+   * @param whole          search the whole frame, if it has changed (waitVanish)
+   * @return the best match (relative to where) or null (also if not searched: unchanged frame)
+   */
+  public static Match findMatchWaiting(Mat where, FindAttributes findAttributes, boolean findAll,
+                                       List<Rect> changes, boolean whole) {
+    if (changes == null) {
+      return findMatch(where, findAttributes, findAll);
+    }
+    if (changes.isEmpty()) {
+      Debug.log(4, "SXOpenCV: findMatchWaiting: frame unchanged - search skipped");
+      return null;
+    }
+    List<Rect> areas = null;
+    if (!findAll && !whole) {
+      areas = getSearchAreas(where, findAttributes, changes);
+    }
+    if (areas == null) {
+      return findMatch(where, findAttributes, findAll);
+    }
+    Debug.log(4, "SXOpenCV: findMatchWaiting: frame changed - searching %d areas", areas.size());
+    Match bestMatch = null;
+    for (Rect area : areas) {
+      Match match = findMatch(where.submat(area), findAttributes, false);
+      if (match != null && (bestMatch == null || match.score() > bestMatch.score())) {
+        match.x += area.x;
+        match.y += area.y;
+        bestMatch = match;
+      }
+    }
+    return bestMatch;
+  }
+
+  /**
+   * INTERNAL: where a match might have appeared since the last search
+   * <br>these are the changed areas extended by the target size (top left) and the target size - 1 (bottom right)
+   *
+   * @param where          the new frame
+   * @param findAttributes what to find
+   * @param changes        the changed areas as given by {@link #getChangedRects(Mat, Mat)}
+   * @return the areas to search or null, if they are too many or too large (the whole frame should be searched)
+   */
+  public static List<Rect> getSearchAreas(Mat where, FindAttributes findAttributes, List<Rect> changes) {
+    Mat what = findAttributes.what();
+    // multi-scale search: the areas must hold the largest scaled what (at least the smallest)
+    int tw = (int) Math.ceil(what.cols() * FindScale.max());
+    int th = (int) Math.ceil(what.rows() * FindScale.max());
+    int minW = (int) (what.cols() * FindScale.min());
+    int minH = (int) (what.rows() * FindScale.min());
+    List<Rect> areas = new ArrayList<>();
+    long areaPixels = 0;
+    for (Rect change : changes) {
+      int x1 = Math.max(0, change.x - tw + 1);
+      int y1 = Math.max(0, change.y - th + 1);
+      int x2 = Math.min(where.cols(), change.x + change.width + tw - 1);
+      int y2 = Math.min(where.rows(), change.y + change.height + th - 1);
+      if (x2 - x1 < minW || y2 - y1 < minH) {
+        continue;
+      }
+      areas.add(new Rect(x1, y1, x2 - x1, y2 - y1));
+      areaPixels += (long) (x2 - x1) * (y2 - y1);
+    }
+    if (areas.size() > changedMaxAreas || areaPixels > (long) where.cols() * where.rows() / 2) {
+      return null;
+    }
+    return areas;
+  }
+  //</editor-fold>
+
   public static boolean isColorEqual(int[] cvColor, Color otherColor) {
     Color col = new Color(cvColor[2], cvColor[1], cvColor[0]);
     int r = (col.getRed() - otherColor.getRed()) * (col.getRed() - otherColor.getRed());
@@ -399,49 +798,142 @@ public class SXOpenCV {
     if (changed.isValid()) {
       int PIXEL_DIFF_THRESHOLD = 3;
       int IMAGE_DIFF_THRESHOLD = 5;
-      Mat previousGray = SXOpenCV.newMat();
-      Mat nextGray = SXOpenCV.newMat();
-      Mat mDiffAbs = SXOpenCV.newMat();
-      Mat mDiffTresh = SXOpenCV.newMat();
-
-      Imgproc.cvtColor(original.getContent(), previousGray, toGray);
-      Imgproc.cvtColor(changed.getContent(), nextGray, toGray);
-      Core.absdiff(previousGray, nextGray, mDiffAbs);
-      Imgproc.threshold(mDiffAbs, mDiffTresh, PIXEL_DIFF_THRESHOLD, 0.0, Imgproc.THRESH_TOZERO);
-
-      if (Core.countNonZero(mDiffTresh) > IMAGE_DIFF_THRESHOLD) {
-        Imgproc.threshold(mDiffAbs, mDiffAbs, PIXEL_DIFF_THRESHOLD, 255, Imgproc.THRESH_BINARY);
-        Imgproc.dilate(mDiffAbs, mDiffAbs, SXOpenCV.newMat());
-        Mat se = Imgproc.getStructuringElement(Imgproc.MORPH_ELLIPSE, new Size(5, 5));
-        Imgproc.morphologyEx(mDiffAbs, mDiffAbs, Imgproc.MORPH_CLOSE, se);
-
-        List<MatOfPoint> contours = new ArrayList<MatOfPoint>();
-        Mat mHierarchy = SXOpenCV.newMat();
-        Imgproc.findContours(mDiffAbs, contours, mHierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-        changes = contoursToRectangle(contours);
+      for (Rect rect : getChanges(original.getContent(), changed.getContent(), PIXEL_DIFF_THRESHOLD, IMAGE_DIFF_THRESHOLD)) {
+        changes.add(new Match(rect.x, rect.y, rect.width, rect.height));
       }
     }
     return changes;
   }
 
-  private static List<Match> contoursToRectangle(List<MatOfPoint> contours) {
-    List<Match> rectangles = new ArrayList<>();
+  //<editor-fold desc="detect changes (findChanges, onChange)">
+  private static final int changesMergeGap = 4;
+
+  /**
+   * INTERNAL: the changed areas between two images of the same size (findChanges, onChange)
+   * <br>pixels differing more than pixelDiff (gray) are changed
+   * <br>the changed pixels are collected at 1/Settings.ChangeScale resolution (a cell with one changed pixel is changed),
+   * so dilate, contours and bounding rectangles work on the smaller mask
+   * <br>only the outer contours are used (a change inside a changed frame is part of the frame)
+   * and rectangles overlapping or nearer than a few pixels are merged
+   *
+   * @param previous  the previous image
+   * @param next      the new image
+   * @param pixelDiff gray difference of a changed pixel
+   * @param minPixels changed pixels needed for a change
+   * @return the bounding rectangles of the changes (full resolution), empty if no change or not comparable
+   */
+  public static List<Rect> getChanges(Mat previous, Mat next, int pixelDiff, int minPixels) {
+    List<Rect> changes = new ArrayList<>();
+    if (previous.empty() || next.empty() || previous.cols() != next.cols() || previous.rows() != next.rows()) {
+      return changes;
+    }
+    Mat mDiff = newMat();
+    Core.absdiff(asGray(previous), asGray(next), mDiff);
+    Imgproc.threshold(mDiff, mDiff, pixelDiff, 255, Imgproc.THRESH_BINARY);
+    if (Core.countNonZero(mDiff) <= minPixels) {
+      return changes;
+    }
+    int factor = Math.max(1, Settings.ChangeScale);
+    Mat mChanged = mDiff;
+    if (factor > 1) {
+      // max per cell: each pixel gets the max of the n x n cell starting there, then the cell origins are taken
+      int cols = (mDiff.cols() + factor - 1) / factor;
+      int rows = (mDiff.rows() + factor - 1) / factor;
+      Mat mCells = newMat();
+      Core.copyMakeBorder(mDiff, mCells, 0, rows * factor - mDiff.rows(), 0, cols * factor - mDiff.cols(),
+          Core.BORDER_CONSTANT, new Scalar(0));
+      Mat kernel = Mat.ones(factor, factor, CvType.CV_8UC1);
+      Imgproc.dilate(mCells, mCells, kernel, new org.opencv.core.Point(0, 0), 1,
+          Core.BORDER_CONSTANT, new Scalar(0));
+      mChanged = newMat();
+      Imgproc.resize(mCells, mChanged, new Size(cols, rows), 0, 0, Imgproc.INTER_NEAREST);
+    }
+    Imgproc.dilate(mChanged, mChanged, newMat());
+    List<MatOfPoint> contours = new ArrayList<>();
+    Imgproc.findContours(mChanged, contours, newMat(), Imgproc.RETR_EXTERNAL, Imgproc.CHAIN_APPROX_SIMPLE);
     for (MatOfPoint contour : contours) {
-      int x1 = 99999;
-      int y1 = 99999;
-      int x2 = 0;
-      int y2 = 0;
-      List<org.opencv.core.Point> points = contour.toList();
-      for (org.opencv.core.Point point : points) {
-        int x = (int) point.x;
-        int y = (int) point.y;
-        if (x < x1) x1 = x;
-        if (x > x2) x2 = x;
-        if (y < y1) y1 = y;
-        if (y > y2) y2 = y;
+      Rect rect = Imgproc.boundingRect(contour);
+      int x = Math.min(rect.x * factor, next.cols() - 1);
+      int y = Math.min(rect.y * factor, next.rows() - 1);
+      changes.add(new Rect(x, y, Math.min(rect.width * factor, next.cols() - x),
+          Math.min(rect.height * factor, next.rows() - y)));
+    }
+    return mergeRects(changes, changesMergeGap);
+  }
+
+  private static Mat asGray(Mat mat) {
+    if (mat.channels() == 1) {
+      return mat;
+    }
+    Mat mGray = newMat();
+    Imgproc.cvtColor(mat, mGray, mat.channels() == 4 ? Imgproc.COLOR_BGRA2GRAY : toGray);
+    return mGray;
+  }
+
+  /**
+   * @param rects the rectangles
+   * @param gap   rectangles nearer than gap are merged
+   * @return the merged rectangles (each is the bounding rectangle of the merged ones)
+   */
+  public static List<Rect> mergeRects(List<Rect> rects, int gap) {
+    List<Rect> merged = new ArrayList<>(rects);
+    int count;
+    do {
+      // a merged rectangle might now be near to others
+      count = merged.size();
+      merged = mergeNear(merged, gap);
+    } while (merged.size() < count);
+    return merged;
+  }
+
+  // one sweep along x: near rectangles are grouped (union-find), each group gives its bounding rectangle
+  private static List<Rect> mergeNear(List<Rect> rects, int gap) {
+    int size = rects.size();
+    Integer[] order = new Integer[size];
+    int[] group = new int[size];
+    for (int n = 0; n < size; n++) {
+      order[n] = n;
+      group[n] = n;
+    }
+    Arrays.sort(order, Comparator.comparingInt(n -> rects.get(n).x));
+    List<Integer> active = new ArrayList<>();
+    for (int index : order) {
+      Rect rect = rects.get(index);
+      active.removeIf(n -> rects.get(n).x + rects.get(n).width <= rect.x - gap);
+      for (int n : active) {
+        Rect other = rects.get(n);
+        if (other.y - gap < rect.y + rect.height && rect.y - gap < other.y + other.height) {
+          group[root(group, n)] = root(group, index);
+        }
+      }
+      active.add(index);
+    }
+    Map<Integer, int[]> bounds = new LinkedHashMap<>();
+    for (int n = 0; n < size; n++) {
+      Rect rect = rects.get(n);
+      int[] box = bounds.get(root(group, n));
+      if (box == null) {
+        bounds.put(root(group, n), new int[]{rect.x, rect.y, rect.x + rect.width, rect.y + rect.height});
+      } else {
+        box[0] = Math.min(box[0], rect.x);
+        box[1] = Math.min(box[1], rect.y);
+        box[2] = Math.max(box[2], rect.x + rect.width);
+        box[3] = Math.max(box[3], rect.y + rect.height);
       }
-      rectangles.add(new Match(x1, y1, x2 - x1, y2 - y1));
     }
-    return rectangles;
+    List<Rect> merged = new ArrayList<>();
+    for (int[] box : bounds.values()) {
+      merged.add(new Rect(box[0], box[1], box[2] - box[0], box[3] - box[1]));
+    }
+    return merged;
+  }
+
+  private static int root(int[] group, int n) {
+    while (group[n] != n) {
+      group[n] = group[group[n]];
+      n = group[n];
+    }
+    return n;
   }
+  //</editor-fold>
 }
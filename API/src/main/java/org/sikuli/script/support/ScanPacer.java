@@ -0,0 +1,187 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.sikuli.basics.Debug;
+import org.sikuli.basics.Settings;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * INTERNAL: the pacing of the repeated scans of wait/exists/waitVanish and observe
+ * <br>fixed (default): one scan per 1000 / scan rate millisecs as before
+ * <br>adaptive (Settings.ScanAdaptive): the time per scan is measured and each frame is compared with the previous one
+ * <ul>
+ * <li>a change: the next scans follow at Settings.ScanRateMax to catch the new content early</li>
+ * <li>no change: the period grows with each static frame up to 1000 / Settings.ScanRateMin,
+ * but is at least 4 times the average scan time (scanning a static screen takes at most a quarter of the time)</li>
+ * <li>changes in (nearly) every frame (video, progress bar): the given scan rate, since faster scans do not help</li>
+ * </ul>
+ * all scans of the process together are limited to Settings.ScanCpuMax (share of the time, 0 = no limit),
+ * measured as the wall-clock time spent in the scans (not the CPU time of the process)
+ * <br>used by Element.doFind (wait/exists/waitVanish), the old Region API and observe
+ */
+public class ScanPacer {
+
+  private static String me = "ScanPacer: ";
+  private static int lvl = 4;
+
+  private static final double GROW = 1.5;
+  private static final double ALPHA = 0.2;
+  private static final double CONTINUOUS = 0.8;
+  private static final double STATIC_COST = 4;
+
+  //<editor-fold desc="01 cpu cap">
+  private static double cpuCredit = 0;
+  private static long cpuCreditTime = 0;
+  private static long cpuWaits = 0;
+  private static long cpuWaitTime = 0;
+
+  // token bucket: credit grows with ScanCpuMax millisecs per millisec (max 1 second), each scan consumes its time
+  private static synchronized long cpuWait(long cost) {
+    float cap = Settings.ScanCpuMax;
+    if (cap <= 0) {
+      cpuCreditTime = 0;
+      return 0;
+    }
+    long now = new Date().getTime();
+    if (cpuCreditTime == 0) {
+      cpuCredit = 1000 * cap;
+    } else {
+      cpuCredit = Math.min(cpuCredit + (now - cpuCreditTime) * cap, 1000 * cap);
+    }
+    cpuCreditTime = now;
+    cpuCredit -= cost;
+    if (cpuCredit >= 0) {
+      return 0;
+    }
+    long wait = (long) (-cpuCredit / cap);
+    cpuWaits++;
+    cpuWaitTime += wait;
+    return wait;
+  }
+
+  /**
+   * @return how often and how long (millisecs) scans had to wait because of Settings.ScanCpuMax
+   */
+  public static synchronized Map<String, Long> cpuCounters() {
+    Map<String, Long> counters = new LinkedHashMap<>();
+    counters.put("waits", cpuWaits);
+    counters.put("waitTime", cpuWaitTime);
+    return counters;
+  }
+  //</editor-fold>
+
+  //<editor-fold desc="02 instance">
+  private final boolean adaptive;
+  private final long basePeriod;
+  private final long minPeriod;
+  private final long maxPeriod;
+  private long period;
+  private double costAverage = -1;
+  private double changeAverage = 0;
+  private Boolean changed = null;
+  private Mat lastFrame = null;
+  private long scans = 0;
+  private long changes = 0;
+
+  /**
+   * @param rate the scan rate (scans per second) as given for the region
+   */
+  public ScanPacer(float rate) {
+    adaptive = Settings.ScanAdaptive;
+    basePeriod = (long) (1000.0 / rate);
+    minPeriod = Math.min(basePeriod, (long) (1000.0 / Math.max(Settings.ScanRateMax, 0.01f)));
+    maxPeriod = Math.max(basePeriod, (long) (1000.0 / Math.max(Settings.ScanRateMin, 0.01f)));
+    period = basePeriod;
+  }
+
+  public boolean isAdaptive() {
+    return adaptive;
+  }
+
+  /**
+   * tell the pacer, whether the last scanned frame differs from the previous one
+   *
+   * @param changed true if changed
+   */
+  public void changed(boolean changed) {
+    this.changed = changed;
+  }
+
+  /**
+   * compare the frame with the previous one given here (only if adaptive)
+   *
+   * @param frame the actual frame (kept for the next compare)
+   */
+  public void changed(Mat frame) {
+    if (!adaptive) {
+      return;
+    }
+    Mat previous = lastFrame;
+    lastFrame = frame;
+    if (previous == null || previous.empty() || frame.empty() || previous.type() != frame.type()
+        || previous.cols() != frame.cols() || previous.rows() != frame.rows()) {
+      return;
+    }
+    Mat diff = new Mat();
+    Core.absdiff(previous, frame, diff);
+    changed = Core.countNonZero(diff.reshape(1)) > 0;
+    diff.release();
+  }
+
+  /**
+   * @param cost millisecs the last scan needed
+   * @return millisecs from the start of the last scan to the start of the next one
+   */
+  public long period(long cost) {
+    scans++;
+    long next = basePeriod;
+    if (adaptive) {
+      costAverage = costAverage < 0 ? cost : (1 - ALPHA) * costAverage + ALPHA * cost;
+      if (changed != null) {
+        if (changed) {
+          changes++;
+        }
+        changeAverage = (1 - ALPHA) * changeAverage + ALPHA * (changed ? 1 : 0);
+        if (!changed) {
+          period = Math.min(maxPeriod, (long) (period * GROW) + 1);
+          period = Math.max(period, (long) (STATIC_COST * costAverage));
+        } else if (changeAverage > CONTINUOUS) {
+          period = basePeriod;
+        } else {
+          period = minPeriod;
+        }
+        changed = null;
+      }
+      next = period;
+    }
+    long wait = cpuWait(cost);
+    if (wait > 0) {
+      Debug.log(lvl, me + "cpu limit: waiting %d msec", wait);
+      next = Math.max(next, cost + wait);
+    }
+    return next;
+  }
+
+  /**
+   * @param cost millisecs the last scan needed
+   * @return millisecs to wait before the next scan (might be 0 or negative: scan is too slow)
+   */
+  public long delay(long cost) {
+    return period(cost) - cost;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s(scans %d changes %d period %d cost %.0f)",
+        adaptive ? "adaptive" : "fixed", scans, changes, period, costAverage);
+  }
+  //</editor-fold>
+}
@@ -8,10 +8,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.Map.Entry;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
@@ -27,6 +25,9 @@ import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.FileManager;
+import org.sikuli.basics.Settings;
+import org.sikuli.script.runnerSupport.JythonPool;
+import org.sikuli.script.runners.JythonRunner;
 
 import io.undertow.Handlers;
 import io.undertow.Undertow;
@@ -388,7 +389,7 @@ public class SikulixServer {
 
     private HttpHandler getTask = exchange -> {
       String id = exchange.getQueryParameters().get("id").getLast();
-      Task task = getFilteredTasks(exchange).get(id);
+      Task task = getFilteredTask(exchange, id);
       if (task != null) {
         sendResponse(exchange, StatusCodes.OK, task);
       } else {
@@ -403,7 +404,7 @@ public class SikulixServer {
 
       boolean success = false;
       String id = exchange.getQueryParameters().get("id").getLast();
-      Task task = getFilteredTasks(exchange).get(id);
+      Task task = getFilteredTask(exchange, id);
       if (task != null) {
         success = getTaskManager().cancel(id);
       }
@@ -419,6 +420,12 @@ public class SikulixServer {
       return getTaskManager().getTasks(Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME)), 
                                        Optional.ofNullable(attachment.get(ScriptsCommand.ATTACHMENTKEY_SCRIPTNAME)));
     }
+
+    private Task getFilteredTask(final HttpServerExchange exchange, final String id) {
+      CommandsAttachment attachment = Optional.ofNullable(exchange.getAttachment(KEY)).orElse(new CommandsAttachment());
+      return getTaskManager().getTask(id, Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME)),
+                                      Optional.ofNullable(attachment.get(ScriptsCommand.ATTACHMENTKEY_SCRIPTNAME))).orElse(null);
+    }
   }
 
   private static class ScriptsCommand extends AbstractCommand {
@@ -489,7 +496,8 @@ public class SikulixServer {
         String scriptName = exchange.getQueryParameters().get("*").getLast().replaceFirst("/run$", "");
         String[] scriptArgs = getScriptArgs(exchange);
   
-        Task task = getTaskManager().requestSync(id, groupName, scriptName, scriptArgs);
+        Task task = getTaskManager().requestSync(id, groupName, scriptName, scriptArgs,
+            getPriority(exchange), getResources(exchange));
         int retval = task.exitCode;
         switch(retval) {
           case Runner.FILE_NOT_FOUND:
@@ -519,7 +527,8 @@ public class SikulixServer {
       String scriptName = exchange.getQueryParameters().get("*").getLast().replaceFirst("/task$", "");
       String[] scriptArgs = getScriptArgs(exchange);
 
-      Task task = getTaskManager().requestAsync(id, groupName, scriptName, scriptArgs);
+      Task task = getTaskManager().requestAsync(id, groupName, scriptName, scriptArgs,
+          getPriority(exchange), getResources(exchange));
       sendResponse(exchange, StatusCodes.OK, task);
     };
 
@@ -556,8 +565,7 @@ public class SikulixServer {
     }
 
     private Optional<ObjectNode> getScriptInfo(String groupName, String scriptName) {
-      RunTime.get().fWorkDir = groups.get(groupName);
-      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName});
+      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName}, groups.get(groupName));
       if (!scripts[0].startsWith("?")) {
         ObjectNode result = getObjectMapper().createObjectNode();
         result.put("name", scriptName)
@@ -579,6 +587,39 @@ public class SikulixServer {
       return Optional.ofNullable(attachment.get(GroupsCommand.ATTACHMENTKEY_GROUPNAME)).orElse(DEFAULT_GROUP);
     }
 
+    private Optional<String> getParameter(final HttpServerExchange exchange, final String name) {
+      Optional<String> value = Optional.ofNullable(exchange.getQueryParameters().get(name)).map(Deque::getLast);
+      if (exchange.getRequestMethod().equals(Methods.POST)) {
+        FormData form = exchange.getAttachment(FormDataParser.FORM_DATA);
+        if (form != null && form.getLast(name) != null) {
+          value = Optional.of(form.getLast(name).getValue());
+        }
+      }
+      return value;
+    }
+
+    // priority=n (higher runs first, default 0)
+    private int getPriority(final HttpServerExchange exchange) {
+      try {
+        return getParameter(exchange, "priority").map(p -> Integer.parseInt(p.trim())).orElse(0);
+      } catch (NumberFormatException ex) {
+        return 0;
+      }
+    }
+
+    // resources=screen,... (default screen, none = pure compute)
+    private Set<String> getResources(final HttpServerExchange exchange) {
+      Set<String> resources = new HashSet<>();
+      getParameter(exchange, "resources").ifPresent(p -> {
+        for (String resource : p.split(",")) {
+          if (!resource.trim().isEmpty()) {
+            resources.add(resource.trim().toLowerCase());
+          }
+        }
+      });
+      return resources;
+    }
+
     private String[] getScriptArgs(final HttpServerExchange exchange) {
       String[] args = {};
       Optional<String> argsString = Optional.empty();
@@ -742,97 +783,202 @@ public class SikulixServer {
     }
   }
 
+  /**
+   * runs the tasks in worker threads (Settings.ServerWorkers at the same time) as scheduled by a TaskQueue
+   * <br>the next task is the waiting one with the highest priority (then the oldest),
+   * that does not exceed the limit of its group (Settings.ServerGroupLimits)
+   * and needs no resource held by a running task
+   * <br>resources: screen (default, screen bound tasks run one after the other),
+   * none (pure compute, runs in parallel), any other name (exclusive like screen)
+   * <br>tasks, that cannot run on a pooled Jython interpreter, additionally need the resource runner
+   * <br>ended tasks are kept for the last Settings.ServerTaskHistory tasks
+   */
   private static class TaskManager {
+
     private LinkedHashMap<String, Task> allTasks;
-    private LinkedBlockingDeque<Task> queue;
+    private Map<String, LinkedHashMap<String, Task>> groupTasks;
+    private Map<String, LinkedHashMap<String, Task>> scriptTasks;
+    private TaskQueue<Task> queue;
     private boolean shouldStop;
     private boolean shouldPause;
     private Object lock;
     private ExecutorService executor;
+    private ExecutorService workers;
 
     public TaskManager() {
       allTasks = new LinkedHashMap<>();
-      queue = new LinkedBlockingDeque<>();
+      groupTasks = new HashMap<>();
+      scriptTasks = new HashMap<>();
       shouldStop = false;
       shouldPause = false;
-      executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Task Executor"));
       lock = new Object();
+      if (JythonPool.isActive()) {
+        // Jython tasks run in parallel on pooled interpreters
+        IScriptRunner jythonRunner = Runner.getRunner(JythonRunner.class);
+        if (jythonRunner instanceof JythonRunner) {
+          ((JythonRunner) jythonRunner).preparePool();
+        }
+      }
+      queue = new TaskQueue<>(Settings.ServerWorkers, Settings.ServerGroupLimits);
+      int workerCount = queue.workers();
+      AtomicInteger workerNumber = new AtomicInteger(0);
+      workers = Executors.newFixedThreadPool(workerCount, r -> new Thread(r, "Task Worker " + workerNumber.incrementAndGet()));
+      executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Task Executor"));
       executor.execute(() -> {
-        while (!shouldStop) {
+        while (true) {
           Task task = null;
           try {
             synchronized(lock) {
-              while (shouldPause) {
+              while (!shouldStop && (shouldPause || null == (task = queue.next()))) {
                 lock.wait();
               }
-            }
-            task = queue.take();
-            if ("shouldStop".equals(task.id) || "shouldPause".equals(task.id)) {
-              // NOOP
-            } else {
-              synchronized(task) {
-                if (task.isWaiting()) {
-                  task.updateStatus(Task.Status.RUNNING);
-                }
-              }
-              if (task.isRunning()) {
-                  task.runScript();
+              if (shouldStop) {
+                break;
               }
+              start(task);
+            }
+            final Task startedTask = task;
+            try {
+              workers.execute(() -> runTask(startedTask));
+            } catch (Exception ex) {
+              SikulixServer.dolog(-1, "ScriptExecutor: Exception: %s", ex);
+              release(task);
+              end(task, Task.Status.FAILED);
             }
           } catch (InterruptedException ex) {
             // NOOP
-          } catch (Exception ex) {
-            SikulixServer.dolog(-1, "ScriptExecutor: Exception: %s", ex);
-            ex.printStackTrace();
-            if (task != null) {
-              task.updateStatus(Task.Status.FAILED);
-            }
-          } finally {
-            if (task != null) {
-              synchronized(task) {
-                task.notify();
-              }
-            }
           }
         }
       });
     }
 
-    public Map<String, Task> getTasks(Optional<String> groupName, Optional<String> scriptName) {
-      LinkedHashMap<String, Task> result = allTasks.entrySet().stream()
-          .filter(e -> {
-            if (groupName.isPresent()) {
-              if (scriptName.isPresent()) {
-                return groupName.get().equals(e.getValue().groupName) && scriptName.get().equals(e.getValue().scriptName);
-              } else {
-                return groupName.get().equals(e.getValue().groupName);
-              }
-            } else {
-              if (scriptName.isPresent()) {
-                return DEFAULT_GROUP.equals(e.getValue().groupName) && scriptName.get().equals(e.getValue().scriptName);
-              } else {
-                return true;
-              }
-            }
-          })
-          .collect(Collectors.toMap(Entry::getKey, Entry::getValue, (oldValue, newValue) -> newValue, LinkedHashMap::new));
-      return Collections.unmodifiableMap(result);
+    // called with lock held
+    private void start(Task task) {
+      synchronized(task) {
+        task.updateStatus(Task.Status.RUNNING);
+      }
+    }
+
+    private void runTask(Task task) {
+      Task.Status status = Task.Status.FAILED;
+      try {
+        task.runScript();
+        status = task.status;
+      } catch (Exception ex) {
+        SikulixServer.dolog(-1, "ScriptWorker: Exception: %s", ex);
+        ex.printStackTrace();
+      } finally {
+        release(task);
+        end(task, status);
+      }
     }
 
-    public Task requestSync(final String id, final String groupName, final String scriptName, final String[] scriptArgs) throws Exception {
-      return request(id, groupName, scriptName, scriptArgs, false);
+    private void release(Task task) {
+      synchronized(lock) {
+        queue.release(task);
+        lock.notifyAll();
+      }
     }
 
-    public Task requestAsync(final String id, final String groupName, final String scriptName, final String[] scriptArgs) throws Exception {
-      return request(id, groupName, scriptName, scriptArgs, true);
+    private void end(Task task, Task.Status status) {
+      synchronized(task) {
+        task.updateStatus(status);
+        task.notify();
+      }
+      addHistory(task);
+    }
+
+    //<editor-fold desc="task store">
+    private void addTask(Task task) {
+      synchronized(allTasks) {
+        allTasks.put(task.id, task);
+        groupTasks.computeIfAbsent(task.groupName, k -> new LinkedHashMap<>()).put(task.id, task);
+        scriptTasks.computeIfAbsent(task.groupName + "/" + task.scriptName, k -> new LinkedHashMap<>()).put(task.id, task);
+      }
     }
 
-    private Task request(final String id, final String groupName, final String scriptName, 
-        final String[] scriptArgs, boolean isAsync) throws Exception {
-      Task request = new Task(id, groupName, scriptName, scriptArgs, isAsync);
+    // ended tasks: the oldest are removed, when more than Settings.ServerTaskHistory
+    private void addHistory(Task task) {
       synchronized(allTasks) {
-        allTasks.put(request.id, request);
-        queue.put(request);
+        for (Task old : queue.history(task, Settings.ServerTaskHistory)) {
+          allTasks.remove(old.id);
+          removeIndexed(groupTasks, old.groupName, old.id);
+          removeIndexed(scriptTasks, old.groupName + "/" + old.scriptName, old.id);
+        }
+      }
+    }
+
+    private static void removeIndexed(Map<String, LinkedHashMap<String, Task>> index, String key, String id) {
+      LinkedHashMap<String, Task> tasks = index.get(key);
+      if (tasks != null) {
+        tasks.remove(id);
+        if (tasks.isEmpty()) {
+          index.remove(key);
+        }
+      }
+    }
+
+    public Task getTask(final String id) {
+      synchronized(allTasks) {
+        return allTasks.get(id);
+      }
+    }
+
+    public Optional<Task> getTask(final String id, Optional<String> groupName, Optional<String> scriptName) {
+      Task task = getTask(id);
+      if (task == null) {
+        return Optional.empty();
+      }
+      if (scriptName.isPresent()) {
+        if (!groupName.orElse(DEFAULT_GROUP).equals(task.groupName) || !scriptName.get().equals(task.scriptName)) {
+          return Optional.empty();
+        }
+      } else if (groupName.isPresent() && !groupName.get().equals(task.groupName)) {
+        return Optional.empty();
+      }
+      return Optional.of(task);
+    }
+
+    public Map<String, Task> getTasks(Optional<String> groupName, Optional<String> scriptName) {
+      synchronized(allTasks) {
+        Map<String, Task> tasks;
+        if (scriptName.isPresent()) {
+          tasks = scriptTasks.get(groupName.orElse(DEFAULT_GROUP) + "/" + scriptName.get());
+        } else if (groupName.isPresent()) {
+          tasks = groupTasks.get(groupName.get());
+        } else {
+          tasks = allTasks;
+        }
+        if (tasks == null) {
+          return Collections.emptyMap();
+        }
+        return Collections.unmodifiableMap(new LinkedHashMap<>(tasks));
+      }
+    }
+    //</editor-fold>
+
+    public Task requestSync(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                            final int priority, final Set<String> resources) throws Exception {
+      return request(id, groupName, scriptName, scriptArgs, priority, resources, false);
+    }
+
+    public Task requestAsync(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                             final int priority, final Set<String> resources) throws Exception {
+      return request(id, groupName, scriptName, scriptArgs, priority, resources, true);
+    }
+
+    private Task request(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                         final int priority, final Set<String> resources, boolean isAsync) throws Exception {
+      Task request = new Task(id, groupName, scriptName, scriptArgs, priority, resources, isAsync);
+      addTask(request);
+      request.prepare();
+      Set<String> needed = new HashSet<>(request.resources);
+      if (!request.isPooled()) {
+        needed.add(TaskQueue.RESOURCE_RUNNER);
+      }
+      synchronized(lock) {
+        queue.add(request, request.groupName, request.priority, needed);
+        lock.notifyAll();
       }
       if (!isAsync) {
         synchronized(request) {
@@ -845,18 +991,21 @@ public class SikulixServer {
     }
 
     public boolean cancel(final String id) {
-      Task task = allTasks.get(id);
+      Task task = getTask(id);
       if (task != null) {
-        synchronized (task) {
-          if (task.isWaiting()) {
-            task.updateStatus(Task.Status.CANCELED);
-            task.notify();
-            return true;
-          } else {
-            SikulixServer.dolog(-1, "could not cancel the task: %s", id);
-            return false;
+        synchronized(lock) {
+          synchronized (task) {
+            if (task.isWaiting() && queue.cancel(task)) {
+              task.updateStatus(Task.Status.CANCELED);
+              task.notify();
+            } else {
+              SikulixServer.dolog(-1, "could not cancel the task: %s", id);
+              return false;
+            }
           }
         }
+        addHistory(task);
+        return true;
       } else {
         SikulixServer.dolog(-1, "the task is not found: %s", id);
         return false;
@@ -864,14 +1013,18 @@ public class SikulixServer {
     }
 
     public void stop() {
-      shouldStop = true;
-      queue.addFirst(new Task("shouldStop", null, null, null, true));
-      executor.shutdown();
-      while(!executor.isTerminated()) {
-        try {
-          executor.awaitTermination(60, TimeUnit.SECONDS);
-        } catch (InterruptedException ex) {
-          ex.printStackTrace();
+      synchronized(lock) {
+        shouldStop = true;
+        lock.notifyAll();
+      }
+      for (ExecutorService service : new ExecutorService[]{executor, workers}) {
+        service.shutdown();
+        while(!service.isTerminated()) {
+          try {
+            service.awaitTermination(60, TimeUnit.SECONDS);
+          } catch (InterruptedException ex) {
+            ex.printStackTrace();
+          }
         }
       }
     }
@@ -882,7 +1035,6 @@ public class SikulixServer {
           return false;
         } else {
           shouldPause = true;
-          queue.addFirst(new Task("shouldPause", null, null, null, true));
           return true;
         }
       }
@@ -892,7 +1044,7 @@ public class SikulixServer {
       synchronized(lock) {
         if (shouldPause) {
           shouldPause = false;
-          lock.notify();
+          lock.notifyAll();
           return true;
         } else {
           return false;
@@ -910,19 +1062,26 @@ public class SikulixServer {
     public final String groupName;
     public final String scriptName;
     public final String[] scriptArgs;
+    public final int priority;
+    public final Set<String> resources;
     @SuppressWarnings("unused")
     public final boolean isAsync;
     public Status status;
     public Date startDate;
     public Date endDate;
     public int exitCode;
+    private String[] scripts;
+    private JythonRunner pooledRunner;
+    private String pooledScript;
 
-    private Task(final String id, final String groupName, 
-                 final String scriptName, final String[] scriptArgs, final boolean isAsync) {
+    private Task(final String id, final String groupName, final String scriptName, final String[] scriptArgs,
+                 final int priority, final Set<String> resources, final boolean isAsync) {
       this.id = id;
       this.groupName = groupName;
       this.scriptName = scriptName;
       this.scriptArgs = scriptArgs;
+      this.priority = priority;
+      this.resources = resources.isEmpty() ? Collections.singleton(TaskQueue.RESOURCE_SCREEN) : resources;
       this.isAsync = isAsync;
       this.status = Status.WAITING;
     }
@@ -941,12 +1100,33 @@ public class SikulixServer {
       this.status = status;
     }
 
+    // resolved relative to the group folder (the global work dir is not changed)
+    public void prepare() {
+      scripts = RunTime.resolveRelativeFiles(new String[]{scriptName}, groups.get(groupName));
+      if (JythonPool.isActive() && scripts.length == 1 && !scripts[0].startsWith("?")) {
+        IScriptRunner.EffectiveRunner effective = Runner.getEffectiveRunner(scripts[0]);
+        if (effective.getRunner() instanceof JythonRunner) {
+          pooledRunner = (JythonRunner) effective.getRunner();
+          pooledScript = effective.getScript();
+        }
+      }
+    }
+
+    @JsonIgnore
+    public boolean isPooled() {
+      return pooledRunner != null;
+    }
+
+    // script and args are given per task: the global work dir and user args are not used by parallel tasks
     public void runScript() {
-      RunTime.get().fWorkDir = groups.get(groupName);
-      String[] scripts = RunTime.resolveRelativeFiles(new String[]{scriptName});
-      RunTime.setUserArgs(scriptArgs);
       startDate = new Date();
-      exitCode = Runner.runScripts(scripts, scriptArgs, new IScriptRunner.Options());
+      if (isPooled()) {
+        exitCode = pooledRunner.runPooled(pooledScript, scriptArgs, new IScriptRunner.Options());
+      } else {
+        // holds the resource runner: one at a time
+        RunTime.setUserArgs(scriptArgs);
+        exitCode = Runner.runScripts(scripts, scriptArgs, new IScriptRunner.Options());
+      }
       endDate = new Date();
       if (exitCode < 0 || 255 < exitCode) {
         status = Status.FAILED;
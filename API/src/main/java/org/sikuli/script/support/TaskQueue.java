@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2010-2020, sikuli.org, sikulix.com - MIT license
+ */
+
+package org.sikuli.script.support;
+
+import org.sikuli.basics.Debug;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * INTERNAL: the scheduling of the SikulixServer tasks (without running them)
+ * <br>the next task is the waiting one with the highest priority (then the oldest),
+ * that does not exceed the limit of its group and needs no resource held by a running task
+ * <br>at most workers tasks run at the same time
+ * <br>ended tasks are kept in a history of limited size
+ *
+ * @param <T> the task
+ */
+public class TaskQueue<T> {
+
+  private static String me = "TaskQueue: ";
+
+  /**
+   * the resource of screen bound tasks (default): they run one after the other
+   */
+  public static final String RESOURCE_SCREEN = "screen";
+  /**
+   * pure compute: needs no resource (runs in parallel)
+   */
+  public static final String RESOURCE_NONE = "none";
+  /**
+   * tasks that cannot run on a pooled Jython interpreter (global runner state)
+   */
+  public static final String RESOURCE_RUNNER = "runner";
+
+  private static class Entry<T> {
+    final T task;
+    final String group;
+    final int priority;
+    final long sequence;
+    final Set<String> needed;
+
+    Entry(T task, String group, int priority, long sequence, Set<String> needed) {
+      this.task = task;
+      this.group = group;
+      this.priority = priority;
+      this.sequence = sequence;
+      this.needed = needed;
+    }
+  }
+
+  private final int workers;
+  private final Map<String, Integer> groupLimits;
+  private final Map<T, Entry<T>> entries = new HashMap<>();
+  private final TreeSet<Entry<T>> waiting = new TreeSet<>(
+      Comparator.comparingInt((Entry<T> entry) -> -entry.priority).thenComparingLong(entry -> entry.sequence));
+  private final Set<String> held = new HashSet<>();
+  private final Map<String, Integer> groupRunning = new HashMap<>();
+  private final ArrayDeque<T> history = new ArrayDeque<>();
+  private int running = 0;
+  private long sequence = 0;
+
+  /**
+   * @param workers     max tasks running at the same time (at least 1)
+   * @param groupLimits max running tasks per group as name=n,... (* = any other group), empty = no limit
+   */
+  public TaskQueue(int workers, String groupLimits) {
+    this.workers = Math.max(1, workers);
+    this.groupLimits = makeGroupLimits(groupLimits);
+  }
+
+  public int workers() {
+    return workers;
+  }
+
+  // group=n,... (* = any other group)
+  private static Map<String, Integer> makeGroupLimits(String option) {
+    Map<String, Integer> limits = new HashMap<>();
+    if (option == null) {
+      return limits;
+    }
+    for (String item : option.split(",")) {
+      String[] parts = item.split("=");
+      if (parts.length != 2) {
+        continue;
+      }
+      try {
+        limits.put(parts[0].trim(), Integer.parseInt(parts[1].trim()));
+      } catch (NumberFormatException ex) {
+        Debug.error(me + "group limit not valid: %s", item);
+      }
+    }
+    return limits;
+  }
+
+  private int groupLimit(String group) {
+    Integer limit = groupLimits.get(group);
+    if (limit == null) {
+      limit = groupLimits.get("*");
+    }
+    return limit == null || limit < 1 ? Integer.MAX_VALUE : limit;
+  }
+
+  /**
+   * @param task      the task (waiting from now on)
+   * @param group     the group of the task
+   * @param priority  higher runs first
+   * @param resources the needed resources (empty: screen, none: no resource)
+   */
+  public synchronized void add(T task, String group, int priority, Set<String> resources) {
+    Set<String> needed = new HashSet<>(resources.isEmpty() ? Collections.singleton(RESOURCE_SCREEN) : resources);
+    needed.remove(RESOURCE_NONE);
+    Entry<T> entry = new Entry<>(task, group, priority, sequence++, needed);
+    entries.put(task, entry);
+    waiting.add(entry);
+  }
+
+  /**
+   * @param task a waiting task
+   * @return true if removed (false: not waiting)
+   */
+  public synchronized boolean cancel(T task) {
+    Entry<T> entry = entries.get(task);
+    if (entry == null || !waiting.remove(entry)) {
+      return false;
+    }
+    entries.remove(task);
+    return true;
+  }
+
+  /**
+   * @return the task to start now (counted as running), null if none can start
+   */
+  public synchronized T next() {
+    if (running >= workers) {
+      return null;
+    }
+    for (Entry<T> entry : waiting) {
+      if (groupRunning.getOrDefault(entry.group, 0) >= groupLimit(entry.group)) {
+        continue;
+      }
+      if (!Collections.disjoint(held, entry.needed)) {
+        continue;
+      }
+      waiting.remove(entry);
+      running++;
+      groupRunning.merge(entry.group, 1, Integer::sum);
+      held.addAll(entry.needed);
+      return entry.task;
+    }
+    return null;
+  }
+
+  /**
+   * @param task a task given by next(), that has ended (its resources are free again)
+   */
+  public synchronized void release(T task) {
+    Entry<T> entry = entries.remove(task);
+    if (entry == null) {
+      return;
+    }
+    running--;
+    groupRunning.merge(entry.group, -1, Integer::sum);
+    held.removeAll(entry.needed);
+  }
+
+  /**
+   * @param task an ended or canceled task
+   * @param max  the max size of the history
+   * @return the tasks removed from the history (the oldest)
+   */
+  public synchronized List<T> history(T task, int max) {
+    history.add(task);
+    List<T> removed = new ArrayList<>();
+    while (history.size() > Math.max(0, max)) {
+      removed.add(history.poll());
+    }
+    return removed;
+  }
+
+  public synchronized int running() {
+    return running;
+  }
+
+  public synchronized int waiting() {
+    return waiting.size();
+  }
+}
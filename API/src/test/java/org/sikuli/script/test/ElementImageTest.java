@@ -6,18 +6,44 @@ package org.sikuli.script.test;
 
 import org.junit.*;
 import org.junit.runners.MethodSorters;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
+import org.sikuli.script.Element;
 import org.sikuli.script.FindFailed;
 import org.sikuli.script.Image;
+import org.sikuli.script.ImagePath;
 import org.sikuli.script.Match;
+import org.sikuli.script.OCR;
+import org.sikuli.script.Pattern;
+import org.sikuli.script.TextRecognizer;
+import org.sikuli.script.support.FindAttributes;
+import org.sikuli.script.support.ImageStore;
+import org.sikuli.script.support.PathIndex;
+import org.sikuli.script.support.SXOpenCV;
 import org.sikuli.script.support.SXTest;
 import org.sikuli.util.Highlight;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
+import java.awt.Graphics;
 import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -35,6 +61,173 @@ public class ElementImageTest extends SXTest {
     startUpBase();
   }
 
+  @Test
+  public void test030_ImagePathIndex() throws IOException {
+    testIntro();
+    File folder = Files.createTempDirectory("sxindex").toFile();
+    File first = new File(folder, "index1.png");
+    File second = new File(folder, "index2.png");
+    Files.write(first.toPath(), new byte[]{0});
+    ImagePath.add(folder.getAbsolutePath());
+    URL found = ImagePath.find("index1.png");
+    Files.write(second.toPath(), new byte[]{0});
+    URL foundNew = ImagePath.find("index2.png");
+    first.delete();
+    // at once: not depending on the watcher
+    URL foundDeleted = ImagePath.find("index1.png");
+    ImagePath.remove(folder);
+    second.delete();
+    folder.delete();
+    testOutro("%s", PathIndex.stats());
+    Assert.assertNotNull("not found", found);
+    Assert.assertNotNull("new file not found", foundNew);
+    Assert.assertNull("deleted file found", foundDeleted);
+  }
+
+  @Test
+  public void test040_ImageStore() throws IOException {
+    testIntro();
+    File folder = Files.createTempDirectory("sxstore").toFile();
+    File imageFile = new File(folder, "store.png");
+    BufferedImage bImg = new BufferedImage(200, 100, BufferedImage.TYPE_3BYTE_BGR);
+    Graphics graphics = bImg.getGraphics();
+    graphics.fillRect(20, 20, 50, 50);
+    graphics.dispose();
+    ImageIO.write(bImg, "png", imageFile);
+    boolean imageStore = Settings.ImageStore;
+    String imageStorePath = Settings.ImageStorePath;
+    Settings.ImageStore = true;
+    Settings.ImageStorePath = new File(folder, "store").getAbsolutePath();
+    URL url = imageFile.toURI().toURL();
+    Mat decoded = Element.reload(url);
+    Mat stored = Element.reload(url);
+    // the checksum covers the end of the pixels
+    File[] sidecars = new File(Settings.ImageStorePath).listFiles((dir, name) -> name.endsWith(".sxm"));
+    Mat corrupted = null;
+    if (sidecars != null && sidecars.length == 1) {
+      try (RandomAccessFile sidecar = new RandomAccessFile(sidecars[0], "rw")) {
+        sidecar.seek(sidecar.length() - 1);
+        int last = sidecar.read();
+        sidecar.seek(sidecar.length() - 1);
+        sidecar.write(last ^ 0xFF);
+      }
+      corrupted = ImageStore.load(imageFile, false);
+    }
+    Settings.ImageStore = imageStore;
+    Settings.ImageStorePath = imageStorePath;
+    Files.walk(folder.toPath()).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    testOutro("%s", ImageStore.stats());
+    Assert.assertFalse("not decoded", decoded.empty());
+    Assert.assertEquals("stored content differs", 0, Core.norm(decoded, stored, Core.NORM_INF), 0);
+    Assert.assertNotNull("no sidecar", sidecars);
+    Assert.assertEquals("not one sidecar", 1, sidecars.length);
+    Assert.assertNull("corrupted sidecar loaded", corrupted);
+  }
+
+  @Test
+  public void test045_ImageCacheLRU() throws IOException {
+    testIntro();
+    File folder = Files.createTempDirectory("sxcache").toFile();
+    List<File> files = new ArrayList<>();
+    for (int n = 0; n < 3; n++) {
+      File imageFile = new File(folder, "cache" + n + ".png");
+      BufferedImage bImg = new BufferedImage(640, 600, BufferedImage.TYPE_3BYTE_BGR);
+      Graphics graphics = bImg.getGraphics();
+      graphics.fillRect(10 * n, 10 * n, 50, 50);
+      graphics.dispose();
+      ImageIO.write(bImg, "png", imageFile);
+      files.add(imageFile);
+    }
+    int imageCacheMax = Settings.ImageCacheMax;
+    Map<String, Long> counters;
+    Mat firstContent;
+    boolean firstValid;
+    Mat secondContent;
+    boolean secondKept;
+    try {
+      Settings.ImageCacheMax = 2;
+      Element.resetCache();
+      Image first = new Image(files.get(0).getAbsolutePath());
+      firstContent = first.getContent();
+      Image second = new Image(files.get(1).getAbsolutePath());
+      secondContent = Element.useContent(second);
+      new Image(files.get(2).getAbsolutePath());
+      counters = Element.cacheCounters();
+      firstValid = first.isValid();
+      secondKept = !secondContent.empty();
+      Element.doneContent(secondContent);
+    } finally {
+      Settings.ImageCacheMax = imageCacheMax;
+      Element.resetCache();
+      Files.walk(folder.toPath()).sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+    }
+    testOutro("%s", counters);
+    Assert.assertTrue("too many bytes", counters.get("bytes") <= counters.get("maxBytes"));
+    Assert.assertEquals("bytes not counted", 640 * 600 * 3 * counters.get("urls"), (long) counters.get("bytes"));
+    Assert.assertTrue("nothing evicted", counters.get("evictions") > 0);
+    Assert.assertTrue("evicted image not valid", firstValid);
+    Assert.assertTrue("evicted content not released", firstContent.empty());
+    Assert.assertTrue("evicted content in use released", secondKept);
+    Assert.assertTrue("evicted content not released when done", secondContent.empty());
+  }
+
+  @Test
+  public void test050_ImageConvert() {
+    testIntro();
+    BufferedImage bImg = new Image(testBase).getBufferedImage();
+    BufferedImage bImgRGB = new BufferedImage(bImg.getWidth(), bImg.getHeight(), BufferedImage.TYPE_INT_RGB);
+    Graphics graphics = bImgRGB.getGraphics();
+    graphics.drawImage(bImg, 0, 0, null);
+    graphics.dispose();
+    double megaPixel = bImg.getWidth() * bImg.getHeight() / 1000000.0;
+    int rounds = 20;
+    Mat mat = SXOpenCV.makeMat(bImgRGB);
+    long start = new Date().getTime();
+    for (int n = 0; n < rounds; n++) {
+      SXOpenCV.makeBufferedImage(mat, ".png");
+    }
+    long elapsedPNG = Math.max(1, new Date().getTime() - start);
+    BufferedImage bImgConverted = null;
+    start = new Date().getTime();
+    for (int n = 0; n < rounds; n++) {
+      bImgConverted = SXOpenCV.makeBufferedImage(mat, bImgConverted);
+    }
+    long elapsedDirect = Math.max(1, new Date().getTime() - start);
+    Mat matConverted = null;
+    start = new Date().getTime();
+    for (int n = 0; n < rounds; n++) {
+      matConverted = SXOpenCV.makeMat(bImgRGB, true, matConverted);
+    }
+    long elapsedMat = Math.max(1, new Date().getTime() - start);
+    Mat matBefore = null;
+    start = new Date().getTime();
+    for (int n = 0; n < rounds; n++) {
+      matBefore = makeMatMixChannels(bImgRGB);
+    }
+    long elapsedMatBefore = Math.max(1, new Date().getTime() - start);
+    Mat matBack = SXOpenCV.makeMat(bImgConverted);
+    testOutro("%.2f MP: Mat->BufferedImage PNG %.1f MP/s direct %.1f MP/s - INT_RGB->Mat mixChannels %.1f MP/s direct %.1f MP/s",
+        megaPixel, rounds * megaPixel * 1000 / elapsedPNG, rounds * megaPixel * 1000 / elapsedDirect,
+        rounds * megaPixel * 1000 / elapsedMatBefore, rounds * megaPixel * 1000 / elapsedMat);
+    Assert.assertEquals("conversion not lossless", 0, Core.norm(mat, matBack, Core.NORM_INF), 0);
+    Assert.assertEquals("conversion not lossless", 0, Core.norm(mat, matConverted, Core.NORM_INF), 0);
+    Assert.assertEquals("not as before", 0, Core.norm(matBefore, matConverted, Core.NORM_INF), 0);
+  }
+
+  // INT_RGB -> Mat as done before the direct copy (baseline for test050)
+  private static Mat makeMatMixChannels(BufferedImage bImg) {
+    int[] data = ((DataBufferInt) bImg.getRaster().getDataBuffer()).getData();
+    ByteBuffer byteBuffer = ByteBuffer.allocate(data.length * 4);
+    byteBuffer.asIntBuffer().put(data);
+    Mat aMat = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC4);
+    aMat.put(0, 0, byteBuffer.array());
+    Mat oMatBGR = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC3);
+    Mat oMatA = new Mat(bImg.getHeight(), bImg.getWidth(), CvType.CV_8UC1);
+    //A 0 - R 1 - G 2 - B 3 -> A 0 - B 1 - G 2 - R 3
+    Core.mixChannels(Arrays.asList(aMat), Arrays.asList(oMatA, oMatBGR), new MatOfInt(0, 0, 1, 3, 2, 2, 3, 1));
+    return oMatBGR;
+  }
+
   @Test
   public void test090_ImageFindResizeUp() {
     testIntro();
@@ -82,6 +275,38 @@ public class ElementImageTest extends SXTest {
     Assert.assertNotNull(testNameX2 + " not found", match);
   }
 
+  @Test
+  public void test093_ImageFindScales() {
+    testIntro();
+    Image shot = new Image(testBaseX2);
+    Image image = new Image(testName);
+    Match match = null;
+    Match matchFine = null;
+    double alwaysResize = Settings.AlwaysResize;
+    String findScales = Settings.FindScales;
+    boolean findScaleLearn = Settings.FindScaleLearn;
+    Settings.AlwaysResize = 0;
+    Settings.FindScales = "0.5-2";
+    try {
+      match = shot.find(testName);
+      // near factors (1.9, 1.8, ...) are tried before 2: the best one is taken
+      Settings.FindScaleLearn = false;
+      Settings.FindScales = "1.5-2.5:0.1";
+      matchFine = shot.find(testName);
+    } catch (FindFailed findFailed) {
+    } finally {
+      Settings.AlwaysResize = alwaysResize;
+      Settings.FindScales = findScales;
+      Settings.FindScaleLearn = findScaleLearn;
+    }
+    testOutro("%s in %s is %s (fine: %s)", testName, shot, match, matchFine);
+    Assert.assertNotNull(testName + " not found scaled", match);
+    Assert.assertEquals("scaled width", 2 * image.w, match.w, 1);
+    Assert.assertNotNull(testName + " not found with fine scales", matchFine);
+    Assert.assertEquals("not the best scale", 2, matchFine.resultScale(), 0.001);
+    Assert.assertEquals("fine scaled width", 2 * image.w, matchFine.w, 1);
+  }
+
   @Test
   public void test100_ImageFind() {
     testIntro();
@@ -95,6 +320,83 @@ public class ElementImageTest extends SXTest {
     Assert.assertNotNull(testName + " not found", match);
   }
 
+  @Test
+  public void test101_ImageFindDownsized() {
+    testIntro();
+    String[][] cases = new String[][]{
+        {testBase, testName}, {testBase, "house2"}, {testChanged, testName}, {testBaseX2, testNameX2}};
+    int repeats = 5;
+    long timeOriginal = 0;
+    long timeDownsized = 0;
+    List<String> results = new ArrayList<>();
+    boolean findDownsized = Settings.FindDownsized;
+    try {
+      for (String[] item : cases) {
+        Image shot = new Image(item[0]);
+        Match matchOriginal = null;
+        Match match = null;
+        for (int n = 0; n < repeats; n++) {
+          Settings.FindDownsized = false;
+          long start = new Date().getTime();
+          matchOriginal = shot.exists(item[1], 0);
+          timeOriginal += new Date().getTime() - start;
+          Settings.FindDownsized = true;
+          start = new Date().getTime();
+          match = shot.exists(item[1], 0);
+          timeDownsized += new Date().getTime() - start;
+        }
+        results.add(String.format("%s in %s: %s", item[1], item[0], match));
+        if (item[1].equals(testName) && item[0].equals(testBase)) {
+          Assert.assertNotNull(item[1] + " not found in original " + item[0], matchOriginal);
+        }
+        Assert.assertEquals("downsized found differs from original in " + item[0],
+            matchOriginal == null, match == null);
+        if (match == null) {
+          continue;
+        }
+        Assert.assertEquals("downsized differs from original in " + item[0],
+            matchOriginal.getRect(), match.getRect());
+        Assert.assertTrue("downsized score lower in " + item[0],
+            match.getScore() >= matchOriginal.getScore() - 0.0001);
+      }
+    } finally {
+      Settings.FindDownsized = findDownsized;
+    }
+    testOutro("%s - %d finds: original %d msec downsized %d msec (saved %d msec)", results,
+        cases.length * repeats, timeOriginal, timeDownsized, timeOriginal - timeDownsized);
+  }
+
+  @Test
+  public void test102_ImageFindTemplateCache() {
+    testIntro();
+    Image shot = new Image(testBase);
+    Match match = null;
+    Match matchCached = null;
+    Match matchEvicted = null;
+    int findTemplateCache = Settings.FindTemplateCache;
+    try {
+      Settings.FindTemplateCache = 0;
+      match = shot.find(testName);
+      Settings.FindTemplateCache = 128;
+      shot.find(testName);
+      matchCached = shot.find(testName);
+      // another key evicts the template (its own Mats are released)
+      Settings.FindTemplateCache = 1;
+      shot.exists(new Pattern(testName).resize(0.5f), 0);
+      matchEvicted = shot.find(testName);
+    } catch (FindFailed findFailed) {
+    } finally {
+      Settings.FindTemplateCache = findTemplateCache;
+    }
+    testOutro("%s in %s is %s (%s)", testName, shot, matchCached, FindAttributes.cacheStats());
+    Assert.assertNotNull(testName + " not found", match);
+    Assert.assertNotNull(testName + " not found (cached)", matchCached);
+    Assert.assertNotNull(testName + " not found (evicted)", matchEvicted);
+    Assert.assertEquals("cached differs from prepared", match.getRect(), matchCached.getRect());
+    Assert.assertEquals("cached differs from prepared", match.getScore(), matchCached.getScore(), 0);
+    Assert.assertEquals("evicted differs from prepared", match.getRect(), matchEvicted.getRect());
+  }
+
   @Ignore
   public void test110_ImageFindTrans() {
     testIntro();
@@ -134,6 +436,182 @@ public class ElementImageTest extends SXTest {
     }
     testOutro("%s%s == %s changes %d (%d)", "", original, changed, changes.size(), time);
     Assert.assertTrue("Not all changes!", changes.size() == 6);
+
+    // a change inside a changed frame is part of the frame (outer contours only)
+    // and changes nearer than 4 pixels are one change
+    Mat before = Mat.zeros(100, 100, CvType.CV_8UC3);
+    Mat after = before.clone();
+    after.submat(10, 31, 10, 31).setTo(new Scalar(255, 255, 255));
+    after.submat(11, 30, 11, 30).setTo(new Scalar(0, 0, 0));
+    after.submat(19, 21, 19, 21).setTo(new Scalar(255, 255, 255));
+    after.submat(60, 62, 60, 62).setTo(new Scalar(255, 255, 255));
+    after.submat(60, 62, 66, 68).setTo(new Scalar(255, 255, 255));
+    List<Rect> rects = SXOpenCV.getChanges(before, after, 3, 0);
+    Assert.assertEquals("frame and near changes: " + rects, 2, rects.size());
+    Assert.assertTrue("frame: " + rects, rects.contains(new Rect(9, 9, 23, 23)));
+    Assert.assertTrue("near changes: " + rects, rects.contains(new Rect(59, 59, 10, 4)));
+  }
+
+  @Test
+  public void test121_ImageChangedRects() {
+    testIntro();
+    Mat original = new Image(testBase).getContent();
+    Mat changed = new Image(testChanged).getContent();
+    List<Rect> noChanges = SXOpenCV.getChangedRects(original, original.clone());
+    List<Rect> changes = SXOpenCV.getChangedRects(original, changed);
+    testOutro("%s == %s changed areas %d", testBase, testChanged, changes.size());
+    Assert.assertTrue("Changes in equal frames!", noChanges.isEmpty());
+    Assert.assertFalse("No changes!", changes.isEmpty());
+  }
+
+  @Test
+  public void test122_ImageFindChangesScaled() {
+    testIntro();
+    Image original = new Image(testBase);
+    Image changed = new Image(testChanged);
+    int changeScale = Settings.ChangeScale;
+    Settings.ChangeScale = 4;
+    List<Match> changes;
+    try {
+      changes = original.findChanges(changed);
+    } finally {
+      Settings.ChangeScale = changeScale;
+    }
+    testOutro("%s == %s changes %d (scale 4)", original, changed, changes.size());
+    Assert.assertTrue("Not all changes!", changes.size() == 6);
+
+    // one changed pixel is kept with large cells
+    Mat before = Mat.zeros(100, 100, CvType.CV_8UC3);
+    Mat after = before.clone();
+    after.put(5, 70, 255, 255, 255);
+    List<Rect> rects;
+    Settings.ChangeScale = 32;
+    try {
+      rects = SXOpenCV.getChanges(before, after, 3, 0);
+    } finally {
+      Settings.ChangeScale = changeScale;
+    }
+    Assert.assertEquals("one pixel: " + rects, 1, rects.size());
+    Assert.assertTrue("one pixel: " + rects, rects.get(0).contains(new org.opencv.core.Point(70, 5)));
+  }
+
+  @Test
+  public void test123_ImageWaitChangeAware() {
+    testIntro();
+    Mat target = new Mat(20, 30, CvType.CV_8UC3);
+    Core.randu(target, 0, 256);
+    Mat first = new Mat(300, 400, CvType.CV_8UC3);
+    Core.randu(first, 0, 256);
+    // identical frame: no search
+    Mat same = first.clone();
+    FindAttributes unchanged = new FindAttributes(target);
+    List<Rect> noChanges = SXOpenCV.getChangedRects(first, same);
+    Match noMatch = SXOpenCV.findMatchWaiting(same, unchanged, false, noChanges, false);
+    // the target appears: only the dirty areas are searched
+    Mat appeared = same.clone();
+    target.copyTo(appeared.submat(new Rect(200, 100, 30, 20)));
+    FindAttributes dirty = new FindAttributes(target);
+    List<Rect> changes = SXOpenCV.getChangedRects(same, appeared);
+    List<Rect> areas = SXOpenCV.getSearchAreas(appeared, dirty, changes);
+    Match inArea = SXOpenCV.findMatchWaiting(appeared, dirty, false, changes, false);
+    Match full = SXOpenCV.findMatch(appeared, new FindAttributes(target), false);
+    // the whole frame changed: full search
+    Mat other = new Mat(300, 400, CvType.CV_8UC3);
+    Core.randu(other, 0, 256);
+    target.copyTo(other.submat(new Rect(50, 60, 30, 20)));
+    FindAttributes fallback = new FindAttributes(target);
+    List<Rect> allChanged = SXOpenCV.getChangedRects(appeared, other);
+    Match inFrame = SXOpenCV.findMatchWaiting(other, fallback, false, allChanged, false);
+    testOutro("unchanged: %d searches - dirty %s: %d searches %s - changed: %s",
+        unchanged.searches(), areas, dirty.searches(), inArea, inFrame);
+    Assert.assertTrue("Changes in equal frames!", noChanges.isEmpty());
+    Assert.assertNull("Match in unchanged frame!", noMatch);
+    Assert.assertEquals("Searched unchanged frame!", 0, unchanged.searches());
+    Assert.assertNotNull("No search areas!", areas);
+    Assert.assertEquals("Not only the areas searched!", areas.size(), dirty.searches());
+    Assert.assertNotNull("Not found in dirty area!", inArea);
+    Assert.assertEquals("Wrong position!", new Point(200, 100), new Point(inArea.x, inArea.y));
+    Assert.assertEquals("Not the full search position!", new Point(full.x, full.y), new Point(inArea.x, inArea.y));
+    Assert.assertNull("Search areas for a changed frame!", SXOpenCV.getSearchAreas(other, fallback, allChanged));
+    Assert.assertEquals("Not one full search!", 1, fallback.searches());
+    Assert.assertNotNull("Not found in changed frame!", inFrame);
+    Assert.assertEquals("Wrong position in changed frame!", new Point(50, 60), new Point(inFrame.x, inFrame.y));
+  }
+
+  @Test
+  public void test130_ImageTextLayout() {
+    testIntro();
+    Image txtImg = new Image("txtImg");
+    TextRecognizer.Layout layout = OCR.readLayout(txtImg);
+    List<Match> lines = OCR.readLines(txtImg);
+    List<Match> words = OCR.readWords(txtImg);
+    Match found = null;
+    try {
+      found = txtImg.findText("Hocke");
+    } catch (FindFailed findFailed) {
+    }
+    testOutro("%s: layout lines %d words %d - readLines %d readWords %d - findText %s",
+        txtImg, layout.getLines().size(), layout.getWords().size(), lines.size(), words.size(), found);
+    // one OCR pass gives the same lines and words as one pass per level
+    Assert.assertFalse("no lines", lines.isEmpty());
+    Assert.assertEquals("lines", lines.size(), layout.getLines().size());
+    for (int n = 0; n < lines.size(); n++) {
+      Assert.assertEquals("line text", lines.get(n).getText(), layout.getLines().get(n).getText());
+      Assert.assertEquals("line box", lines.get(n).getRect(), layout.getLines().get(n).getRect());
+    }
+    Assert.assertEquals("words", words.size(), layout.getWords().size());
+    for (int n = 0; n < words.size(); n++) {
+      Assert.assertEquals("word text", words.get(n).getText(), layout.getWords().get(n).getText());
+      Assert.assertEquals("word box", words.get(n).getRect(), layout.getWords().get(n).getRect());
+    }
+    // findText gives the box of the word
+    Assert.assertNotNull("Hocke not found", found);
+    Match word = null;
+    for (Match item : words) {
+      if ("Hocke".equals(item.getText())) {
+        word = item;
+      }
+    }
+    Assert.assertNotNull("Hocke not read", word);
+    Assert.assertEquals("findText box", word.getRect(), found.getRect());
+  }
+
+  @Test
+  public void test131_ImageTextCache() {
+    testIntro();
+    Image txtImg = new Image("txtImg");
+    boolean ocrCache = Settings.OcrCache;
+    List<Match> lines;
+    List<Match> linesCached;
+    List<Match> words;
+    List<Match> wordsCached;
+    Map<String, Long> counters;
+    try {
+      Settings.OcrCache = true;
+      OCR.cacheReset();
+      lines = OCR.readLines(txtImg);
+      linesCached = OCR.readLines(txtImg);
+      words = OCR.readWords(txtImg);
+      wordsCached = OCR.readWords(txtImg);
+      counters = OCR.cacheCounters();
+    } finally {
+      Settings.OcrCache = ocrCache;
+      OCR.cacheReset();
+    }
+    testOutro("%s: lines %d words %d - %s", txtImg, lines.size(), words.size(), counters);
+    Assert.assertEquals("hits", 2L, (long) counters.get("hits"));
+    Assert.assertFalse("no lines", lines.isEmpty());
+    assertSameMatches(lines, linesCached);
+    assertSameMatches(words, wordsCached);
+  }
+
+  private static void assertSameMatches(List<Match> matches, List<Match> cached) {
+    Assert.assertEquals("cached size", matches.size(), cached.size());
+    for (int n = 0; n < matches.size(); n++) {
+      Assert.assertEquals("cached text", matches.get(n).getText(), cached.get(n).getText());
+      Assert.assertEquals("cached box", matches.get(n).getRect(), cached.get(n).getRect());
+      Assert.assertEquals("cached score", matches.get(n).score(), cached.get(n).score(), 1e-9);
+    }
   }
 
   @Test
@@ -171,6 +649,22 @@ public class ElementImageTest extends SXTest {
     Assert.assertTrue("Not Found!", matchCount == targetCount);
   }
 
+  @Test
+  public void test271_ImageFindAnyFirst() {
+    testIntro();
+    Image image = new Image(testBase);
+    List<Object> images = new ArrayList<>();
+    for (int i = 1; i < 7; i++) {
+      images.add("any" + i);
+    }
+    long start = new Date().getTime();
+    Match match = image.findAnyFirstList(images);
+    long elapsed = new Date().getTime() - start;
+    testOutro("first of %d in %s is %s (%d)", images.size(), image, match, elapsed);
+    Assert.assertNotNull("Not Found!", match);
+    Assert.assertTrue("wrong index: " + match.getIndex(), match.getIndex() >= 0 && match.getIndex() < images.size());
+  }
+
   @Test
   public void test800_ImageMissingPrompt() {
     testIntro();
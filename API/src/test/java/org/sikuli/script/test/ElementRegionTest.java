@@ -6,14 +6,20 @@ package org.sikuli.script.test;
 
 import org.junit.*;
 import org.junit.runners.MethodSorters;
+import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.sikuli.basics.Debug;
 import org.sikuli.basics.Settings;
 import org.sikuli.script.*;
+import org.sikuli.script.support.CaptureProvider;
+import org.sikuli.script.support.RobotDesktop;
 import org.sikuli.script.support.RunTime;
+import org.sikuli.script.support.ScanPacer;
 import org.sikuli.script.support.SXTest;
 import org.sikuli.util.Highlight;
+import org.sikuli.vnc.VNCScreen;
 
+import javax.swing.*;
 import java.net.URL;
 import java.util.*;
 
@@ -119,6 +125,32 @@ public class ElementRegionTest extends SXTest {
     Assert.assertTrue("Not vanished!", vanished);
   }
 
+  @Test
+  public void test254_RegionWaitAdaptive() {
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    waitBefore = 2;
+    testIntro(testBase);
+    Region reg = getDefaultRegion();
+    Match match = null;
+    boolean scanAdaptive = Settings.ScanAdaptive;
+    float scanCpuMax = Settings.ScanCpuMax;
+    boolean newAPI = Settings.NewAPI;
+    try {
+      // the default path: Element.doFind
+      Settings.NewAPI = true;
+      Settings.ScanAdaptive = true;
+      Settings.ScanCpuMax = 0.5f;
+      match = reg.wait(testName, 5);
+    } catch (FindFailed findFailed) {
+    } finally {
+      Settings.ScanAdaptive = scanAdaptive;
+      Settings.ScanCpuMax = scanCpuMax;
+      Settings.NewAPI = newAPI;
+    }
+    testOutro("%s in %s is %s (cpu limit %s)", testName, reg, match, ScanPacer.cpuCounters());
+    Assert.assertTrue("Not found!", checkMatch(match, 0.95));
+  }
+
   @Test
   public void test255_RegionFindAllIterator() {
     Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
@@ -131,9 +163,11 @@ public class ElementRegionTest extends SXTest {
     } catch (FindFailed findFailed) {
     }
     Match match = null;
+    boolean allInside = true;
     while (matches.hasNext()) {
       matchCount++;
       match = matches.next();
+      allInside &= reg.contains(match);
       if (showImage) {
         match.highlight();
       }
@@ -143,6 +177,62 @@ public class ElementRegionTest extends SXTest {
     }
     testOutro("%s in %s is %s (%d)", testName, reg, match, matchCount);
     Assert.assertNotNull("Not Found!", match);
+    Assert.assertTrue("match not in region (screen coordinates)", allInside);
+  }
+
+  @Test
+  public void test256_RegionObserveRepeat() {
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    testIntro(testBase);
+    Region reg = getDefaultRegion();
+    int callbackQueue = Settings.ObserveCallbackQueue;
+    List<Integer> counts = Collections.synchronizedList(new ArrayList<>());
+    try {
+      Settings.ObserveCallbackQueue = 32;
+      reg.onAppear(testName, new ObserverCallBack() {
+        @Override
+        public void appeared(ObserveEvent event) {
+          counts.add(event.getCount());
+          if (counts.size() < 2) {
+            event.repeat();
+          } else {
+            event.stopObserver();
+          }
+        }
+      });
+      reg.observe(10);
+    } finally {
+      Settings.ObserveCallbackQueue = callbackQueue;
+    }
+    testOutro("%s in %s appeared %s", testName, reg, counts);
+    Assert.assertEquals("handler not called twice", 2, counts.size());
+  }
+
+  @Test
+  public void test257_RegionCaptureNative() {
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    testIntro(testBase);
+    Region reg = getDefaultRegion();
+    CaptureProvider provider = RobotDesktop.getCaptureProvider();
+    Assume.assumeNotNull(provider);
+    long start = new Date().getTime();
+    ScreenImage shotNative = provider.capture(reg.getRect());
+    long elapsedNative = new Date().getTime() - start;
+    boolean captureNative = Settings.CaptureNative;
+    ScreenImage shotRobot;
+    start = new Date().getTime();
+    try {
+      Settings.CaptureNative = false;
+      shotRobot = reg.getScreen().capture(reg);
+    } finally {
+      Settings.CaptureNative = captureNative;
+    }
+    long elapsedRobot = new Date().getTime() - start;
+    testOutro("%s: %s %d msec (java Robot %d msec)", provider.getName(), reg, elapsedNative, elapsedRobot);
+    Assert.assertNotNull("no native capture", shotNative);
+    Mat robotContent = shotRobot.getContent();
+    Assert.assertEquals("differs from java Robot", 0,
+        Core.norm(shotNative.getContent(), robotContent, Core.NORM_INF), 0);
   }
 
   @Test
@@ -169,6 +259,23 @@ public class ElementRegionTest extends SXTest {
     Assert.assertTrue("Not Found!", matchCount == 3);
   }
 
+  @Test
+  public void test259_RegionSnapshot() {
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    testIntro(testBase);
+    Region reg = getDefaultRegion();
+    Snapshot snapshot = reg.snapshot();
+    Match match = snapshot.exists(testName);
+    List<Match> matches = snapshot.findAllList(testName);
+    Match matchRegion = reg.exists(testName, 0);
+    snapshot.invalidate();
+    testOutro("%s in %s is %s (all: %d)", testName, snapshot, match, matches.size());
+    Assert.assertNotNull("Not Found!", match);
+    Assert.assertTrue("Not found 3 times!", matches.size() == 3);
+    Assert.assertEquals("differs from region find", matchRegion.getRect(), match.getRect());
+    Assert.assertFalse("still valid", snapshot.isValid());
+  }
+
   @Test
   public void test260_RegionFindTrans() {
     Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
@@ -228,6 +335,39 @@ public class ElementRegionTest extends SXTest {
     Assert.assertTrue("Not found!", checkMatch(match, 0.95));
   }
 
+  @Test
+  public void test263_ScanPacerStatic() {
+    testIntro();
+    boolean scanAdaptive = Settings.ScanAdaptive;
+    float scanCpuMax = Settings.ScanCpuMax;
+    long slowStatic = 0;
+    long fastStatic = 0;
+    long fastChanged = 0;
+    try {
+      Settings.ScanAdaptive = true;
+      Settings.ScanCpuMax = 0;
+      // 3 scans per second: base 333, after a change 100, static up to 1000 msec
+      ScanPacer pacer = new ScanPacer(3);
+      for (int n = 0; n < 3; n++) {
+        pacer.changed(false);
+        slowStatic = pacer.period(400);
+      }
+      for (int n = 0; n < 30; n++) {
+        pacer.changed(false);
+        fastStatic = pacer.period(10);
+      }
+      pacer.changed(true);
+      fastChanged = pacer.period(10);
+    } finally {
+      Settings.ScanAdaptive = scanAdaptive;
+      Settings.ScanCpuMax = scanCpuMax;
+    }
+    testOutro("static: %d (slow scans) %d (fast scans) changed: %d", slowStatic, fastStatic, fastChanged);
+    Assert.assertTrue("static period below 4 times the scan time", slowStatic >= 1600);
+    Assert.assertEquals("static period not max", 1000, fastStatic);
+    Assert.assertEquals("changed period not min", 100, fastChanged);
+  }
+
   @Test
   public void test270_RegionFindAny() {
     Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
@@ -292,6 +432,67 @@ public class ElementRegionTest extends SXTest {
     }
   }
 
+  @Test
+  public void test710_RegionWriteBenchmark() {
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    testIntro();
+    String text = "";
+    for (int n = 0; n < 3; n++) {
+      text += "the quick brown fox jumps over the lazy dog 0123456789. ";
+    }
+    JFrame frame = new JFrame();
+    JTextArea area = new JTextArea();
+    frame.add(area);
+    frame.setAlwaysOnTop(true);
+    frame.setBounds(100, 100, 600, 200);
+    frame.setVisible(true);
+    RunTime.pause(1);
+    Region reg = new Region(frame.getBounds());
+    reg.click();
+    long start = new Date().getTime();
+    reg.write(text);
+    long elapsed = Math.max(1, new Date().getTime() - start);
+    String typed = area.getText();
+    area.setText("");
+    boolean typeFast = Settings.TypeFast;
+    long elapsedFast;
+    try {
+      Settings.TypeFast = true;
+      start = new Date().getTime();
+      reg.write(text);
+      elapsedFast = Math.max(1, new Date().getTime() - start);
+    } finally {
+      Settings.TypeFast = typeFast;
+    }
+    String typedFast = area.getText();
+    frame.dispose();
+    String vncInfo = "";
+    String vnc = System.getProperty("sikulix.test.vnc");
+    if (vnc != null) {
+      VNCScreen vncScreen = VNCScreen.start(vnc);
+      if (vncScreen != null) {
+        start = new Date().getTime();
+        vncScreen.write(text);
+        long elapsedVNC = Math.max(1, new Date().getTime() - start);
+        try {
+          Settings.TypeFast = true;
+          start = new Date().getTime();
+          vncScreen.write(text);
+        } finally {
+          Settings.TypeFast = typeFast;
+        }
+        long elapsedVNCFast = Math.max(1, new Date().getTime() - start);
+        vncScreen.stop();
+        vncInfo = String.format(" - VNCRobot: %.0f chars/sec (fast: %.0f)",
+            text.length() * 1000.0 / elapsedVNC, text.length() * 1000.0 / elapsedVNCFast);
+      }
+    }
+    testOutro("RobotDesktop: %.0f chars/sec (fast: %.0f)%s", text.length() * 1000.0 / elapsed,
+        text.length() * 1000.0 / elapsedFast, vncInfo);
+    Assert.assertEquals("write", text, typed);
+    Assert.assertEquals("write fast", text, typedFast);
+  }
+
   @Ignore
   public void test700_BasicText() {
     Region reg = defaultRegion;
@@ -6,9 +6,29 @@ package org.sikuli.script.test;
 
 import org.junit.*;
 import org.junit.runners.MethodSorters;
+import org.sikuli.natives.OSUtil;
+import org.sikuli.natives.SysUtil;
+import org.sikuli.script.App;
+import org.sikuli.script.ImagePath;
+import org.sikuli.script.runnerSupport.PooledBundle;
 import org.sikuli.script.support.ExtensionManager;
 import org.sikuli.script.support.RunTime;
 import org.sikuli.script.support.SXTest;
+import org.sikuli.script.support.TaskQueue;
+
+import javax.swing.*;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @FixMethodOrder(MethodSorters.NAME_ASCENDING)
 public class RunTimeTest extends SXTest {
@@ -39,4 +59,128 @@ public class RunTimeTest extends SXTest {
     testOutro("classpath: %s", classPath);
     //assertTrue("NotValid: " + image.toString(), image.isValid());
   }
+
+  @Test
+  public void test020_LinuxWindows() {
+    Assume.assumeTrue("Not Linux - ignoring test", RunTime.get().runningLinux);
+    Assume.assumeFalse("Running headless - ignoring test", RunTime.isHeadless());
+    testIntro();
+    OSUtil osUtil = SysUtil.getOSUtil();
+    String title = "SikuliX-" + new Date().getTime();
+    JFrame frame = new JFrame(title);
+    frame.setBounds(100, 100, 400, 300);
+    frame.setVisible(true);
+    RunTime.pause(1);
+    long start = new Date().getTime();
+    List<App> apps = App.getApps(title);
+    Rectangle window = osUtil.getWindow(title);
+    Rectangle focused = osUtil.getFocusedWindow();
+    long elapsed = new Date().getTime() - start;
+    Point center = frame.getContentPane().getLocationOnScreen();
+    center.translate(frame.getContentPane().getWidth() / 2, frame.getContentPane().getHeight() / 2);
+    frame.dispose();
+    testOutro("%s: %s focused %s apps %s (%d msec)", osUtil.getClass().getSimpleName(), window, focused, apps, elapsed);
+    Assert.assertNotNull("no app list", apps);
+    Assert.assertEquals("not one app", 1, apps.size());
+    Assert.assertEquals("wrong pid", ProcessHandle.current().pid(), apps.get(0).getPID());
+    Assert.assertNotNull("window not found", window);
+    Assert.assertTrue("wrong window", window.contains(center));
+  }
+
+  @Test
+  public void test030_ServerTaskQueue() {
+    testIntro();
+    Set<String> screen = Collections.emptySet();
+    Set<String> none = Collections.singleton(TaskQueue.RESOURCE_NONE);
+    TaskQueue<String> queue = new TaskQueue<>(3, "limited=1");
+    queue.add("screen1", "default", 0, screen);
+    queue.add("screen2", "default", 5, screen);
+    queue.add("compute1", "limited", 0, none);
+    queue.add("compute2", "limited", 0, none);
+    queue.add("compute3", "default", 0, none);
+    // highest priority first, screen tasks one after the other, group limit 1, 3 workers
+    String first = queue.next();
+    String second = queue.next();
+    String third = queue.next();
+    String fourth = queue.next();
+    queue.release(first);
+    String afterScreen = queue.next();
+    queue.release(second);
+    String afterLimited = queue.next();
+    queue.add("late", "default", 0, screen);
+    boolean canceled = queue.cancel("late");
+    boolean canceledRunning = queue.cancel(afterScreen);
+    List<String> removed = new ArrayList<>();
+    for (String task : new String[]{first, second, "late"}) {
+      removed.addAll(queue.history(task, 2));
+    }
+    testOutro("%s %s %s %s - %s %s - history removed %s", first, second, third, fourth,
+        afterScreen, afterLimited, removed);
+    Assert.assertEquals("priority", "screen2", first);
+    Assert.assertEquals("resource none", "compute1", second);
+    Assert.assertEquals("group limit", "compute3", third);
+    Assert.assertNull("workers", fourth);
+    Assert.assertEquals("screen released", "screen1", afterScreen);
+    Assert.assertEquals("group limit released", "compute2", afterLimited);
+    Assert.assertTrue("waiting not canceled", canceled);
+    Assert.assertFalse("running canceled", canceledRunning);
+    Assert.assertEquals("history", Collections.singletonList(first), removed);
+    Assert.assertEquals("running", 3, queue.running());
+    Assert.assertEquals("waiting", 0, queue.waiting());
+  }
+
+  @Test
+  public void test031_PooledBundle() throws Exception {
+    testIntro();
+    File bundleA = Files.createTempDirectory("sxbundleA").toFile().getCanonicalFile();
+    File bundleB = Files.createTempDirectory("sxbundleB").toFile().getCanonicalFile();
+    AtomicInteger resets = new AtomicInteger(0);
+    Runnable reset = resets::incrementAndGet;
+    CountDownLatch sameEntered = new CountDownLatch(1);
+    CountDownLatch otherEntered = new CountDownLatch(1);
+    List<String> otherSees = new ArrayList<>();
+    // script 1 (bundle A) is running
+    PooledBundle.enter(bundleA, reset);
+    // script 2 (bundle A) runs in parallel, script 3 (bundle B) has to wait
+    Thread same = new Thread(() -> {
+      try {
+        PooledBundle.enter(bundleA, reset);
+        sameEntered.countDown();
+      } catch (InterruptedException e) {
+      }
+    });
+    Thread other = new Thread(() -> {
+      try {
+        PooledBundle.enter(bundleB, reset);
+        otherSees.add(ImagePath.getBundlePath());
+        otherEntered.countDown();
+        PooledBundle.leave();
+      } catch (InterruptedException e) {
+      }
+    });
+    same.start();
+    boolean sameRuns = sameEntered.await(5, TimeUnit.SECONDS);
+    other.start();
+    boolean otherRunsEarly = otherEntered.await(500, TimeUnit.MILLISECONDS);
+    String bundleWhileA = ImagePath.getBundlePath();
+    int resetsWhileA = resets.get();
+    int usersWhileA = PooledBundle.users();
+    PooledBundle.leave();
+    boolean otherRunsAfterOne = otherEntered.await(200, TimeUnit.MILLISECONDS);
+    PooledBundle.leave();
+    boolean otherRuns = otherEntered.await(5, TimeUnit.SECONDS);
+    other.join(5000);
+    testOutro("bundle A %s (users %d resets %d) then %s (resets %d)",
+        bundleWhileA, usersWhileA, resetsWhileA, otherSees, resets.get());
+    Assert.assertTrue("same bundle not in parallel", sameRuns);
+    Assert.assertFalse("other bundle not waiting", otherRunsEarly || otherRunsAfterOne);
+    Assert.assertEquals("bundle changed while running", bundleA.getPath(), bundleWhileA);
+    Assert.assertEquals("running", 2, usersWhileA);
+    Assert.assertEquals("reset by the parallel script", 1, resetsWhileA);
+    Assert.assertTrue("other bundle still waiting", otherRuns);
+    Assert.assertEquals("other bundle not set", Collections.singletonList(bundleB.getPath()), otherSees);
+    Assert.assertEquals("other bundle not reset as first", 2, resets.get());
+    Assert.assertEquals("not left", 0, PooledBundle.users());
+    Assert.assertNull("bundle kept", PooledBundle.folder());
+  }
 }